@@ -11,6 +11,7 @@ fi
 
 CLANG=clang++
 LLC=llc
+OPT_LEVEL="${OPT_LEVEL:-2}"
 
 if ! [ -z "$CLANG_VERSION" ]
 then
@@ -33,7 +34,7 @@ else
 fi
 
 OBJ_NAME=$(echo "$1" | cut -f 1 -d '.')".o"
-"$CLANG" -Wno-override-module -lgc -g -L"$BASE_DIR"/runtime/out -ljvm -L"$BASE_DIR"/"$JDK"/out -ljdk -Wl,-rpath,"$JDK7_LIB" -Wl,-rpath,"$BASE_DIR"/"$JDK"/out -Wl,-rpath,"$BASE_DIR"/runtime/out -rdynamic -o "$OBJ_NAME" $ARGS
+"$CLANG" -Wno-override-module -lgc -g -O"$OPT_LEVEL" -L"$BASE_DIR"/runtime/out -ljvm -L"$BASE_DIR"/"$JDK"/out -ljdk -Wl,-rpath,"$JDK7_LIB" -Wl,-rpath,"$BASE_DIR"/"$JDK"/out -Wl,-rpath,"$BASE_DIR"/runtime/out -rdynamic -o "$OBJ_NAME" $ARGS
 
 printf "Wrote compiled binary to $OBJ_NAME\n"
 
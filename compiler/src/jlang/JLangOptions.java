@@ -6,6 +6,10 @@ import polyglot.ext.jl5.JL5Options;
 import polyglot.main.OptFlag;
 import polyglot.main.UsageError;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 public class JLangOptions extends JL5Options {
@@ -13,7 +17,18 @@ public class JLangOptions extends JL5Options {
     public String entryPointClass;
     public boolean entryPointEmitted;
     public boolean printDesugar;
+    public boolean reportClassInitChecks;
+    public boolean reportDevirtualization;
+    public boolean interfaceInlineCache = true;
+    public boolean atomicIntrinsics = true;
+    public boolean omitStackTraceInFastThrow;
+    public int optLevel;
+    public String wholeProgram;
+    public List<String> wholeProgramLibs = new ArrayList<>();
     public int maxPasses;
+    public int codegenThreads;
+
+    public static final int MAX_OPT_LEVEL = 3;
 
     public JLangOptions(JLangExtensionInfo extension) {
         super(extension);
@@ -52,7 +67,80 @@ public class JLangOptions extends JL5Options {
 
         flags.add(new OptFlag.Switch(
                 "-dump-desugared", "Print the desugared AST to stderr", true));
+
+        flags.add(new OptFlag.Switch(
+                "-report-class-init-checks",
+                "Print the number of class initialization checks emitted and elided"
+                + " for each compilation unit", true));
+
+        flags.add(new OptFlag.Switch(
+                "-report-devirtualization",
+                "Print the number of virtual and interface calls devirtualized"
+                + " for each compilation unit (see -whole-program)", true));
+
+        flags.add(new OptFlag.Switch(
+                "-no-interface-cache",
+                "Look up every interface method call in the runtime,"
+                + " without per-call-site inline caches", true));
+
+        flags.add(new OptFlag.Switch(
+                "-no-atomic-intrinsics",
+                "Call Unsafe compare-and-swap and the java.util.concurrent.atomic"
+                + " methods instead of emitting inline atomic instructions", true));
+
+        flags.add(new OptFlag.Switch(
+                "-omit-stack-trace-in-fast-throw",
+                "Throw shared, preallocated exceptions without a message or stack trace"
+                + " when null, array bounds, cast, and division checks fail often", true));
         
+        for (int level = 0; level <= MAX_OPT_LEVEL; ++level) {
+            flags.add(new OptFlag.Switch(
+                    "-O" + level,
+                    "Optimize the emitted LLVM IR at level " + level
+                    + " (default: -O0). Pass the same level to clang", true));
+        }
+
+        flags.add(new OptFlag<String>(
+                "-whole-program", "<file>",
+                "Link the compiled files and the -whole-program-libs into a single"
+                + " optimized module, written to <file> (as bitcode if it ends in .bc)."
+                + " Linux only") {
+            @Override
+            public Arg<String> handle(String[] args, int index) {
+                return createArg(index + 1, args[index]);
+            }
+
+            @Override
+            public Arg<String> defaultArg() {
+                return createDefault(this.defaultValue);
+            }
+        });
+
+        flags.add(new OptFlag<String>(
+                "-whole-program-libs", "<path>",
+                "Directories of previously compiled LLVM IR (e.g., the JDK and runtime)"
+                + " to link into the -whole-program module") {
+            @Override
+            public Arg<String> handle(String[] args, int index) {
+                return createArg(index + 1, args[index]);
+            }
+
+            @Override
+            public Arg<String> defaultArg() {
+                return createDefault(this.defaultValue);
+            }
+        });
+
+        flags.add(new OptFlag.IntFlag(
+                "-codegen-threads", "<n>",
+                "Number of threads used to verify, optimize, and write LLVM modules"
+                + " (default: the number of processors)") {
+            @Override
+            public Arg<Integer> defaultArg() {
+                return createDefault(Runtime.getRuntime().availableProcessors());
+            }
+        });
+
         flags.add(new OptFlag.IntFlag("-max-runs", "<number of total compiler runs>",
         		"An upper bound on the number of total compiler runs"
         		+ " which ~ 7 * num_input_files") {
@@ -71,6 +159,41 @@ public class JLangOptions extends JL5Options {
         else if (arg.flag().ids().contains("-dump-desugared")) {
             this.printDesugar = (Boolean) arg.value();
         }
+        else if (arg.flag().ids().contains("-report-class-init-checks")) {
+            this.reportClassInitChecks = (Boolean) arg.value();
+        }
+        else if (arg.flag().ids().contains("-report-devirtualization")) {
+            this.reportDevirtualization = (Boolean) arg.value();
+        }
+        else if (arg.flag().ids().contains("-no-interface-cache")) {
+            this.interfaceInlineCache = !(Boolean) arg.value();
+        }
+        else if (arg.flag().ids().contains("-no-atomic-intrinsics")) {
+            this.atomicIntrinsics = !(Boolean) arg.value();
+        }
+        else if (arg.flag().ids().contains("-omit-stack-trace-in-fast-throw")) {
+            this.omitStackTraceInFastThrow = (Boolean) arg.value();
+        }
+        else if (arg.flag().ids().stream().anyMatch(id -> id.matches("-O[0-9]"))) {
+            if ((Boolean) arg.value()) {
+                String id = arg.flag().ids().iterator().next();
+                this.optLevel = Integer.parseInt(id.substring(2));
+            }
+        }
+        else if (arg.flag().ids().contains("-whole-program")) {
+            this.wholeProgram = (String) arg.value();
+            // See WholeProgramLinker for why this relies on ELF symbol interposition.
+            if (wholeProgram != null && !System.getProperty("os.name").startsWith("Linux"))
+                throw new UsageError("-whole-program is only supported on Linux");
+        }
+        else if (arg.flag().ids().contains("-whole-program-libs")) {
+            if (arg.value() != null)
+                this.wholeProgramLibs.addAll(
+                        Arrays.asList(((String) arg.value()).split(File.pathSeparator)));
+        }
+        else if (arg.flag().ids().contains("-codegen-threads")) {
+            this.codegenThreads = (Integer) arg.value();
+        }
         else if (arg.flag().ids().contains("-max-runs")) {
         	this.maxPasses = (Integer) arg.value();
         }
@@ -4,6 +4,7 @@ package jlang;
 
 import jlang.ast.JLangNodeFactory;
 import jlang.types.JLangTypeSystem;
+import jlang.util.ClassHierarchy;
 import jlang.util.DesugarBarrier;
 import jlang.util.JLangDesugared;
 import jlang.visit.StringLitFold;
@@ -115,6 +116,27 @@ public class JLangScheduler extends JL7Scheduler {
         return internGoal(constGoal);
     }
 
+    private ClassHierarchy classHierarchy;
+
+    /**
+     * Returns the hierarchy of the classes declared in all jobs, checked against
+     * the library modules of the whole program.
+     * Must only be called once {@link #AllLLVMDesugared()} is reached.
+     */
+    public synchronized ClassHierarchy classHierarchy() {
+        if (classHierarchy == null) {
+            JLangOptions options = (JLangOptions) Options.global;
+            classHierarchy = new ClassHierarchy(
+                    jobs(), extInfo.nodeFactory().lang(),
+                    WholeProgramLinker.libraryModules(options));
+            if (options.reportDevirtualization && classHierarchy.openedBy() != null) {
+                System.err.println("Library module " + classHierarchy.openedBy()
+                        + " references the compiled classes, so class hierarchy analysis is disabled");
+            }
+        }
+        return classHierarchy;
+    }
+
     @Override
     public Goal CodeGenerated(Job job) {
         Goal translate = new LLVMEmitted(job);
@@ -7,6 +7,8 @@ import org.bytedeco.javacpp.Pointer;
 
 import jlang.ast.JLangNodeFactory;
 import jlang.types.JLangTypeSystem;
+import jlang.util.ClassHierarchy;
+import jlang.util.Constants;
 import jlang.visit.LLVMTranslator;
 import polyglot.ast.Node;
 import polyglot.ast.SourceFile;
@@ -62,8 +64,13 @@ class LLVMEmitted extends CodeGenerated {
             LLVMContextRef context = LLVMContextCreate();
             LLVMModuleRef mod = LLVMModuleCreateWithNameInContext(sf.source().name(), context);
             LLVMBuilderRef builder = LLVMCreateBuilderInContext(context);
+            // Class hierarchy analysis is only sound for a whole program.
+            JLangOptions options = (JLangOptions) Options.global;
+            ClassHierarchy cha = options.wholeProgram != null
+                    ? ((JLangScheduler) extInfo.scheduler()).classHierarchy()
+                    : null;
             LLVMTranslator v = new LLVMTranslator(
-                    sf.source().path(), context, mod, builder, ts, nf);
+                    sf.source().path(), context, mod, builder, ts, nf, cha);
 
             try {
                 v = (LLVMTranslator) v.begin();
@@ -78,41 +85,135 @@ class LLVMEmitted extends CodeGenerated {
 
             LLVMDIBuilderFinalize(v.debugInfo.diBuilder);
 
+            if (options.reportClassInitChecks) {
+                System.err.println(sf.source().path() + ": "
+                        + v.classInitChecks.emittedCount() + " class initialization checks emitted, "
+                        + v.classInitChecks.elidedCount() + " elided");
+            }
+
+            if (options.reportDevirtualization) {
+                System.err.println(sf.source().path() + ": "
+                        + v.devirtualizer.monomorphicCount() + " calls devirtualized, "
+                        + v.devirtualizer.bimorphicCount() + " devirtualized with a guard, "
+                        + v.devirtualizer.virtualCount() + " virtual");
+            }
+
+            String pkg = sf.package_() == null ? "" : sf.package_().toString();
+            String outPath = extInfo.targetFactory().outputFileObject(pkg, sf.source()).getName();
+            File dir = Paths.get(outPath).getParent().toFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                System.err.println("Failed to make output directory " + dir);
+                System.exit(1);
+            }
+
+            // The remaining steps only touch the LLVM context of this job,
+            // so they can overlap with the translation of the next job.
+            LLVMDIBuilderRef diBuilder = v.debugInfo.diBuilder;
+            int optLevel = options.optLevel;
+            ModuleEmitter.submit(() -> {
+                try {
+                    emitModule(mod, outPath, optLevel);
+                } finally {
+                    LLVMDIBuilderDestroy(diBuilder);
+                    LLVMDisposeBuilder(builder);
+                    LLVMDisposeModule(mod);
+                    LLVMContextDispose(context);
+                }
+            });
+            return true;
+        }
+
+        /** Verifies and optimizes {@code mod}, and writes it to {@code outPath}. */
+        private static void emitModule(LLVMModuleRef mod, String outPath, int optLevel) {
             // Verify.
             BytePointer error = new BytePointer((Pointer) null);
             boolean verifySuccess = LLVMVerifyModule(mod, LLVMPrintMessageAction, error) == 0;
             LLVMDisposeMessage(error);
             error.setNull();
 
-            // TODO: This data layout is likely only accurate for x86_64, Mac OS X.
-            LLVMSetDataLayout(mod, "e-m:o-i64:64-f80:128-n8:16:32:64-S128");
+            LLVMSetDataLayout(mod, Constants.DATA_LAYOUT);
 
-            // Run passes.
+            // Run passes. Invalid IR is emitted unoptimized, to aid debugging.
             LLVMPassManagerRef pass = LLVMCreatePassManager();
+            if (verifySuccess)
+                addOptimizationPasses(pass, optLevel);
             LLVMAddStripDeadPrototypesPass(pass);
             LLVMRunPassManager(pass, mod);
             LLVMDisposePassManager(pass);
 
             // Emit.
-            String pkg = sf.package_() == null ? "" : sf.package_().toString();
-            String outPath = extInfo.targetFactory().outputFileObject(pkg, sf.source()).getName();
-            File dir = Paths.get(outPath).getParent().toFile();
-            if (!dir.exists() && !dir.mkdirs()) {
-                System.err.println("Failed to make output directory " + dir);
-                System.exit(1);
-            }
             LLVMPrintModuleToFile(mod, outPath, error);
             LLVMDisposeMessage(error);
             error.setNull();
-
-            LLVMDIBuilderDestroy(v.debugInfo.diBuilder);
-            LLVMDisposeBuilder(builder);
-            LLVMDisposeModule(mod);
-            LLVMContextDispose(context);
+            WholeProgramLinker.addModule(outPath);
 
             if (!verifySuccess)
                 throw new InternalCompilerError("The LLVM verifier found an issue in " + outPath);
-            return true;
+        }
+
+        /**
+         * Adds the optimization pipeline for the given -O level to {@code pm}.
+         * Level 0 leaves the module as translated, with every local in an alloca.
+         */
+        static void addOptimizationPasses(LLVMPassManagerRef pm, int optLevel) {
+            if (optLevel <= 0)
+                return;
+
+            // Promote locals to SSA registers and clean up the result.
+            LLVMAddBasicAliasAnalysisPass(pm);
+            LLVMAddTypeBasedAliasAnalysisPass(pm);
+            LLVMAddPromoteMemoryToRegisterPass(pm);
+            LLVMAddScalarReplAggregatesPassSSA(pm);
+            LLVMAddEarlyCSEPass(pm);
+            LLVMAddInstructionCombiningPass(pm);
+            LLVMAddCFGSimplificationPass(pm);
+            if (optLevel == 1)
+                return;
+
+            // Inline small methods (e.g., getters and constructors), then
+            // optimize the result.
+            LLVMAddFunctionInliningPass(pm);
+            LLVMAddFunctionAttrsPass(pm);
+            if (optLevel >= 3)
+                LLVMAddArgumentPromotionPass(pm);
+            LLVMAddScalarReplAggregatesPassSSA(pm);
+            LLVMAddEarlyCSEPass(pm);
+            LLVMAddJumpThreadingPass(pm);
+            LLVMAddCorrelatedValuePropagationPass(pm);
+            LLVMAddCFGSimplificationPass(pm);
+            LLVMAddInstructionCombiningPass(pm);
+            LLVMAddReassociatePass(pm);
+
+            // Loop optimizations. Rotating loops first lets LICM hoist
+            // loop-invariant loads, such as array lengths and field reads.
+            LLVMAddLoopRotatePass(pm);
+            LLVMAddLICMPass(pm);
+            if (optLevel >= 3)
+                LLVMAddLoopUnswitchPass(pm);
+            LLVMAddInstructionCombiningPass(pm);
+            LLVMAddIndVarSimplifyPass(pm);
+            LLVMAddLoopIdiomPass(pm);
+            LLVMAddLoopDeletionPass(pm);
+            if (optLevel >= 3)
+                LLVMAddLoopUnrollPass(pm);
+
+            // Redundancy elimination.
+            LLVMAddGVNPass(pm);
+            LLVMAddMemCpyOptPass(pm);
+            LLVMAddSCCPPass(pm);
+            LLVMAddInstructionCombiningPass(pm);
+            LLVMAddJumpThreadingPass(pm);
+            LLVMAddCorrelatedValuePropagationPass(pm);
+            LLVMAddDeadStoreEliminationPass(pm);
+            LLVMAddLICMPass(pm);
+            LLVMAddAggressiveDCEPass(pm);
+            LLVMAddCFGSimplificationPass(pm);
+            LLVMAddInstructionCombiningPass(pm);
+
+            // Module-level cleanup.
+            LLVMAddGlobalOptimizerPass(pm);
+            LLVMAddGlobalDCEPass(pm);
+            LLVMAddConstantMergePass(pm);
         }
     }
 }
@@ -4,8 +4,8 @@ package jlang;
 
 /**
  * Main is the main program of the compiler extension.
- * It simply invokes Polyglot's main, passing in the extension's
- * JLangExtensionInfo.
+ * It invokes Polyglot's main, passing in the extension's
+ * JLangExtensionInfo, and then waits for all LLVM modules to be written.
  */
 public class Main
 {
@@ -14,6 +14,12 @@ public class Main
 
       try {
           polyglotMain.start(args, new JLangExtensionInfo());
+          ModuleEmitter.awaitAll();
+
+          JLangOptions options = (JLangOptions) polyglot.main.Options.global;
+          if (options.wholeProgram != null) {
+              WholeProgramLinker.link(options);
+          }
       }
       catch (polyglot.main.Main.TerminationException e) {
           System.err.println(e.getMessage());
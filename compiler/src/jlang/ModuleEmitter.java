@@ -0,0 +1,85 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang;
+
+import polyglot.main.Options;
+import polyglot.util.InternalCompilerError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs the back end of LLVM code generation (verification, optimization, and
+ * printing) for each translated module on a pool of worker threads, sized by
+ * the -codegen-threads option. Each module has its own LLVM context, so modules
+ * can be processed independently; the output of each job does not depend on
+ * the order in which they finish.
+ *
+ * Translation itself stays on the scheduler thread, since it uses the Polyglot
+ * type system (which may load classes and schedule goals on demand).
+ */
+class ModuleEmitter {
+
+    private static ExecutorService pool;
+
+    /** Bounds the number of translated modules held in memory at once. */
+    private static Semaphore inFlight;
+
+    private static final List<Future<?>> pending = new ArrayList<>();
+
+    /** Runs {@code task} on a worker thread, or immediately if codegen is serial. */
+    static synchronized void submit(Runnable task) {
+        int threads = ((JLangOptions) Options.global).codegenThreads;
+        if (threads <= 1) {
+            task.run();
+            return;
+        }
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "jlang-codegen");
+                t.setDaemon(true);
+                return t;
+            });
+            inFlight = new Semaphore(2 * threads);
+        }
+        inFlight.acquireUninterruptibly();
+        pending.add(pool.submit(() -> {
+            try {
+                task.run();
+            } finally {
+                inFlight.release();
+            }
+        }));
+    }
+
+    /**
+     * Waits for all submitted modules to be written. Rethrows the first failure,
+     * in submission order, so that errors are reported deterministically.
+     */
+    static synchronized void awaitAll() {
+        Throwable failure = null;
+        for (Future<?> f : pending) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InternalCompilerError("Interrupted while emitting LLVM modules", e);
+            }
+        }
+        pending.clear();
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        if (failure != null)
+            throw new InternalCompilerError(failure);
+    }
+}
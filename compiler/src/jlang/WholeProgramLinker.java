@@ -0,0 +1,149 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Pointer;
+
+import polyglot.util.InternalCompilerError;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.bytedeco.javacpp.LLVM.*;
+
+/**
+ * Links the LLVM modules of a whole program into a single module (see the
+ * -whole-program option), so that LLVM can inline and optimize across classes,
+ * e.g., inlining String.charAt or ArrayList.get into application code.
+ *
+ * The linked module contains the modules emitted by the current compilation,
+ * plus any previously compiled modules found under the -whole-program-libs
+ * directories (typically the JDK and runtime output directories).
+ *
+ * Only supported on Linux (see JLangOptions). The executable is still linked
+ * against the JDK and runtime shared libraries for their native code, and these
+ * contain their own copies of the compiled Java code. ELF symbol interposition
+ * binds every reference, including those inside the shared libraries, to the
+ * definitions in the executable, so there is a single copy of each static field
+ * and class object. With the two-level namespace of Mach-O, the libraries would
+ * keep using their own copies.
+ */
+class WholeProgramLinker {
+
+    /** Modules written by the current compilation. */
+    private static final List<String> emitted = new ArrayList<>();
+
+    /** Records a module emitted by {@link LLVMEmitted}. */
+    static synchronized void addModule(String path) {
+        emitted.add(path);
+    }
+
+    /** Links and optimizes the whole program, writing the result to {@code options.wholeProgram}. */
+    static void link(JLangOptions options) {
+        List<String> inputs = new ArrayList<>(emitted);
+        Collections.sort(inputs);
+        inputs.addAll(libraryModules(options));
+        inputs = inputs.stream().distinct().collect(Collectors.toList());
+        if (inputs.isEmpty())
+            throw new InternalCompilerError("No LLVM modules to link into " + options.wholeProgram);
+
+        LLVMContextRef context = LLVMContextCreate();
+        LLVMModuleRef mod = null;
+        for (String path : inputs) {
+            LLVMModuleRef next = parseModule(context, path);
+            if (mod == null) {
+                mod = next;
+            } else if (LLVMLinkModules2(mod, next) != 0) {
+                throw new InternalCompilerError("Failed to link " + path + " into the whole program");
+            }
+        }
+
+        BytePointer error = new BytePointer((Pointer) null);
+        boolean verifySuccess = LLVMVerifyModule(mod, LLVMPrintMessageAction, error) == 0;
+        LLVMDisposeMessage(error);
+        error.setNull();
+
+        // Every module is already optimized on its own (see LLVMEmitted),
+        // so here we only run the link-time pipeline. Symbols are not internalized,
+        // since the runtime finds class loading functions with dlsym, and the native
+        // parts of the runtime and JDK reference compiled Java code by name.
+        if (verifySuccess && options.optLevel > 0) {
+            LLVMPassManagerBuilderRef pmb = LLVMPassManagerBuilderCreate();
+            LLVMPassManagerBuilderSetOptLevel(pmb, options.optLevel);
+            LLVMPassManagerRef pass = LLVMCreatePassManager();
+            LLVMPassManagerBuilderPopulateLTOPassManager(
+                    pmb, pass, /*internalize*/ 0, /*runInliner*/ 1);
+            LLVMRunPassManager(pass, mod);
+            LLVMDisposePassManager(pass);
+            LLVMPassManagerBuilderDispose(pmb);
+        }
+
+        // Emit, as bitcode if requested, since textual IR for a whole program is large.
+        String outPath = options.wholeProgram;
+        File dir = Paths.get(outPath).toAbsolutePath().getParent().toFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            System.err.println("Failed to make output directory " + dir);
+            System.exit(1);
+        }
+        if (outPath.endsWith(".bc")) {
+            LLVMWriteBitcodeToFile(mod, outPath);
+        } else {
+            LLVMPrintModuleToFile(mod, outPath, error);
+            LLVMDisposeMessage(error);
+            error.setNull();
+        }
+
+        LLVMDisposeModule(mod);
+        LLVMContextDispose(context);
+
+        if (!verifySuccess)
+            throw new InternalCompilerError("The LLVM verifier found an issue in " + outPath);
+    }
+
+    private static LLVMModuleRef parseModule(LLVMContextRef context, String path) {
+        LLVMMemoryBufferRef buf = new LLVMMemoryBufferRef();
+        BytePointer error = new BytePointer((Pointer) null);
+        if (LLVMCreateMemoryBufferWithContentsOfFile(new BytePointer(path), buf, error) != 0) {
+            String msg = error.getString();
+            LLVMDisposeMessage(error);
+            throw new InternalCompilerError("Failed to read " + path + ": " + msg);
+        }
+        LLVMModuleRef mod = new LLVMModuleRef();
+        if (LLVMParseIRInContext(context, buf, mod, error) != 0) {
+            String msg = error.getString();
+            LLVMDisposeMessage(error);
+            throw new InternalCompilerError("Failed to parse " + path + ": " + msg);
+        }
+        return mod;
+    }
+
+    /** Returns the LLVM IR files under the -whole-program-libs directories. */
+    static List<String> libraryModules(JLangOptions options) {
+        List<String> res = new ArrayList<>();
+        for (String lib : options.wholeProgramLibs)
+            res.addAll(findModules(lib));
+        return res;
+    }
+
+    /** Returns the LLVM IR files under {@code dir}, in a deterministic order. */
+    private static List<String> findModules(String dir) {
+        try (Stream<Path> paths = Files.walk(Paths.get(dir))) {
+            return paths
+                    .filter(p -> p.toString().endsWith(".ll") && Files.isRegularFile(p))
+                    .map(Path::toString)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new InternalCompilerError("Failed to list LLVM modules in " + dir, e);
+        }
+    }
+}
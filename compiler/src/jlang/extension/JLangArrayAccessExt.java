@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.Collections;
 
 import jlang.ast.JLangExt;
+import jlang.util.Constants;
 import jlang.visit.DesugarLocally;
 import jlang.visit.LLVMTranslator;
 
@@ -82,6 +83,8 @@ public class JLangArrayAccessExt extends JLangExt {
 
         // Guard access with bounds check. Avoid duplicating side-effects.
         Throw throwExn = v.tnf.Throw(pos, exnType, Collections.singletonList(copy(idx)));
+        throwExn = ((JLangThrowExt) JLangExt.ext(throwExn))
+                .setFailedCheck(Constants.PREALLOCATED_ARRAY_INDEX_OUT_OF_BOUNDS);
         Stmt guard = v.tnf.If(check, throwExn);
         return v.tnf.ESeq(Arrays.asList(arrFlat, lenFlat, idxFlat, guard), setGuarded(n));
     }
@@ -7,7 +7,9 @@ import polyglot.util.InternalCompilerError;
 import polyglot.util.Position;
 import polyglot.util.SerialVersionUID;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import jlang.ast.JLangExt;
 import jlang.visit.DesugarLocally;
@@ -32,13 +34,25 @@ public class JLangAssignExt extends JLangExt {
 
     protected Node desugarToSimpleAssignment(Assign n, DesugarLocally v) {
         Position pos = n.position();
+        Binary.Operator binop = convertAssignOpToBinop(n.operator());
+
+        if (JLangFieldExt.isVolatileField(n.left())) {
+            // Read and write the field itself, so that both accesses are volatile.
+            List<Stmt> stmts = new ArrayList<>();
+            Field left = JLangFieldExt.withStableTarget((Field) n.left(), stmts, v);
+            LocalDecl rightFlat = v.tnf.TempSSA("rvalue", n.right());
+            stmts.add(rightFlat);
+            Local right = v.tnf.Local(pos, rightFlat);
+            Binary res = (Binary) v.nf.Binary(pos, copy(left), binop, right).type(n.type());
+            n = n.left(copy(left)).operator(Assign.ASSIGN).right(res);
+            return v.tnf.ESeq(stmts, n);
+        }
 
         LocalDecl leftPtrFlat = v.tnf.TempSSA("lvalue", v.tnf.AddressOf(n.left()));
         LocalDecl rightFlat = v.tnf.TempSSA("rvalue", n.right());
         Local leftPtr = v.tnf.Local(pos, leftPtrFlat);
         Local right = v.tnf.Local(pos, rightFlat);
 
-        Binary.Operator binop = convertAssignOpToBinop(n.operator());
         Expr leftLoaded = v.tnf.Load(copy(leftPtr));
         Binary res = (Binary) v.nf.Binary(pos, leftLoaded, binop, copy(right)).type(n.type());
         n = n.left(copy(leftPtr)).operator(Assign.ASSIGN).right(res);
@@ -57,7 +71,11 @@ public class JLangAssignExt extends JLangExt {
         LLVMValueRef ptr = lang().translateAsLValue(n.left(), v);
         n.visitChild(n.right(), v);
         LLVMValueRef val = v.getTranslation(n.right());
-        LLVMBuildStore(v.builder, val, ptr);
+        if (JLangFieldExt.isVolatileField(n.left())) {
+            v.utils.buildVolatileStore(val, ptr, n.left().type());
+        } else {
+            LLVMBuildStore(v.builder, val, ptr);
+        }
         v.addTranslation(n, val);
         return n;
     }
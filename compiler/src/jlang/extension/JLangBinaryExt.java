@@ -4,17 +4,21 @@ package jlang.extension;
 
 import polyglot.ast.Binary;
 import polyglot.ast.Binary.*;
+import polyglot.ast.Call;
+import polyglot.ast.Expr;
 import polyglot.ast.Node;
-import polyglot.types.ClassType;
+import polyglot.types.MethodInstance;
 import polyglot.types.Type;
 import polyglot.util.InternalCompilerError;
 import polyglot.util.SerialVersionUID;
 
 import java.lang.Override;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import jlang.ast.JLangExt;
-import jlang.visit.DesugarLocally;
+import jlang.util.Constants;
 import jlang.visit.LLVMTranslator;
 
 import static org.bytedeco.javacpp.LLVM.*;
@@ -23,21 +27,6 @@ import static polyglot.ast.Binary.*;
 public class JLangBinaryExt extends JLangExt {
     private static final long serialVersionUID = SerialVersionUID.generate();
 
-    @Override
-    public Node desugar(DesugarLocally v) {
-        Binary n = (Binary) node();
-
-        // Desugar string concatenation of non-constants into a method call.
-        ClassType strT = v.ts.String();
-        if (n.operator().equals(Binary.ADD) && n.type().typeEquals(strT)
-        		&& !lang().isConstant(n, lang())) {
-            assert n.left().type().typeEquals(strT) && n.right().type().typeEquals(strT);
-            return v.tnf.Call(n.position(), n.left(), "concat", strT, strT, n.right());
-        }
-
-        return super.desugar(v);
-    }
-
     @Override
     public Node overrideTranslateLLVM(Node parent, LLVMTranslator v) {
         Binary n = (Binary) node();
@@ -50,9 +39,104 @@ public class JLangBinaryExt extends JLangExt {
             return n;
         }
 
+        if (isStringConcat(v, n)) {
+            LLVMValueRef res = buildStringConcat(v, n);
+            v.addTranslation(n, res);
+            return n;
+        }
+
         return super.overrideTranslateLLVM(parent, v);
     }
 
+    protected static boolean isStringConcat(LLVMTranslator v, Binary n) {
+        return n.operator().equals(Binary.ADD) && n.type().typeEquals(v.ts.String());
+    }
+
+    /**
+     * Translates a chain of string concatenations, such as {@code a + b + c + d},
+     * into a single runtime call that computes the length of the result, and then
+     * allocates and fills it in one pass. Operands converted with
+     * {@code String.valueOf} from integral, char, or boolean values are passed
+     * unconverted, so no intermediate strings are allocated for them.
+     * (See JLangCastExt#stringConversion for the conversion of other operands.)
+     */
+    protected LLVMValueRef buildStringConcat(LLVMTranslator v, Binary n) {
+        List<Expr> operands = new ArrayList<>();
+        flattenStringConcat(v, n, operands);
+
+        LLVMTypeRef i64 = v.utils.i64();
+        LLVMValueRef parts = v.utils.buildAlloca(
+                "concat.parts", LLVMArrayType(i64, operands.size()));
+        LLVMValueRef[] kinds = new LLVMValueRef[operands.size()];
+        for (int i = 0; i < operands.size(); ++i) {
+            Expr e = operands.get(i);
+            int kind = concatKind(v, e);
+            if (kind != Constants.CONCAT_STRING)
+                e = ((Call) e).arguments().get(0);
+            n.visitChild(e, v);
+            LLVMValueRef val = v.getTranslation(e);
+
+            LLVMValueRef part;
+            if (kind == Constants.CONCAT_STRING) {
+                part = LLVMBuildPtrToInt(v.builder, val, i64, "concat.str");
+            } else if (kind == Constants.CONCAT_INT || kind == Constants.CONCAT_LONG) {
+                part = LLVMBuildIntCast(v.builder, val, i64, "concat.int");
+            } else {
+                part = LLVMBuildZExt(v.builder, val, i64, "concat.char");
+            }
+            LLVMBuildStore(v.builder, part, v.utils.buildGEP(parts, 0, i));
+            kinds[i] = LLVMConstInt(v.utils.i8(), kind, /*sign-extend*/ 0);
+        }
+
+        LLVMTypeRef strType = v.utils.toLL(v.ts.String());
+        LLVMTypeRef funcType = v.utils.functionType(
+                strType, v.utils.ptrTypeRef(i64), v.utils.i8Ptr(), v.utils.i32());
+        LLVMValueRef concat = v.utils.getFunction(Constants.STRING_CONCAT_FUNC, funcType);
+        LLVMValueRef kindsPtr = v.utils.buildGlobalConstArrayAsPtr(v.utils.i8(), kinds);
+        LLVMValueRef count = LLVMConstInt(v.utils.i32(), operands.size(), /*sign-extend*/ 0);
+        return v.utils.buildFunCall(concat, v.utils.buildGEP(parts, 0, 0), kindsPtr, count);
+    }
+
+    /** Collects the operands of a chain of string concatenations, in evaluation order. */
+    protected static void flattenStringConcat(LLVMTranslator v, Expr e, List<Expr> operands) {
+        if (e instanceof Binary && isStringConcat(v, (Binary) e)) {
+            Binary b = (Binary) e;
+            flattenStringConcat(v, b.left(), operands);
+            flattenStringConcat(v, b.right(), operands);
+        } else {
+            operands.add(e);
+        }
+    }
+
+    /**
+     * Returns the kind of the given string concatenation operand (see
+     * {@link Constants#CONCAT_STRING}). Operands of a primitive kind are
+     * calls to {@code String.valueOf} whose argument the runtime formats itself.
+     */
+    protected static int concatKind(LLVMTranslator v, Expr e) {
+        if (!(e instanceof Call))
+            return Constants.CONCAT_STRING;
+        Call c = (Call) e;
+        MethodInstance mi = c.methodInstance();
+        if (!mi.flags().isStatic()
+                || !mi.name().equals("valueOf")
+                || !mi.container().typeEquals(v.ts.String())
+                || mi.formalTypes().size() != 1)
+            return Constants.CONCAT_STRING;
+
+        Type t = mi.formalTypes().get(0);
+        if (t.isByte() || t.isShort() || t.isInt())
+            return Constants.CONCAT_INT;
+        else if (t.isLong())
+            return Constants.CONCAT_LONG;
+        else if (t.isChar())
+            return Constants.CONCAT_CHAR;
+        else if (t.isBoolean())
+            return Constants.CONCAT_BOOLEAN;
+        else
+            return Constants.CONCAT_STRING;
+    }
+
     @Override
     public Node leaveTranslateLLVM(LLVMTranslator v) {
         Binary n = (Binary) node();
@@ -78,6 +162,10 @@ public class JLangBinaryExt extends JLangExt {
 
             res = LLVMBuildBinOp(v.builder, llvmIntBinopCode(op, elemType), left, right, "shift");
         }
+        else if (resType.isLongOrLess() && (op.equals(DIV) || op.equals(MOD))) {
+            // Integer division.
+            res = buildIntegerDivision(v, n, left, right);
+        }
         else if (resType.isLongOrLess() || (resType.isBoolean() && isBitwiseOp)) {
             // Integer binop or boolean logical operator.
             res = LLVMBuildBinOp(v.builder, llvmIntBinopCode(op, elemType), left, right, "ibinop");
@@ -103,6 +191,40 @@ public class JLangBinaryExt extends JLangExt {
         return super.leaveTranslateLLVM(v);
     }
 
+    /**
+     * Translates integer division or remainder. Throws an ArithmeticException
+     * if the divisor is zero (JLS SE 7, section 15.17.2), unless it is a nonzero
+     * constant. Signed division of MIN_VALUE by -1 overflows to MIN_VALUE, with
+     * remainder 0 (JLS SE 7, section 15.17.3), whereas LLVM leaves it undefined,
+     * and x86 traps; so division by -1 is translated as negation.
+     */
+    protected LLVMValueRef buildIntegerDivision(
+            LLVMTranslator v, Binary n, LLVMValueRef left, LLVMValueRef right) {
+        Operator op = n.operator();
+        Expr divisor = n.right();
+        Long constDivisor = divisor.isConstant() && divisor.constantValue() instanceof Number
+                ? ((Number) divisor.constantValue()).longValue()
+                : null;
+        if (constDivisor == null || constDivisor == 0)
+            v.utils.buildDivisionByZeroCheck(right);
+
+        int opcode = llvmIntBinopCode(op, n.left().type());
+        boolean signed = opcode == LLVMSDiv || opcode == LLVMSRem;
+        if (!signed || constDivisor != null && constDivisor != -1)
+            return LLVMBuildBinOp(v.builder, opcode, left, right, "ibinop");
+
+        LLVMTypeRef type = LLVMTypeOf(right);
+        LLVMValueRef isMinusOne = LLVMBuildICmp(
+                v.builder, LLVMIntEQ, right, LLVMConstAllOnes(type), "div.minus.one");
+        LLVMValueRef safeDivisor = LLVMBuildSelect(
+                v.builder, isMinusOne, LLVMConstInt(type, 1, /*sign-extend*/ 0), right, "div.divisor");
+        LLVMValueRef res = LLVMBuildBinOp(v.builder, opcode, left, safeDivisor, "ibinop");
+        LLVMValueRef minusOneRes = op.equals(DIV)
+                ? LLVMBuildNeg(v.builder, left, "div.neg")
+                : LLVMConstNull(type);
+        return LLVMBuildSelect(v.builder, isMinusOne, minusOneRes, res, "div.res");
+    }
+
     @Override
     public void translateLLVMConditional(LLVMTranslator v,
                                          LLVMBasicBlockRef trueBlock,
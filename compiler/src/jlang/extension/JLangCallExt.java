@@ -2,15 +2,19 @@
 
 package jlang.extension;
 
+import jlang.JLangOptions;
 import jlang.ast.JLangExt;
 import jlang.extension.JLangTryExt.ExceptionFrame;
 import jlang.util.Constants;
+import jlang.util.Devirtualizer.Targets;
 import jlang.visit.LLVMTranslator;
 import jlang.visit.LLVMTranslator.DispatchInfo;
 import org.bytedeco.javacpp.LLVM.*;
 import polyglot.ast.Call;
+import polyglot.ast.Expr;
 import polyglot.ast.Node;
 import polyglot.ast.Special;
+import polyglot.main.Options;
 import polyglot.types.*;
 import polyglot.util.Copy;
 import polyglot.util.SerialVersionUID;
@@ -43,6 +47,9 @@ public class JLangCallExt extends JLangProcedureCallExt {
             v.addTranslation(node(), new Object());
 
         ProcedureInstance pi = node().procedureInstance();
+        if (!pi.flags().isStatic())
+            v.utils.buildNullCheck((Expr) node().target());
+
         if (pi.flags().isSynchronized()) {
             // Handle synchronization at the caller site.
             //
@@ -156,6 +163,73 @@ public class JLangCallExt extends JLangProcedureCallExt {
         return determineIfDirect(c);
     }
 
+    /**
+     * Emits calls to atomic intrinsics inline (see {@link jlang.util.AtomicIntrinsics}).
+     * Makes virtual and interface calls with at most two possible targets direct,
+     * using class hierarchy analysis (see {@link Devirtualizer}). A bimorphic call
+     * compares the dispatch vector of the receiver against that of the single
+     * class using one of the two targets.
+     */
+    @Override
+    protected LLVMValueRef buildCall(
+            LLVMTranslator v, LLVMTypeRef funcType, LLVMValueRef[] args, boolean isVoid) {
+        Call n = node();
+        LLVMValueRef intrinsic = v.atomicIntrinsics.build(n.methodInstance(), funcType, args);
+        if (intrinsic != null)
+            return intrinsic;
+
+        Targets targets = direct ? null : v.devirtualizer.resolve(
+                n.target().type().toReference(), n.methodInstance());
+        if (targets == null)
+            return super.buildCall(v, funcType, args, isVoid);
+
+        if (targets.guard == null)
+            return buildDirectCall(v, targets.target, funcType, args, isVoid);
+
+        LLVMValueRef resTemp = isVoid ? null : v.utils.buildAlloca(
+                "devirt.res", LLVMGetReturnType(funcType));
+        LLVMBasicBlockRef hit = v.utils.buildBlock("devirt.guard.hit");
+        LLVMBasicBlockRef miss = v.utils.buildBlock("devirt.guard.miss");
+        LLVMBasicBlockRef end = v.utils.buildBlock("devirt.guard.end");
+
+        LLVMValueRef recv = v.getTranslation(n.target());
+        LLVMValueRef dvPtr = LLVMBuildBitCast(
+                v.builder, recv, v.utils.ptrTypeRef(v.utils.i8Ptr()), "cast.obj.dv");
+        LLVMValueRef dv = LLVMBuildLoad(v.builder, dvPtr, "load.dv");
+        LLVMValueRef guardDv = v.utils.buildCastToBytePtr(v.dv.getDispatchVectorFor(targets.guard));
+        LLVMValueRef isHit = LLVMBuildICmp(v.builder, LLVMIntEQ, dv, guardDv, "devirt.guard.cmp");
+        LLVMBuildCondBr(v.builder, isHit, hit, miss);
+
+        LLVMPositionBuilderAtEnd(v.builder, hit);
+        LLVMValueRef hitRes = buildDirectCall(v, targets.target, funcType, args, isVoid);
+        if (!isVoid)
+            LLVMBuildStore(v.builder, hitRes, resTemp);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, miss);
+        LLVMValueRef missRes = buildDirectCall(v, targets.fallback, funcType, args, isVoid);
+        if (!isVoid)
+            LLVMBuildStore(v.builder, missRes, resTemp);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+        return isVoid ? null : LLVMBuildLoad(v.builder, resTemp, "devirt.res");
+    }
+
+    /** Calls {@code impl} directly, cast to the type of the dispatched method. */
+    private LLVMValueRef buildDirectCall(
+            LLVMTranslator v, MethodInstance impl,
+            LLVMTypeRef funcType, LLVMValueRef[] args, boolean isVoid) {
+        LLVMValueRef func = v.utils.getFunction(v.mangler.proc(impl), v.utils.toLL(impl));
+        LLVMValueRef funcPtr = LLVMBuildBitCast(
+                v.builder, func, v.utils.ptrTypeRef(funcType), "cast.devirt");
+        if (isVoid) {
+            v.utils.buildProcCall(funcPtr, args);
+            return null;
+        }
+        return v.utils.buildFunCall(funcPtr, args);
+    }
+
     @Override
     protected LLVMValueRef buildFuncPtr(LLVMTranslator v, LLVMTypeRef funcType) {
         Call n = node();
@@ -188,6 +262,18 @@ public class JLangCallExt extends JLangProcedureCallExt {
         return LLVMBuildLoad(v.builder, funcPtrPtr, "load.dv.method");
     }
 
+    /**
+     * Builds an interface method lookup with a per-call-site inline cache.
+     *
+     * Each call site has a global pointing to an immutable cache entry of the form
+     * {dispatch vector, method pointer, miss count}. If the dispatch vector of the
+     * receiver matches the cached one, the method pointer is loaded directly from the
+     * entry. Otherwise we call into the runtime, which performs the full interface table
+     * lookup and publishes a new entry for the receiver's dispatch vector (up to a fixed
+     * number of misses, after which megamorphic call sites stop updating the cache).
+     *
+     * With {@code -no-interface-cache} every call goes through the runtime lookup.
+     */
     protected LLVMValueRef buildInterfaceMethodPtr(
             LLVMTranslator v, MethodInstance mi, LLVMTypeRef funcType) {
         Call n = node();
@@ -202,27 +288,88 @@ public class JLangCallExt extends JLangProcedureCallExt {
         LLVMValueRef intf_id_hash_const = LLVMConstInt(
                 LLVMInt32TypeInContext(v.context), hash,
                 /* sign-extend */ 0);
+        LLVMValueRef offset_local = LLVMConstInt(
+                LLVMInt32TypeInContext(v.context), dispInfo.methodIndex(),
+                /* sign-extend */ 0);
+        LLVMTypeRef funcPtrT = v.utils.ptrTypeRef(funcType);
+
+        if (!((JLangOptions) Options.global).interfaceInlineCache) {
+            LLVMTypeRef get_intf_method_func_ty = v.utils.functionType(
+                    v.utils.i8Ptr(), // void* return type
+                    v.utils.i8Ptr(), // jobject*
+                    LLVMInt32TypeInContext(v.context), // int
+                    v.utils.i8Ptr(), // void*
+                    LLVMInt32TypeInContext(v.context) // int
+            );
+            LLVMValueRef get_intf_method_func = v.utils.getFunction(
+                    "__getInterfaceMethod", get_intf_method_func_ty);
+            LLVMValueRef funcPtr = v.utils.buildFunCall(
+                    get_intf_method_func, // ptr to method code
+                    obj_bitcast, // the object
+                    intf_id_hash_const, // id hash code
+                    intf_id_global, // id
+                    offset_local); // method index
+            return LLVMBuildBitCast(v.builder, funcPtr, funcPtrT, "cast.interface.method");
+        }
+
+        // The inline cache for this call site, initially pointing to an
+        // empty entry (defined in the runtime) that never matches.
+        LLVMTypeRef entryType = v.utils.structType(
+                v.utils.i8Ptr(), // DispatchVector*
+                v.utils.i8Ptr(), // void* method
+                v.utils.llvmPtrSizedIntType()); // intptr_t misses
+        LLVMTypeRef entryPtrType = v.utils.ptrTypeRef(entryType);
+        LLVMValueRef emptyEntry = v.utils.getGlobal(Constants.EMPTY_INTERFACE_CACHE, entryType);
+        LLVMValueRef cache = v.utils.buildAnonGlobal(emptyEntry, /*IsConstant*/ false);
+
+        LLVMValueRef funcPtrTemp = v.utils.buildAlloca("intf.method", v.utils.i8Ptr());
+        LLVMBasicBlockRef hit = v.utils.buildBlock("intf.cache.hit");
+        LLVMBasicBlockRef miss = v.utils.buildBlock("intf.cache.miss");
+        LLVMBasicBlockRef end = v.utils.buildBlock("intf.cache.end");
+
+        // Compare the receiver's dispatch vector against the cached one.
+        // The acquire load pairs with the release store in the runtime.
+        LLVMValueRef entry = LLVMBuildLoad(v.builder, cache, "load.intf.cache");
+        LLVMSetOrdering(entry, LLVMAtomicOrderingAcquire);
+        LLVMSetAlignment(entry, v.utils.llvmPtrSize());
+        LLVMValueRef cachedDv = LLVMBuildLoad(
+                v.builder, v.utils.buildGEP(entry, 0, 0), "load.cached.dv");
+        LLVMValueRef dvPtr = LLVMBuildBitCast(
+                v.builder, recv, v.utils.ptrTypeRef(v.utils.i8Ptr()), "cast.obj.dv");
+        LLVMValueRef dv = LLVMBuildLoad(v.builder, dvPtr, "load.dv");
+        LLVMValueRef isHit = LLVMBuildICmp(v.builder, LLVMIntEQ, cachedDv, dv, "intf.cache.cmp");
+        LLVMBuildCondBr(v.builder, isHit, hit, miss);
+
+        LLVMPositionBuilderAtEnd(v.builder, hit);
+        LLVMValueRef cachedMethod = LLVMBuildLoad(
+                v.builder, v.utils.buildGEP(entry, 0, 1), "load.cached.method");
+        LLVMBuildStore(v.builder, cachedMethod, funcPtrTemp);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, miss);
         LLVMTypeRef get_intf_method_func_ty = v.utils.functionType(
                 v.utils.i8Ptr(), // void* return type
                 v.utils.i8Ptr(), // jobject*
                 LLVMInt32TypeInContext(v.context), // int
                 v.utils.i8Ptr(), // void*
-                LLVMInt32TypeInContext(v.context) // int
+                LLVMInt32TypeInContext(v.context), // int
+                v.utils.ptrTypeRef(entryPtrType) // InterfaceCacheEntry**
         );
         LLVMValueRef get_intf_method_func = v.utils.getFunction(
-                "__getInterfaceMethod", get_intf_method_func_ty);
-        LLVMValueRef offset_local = LLVMConstInt(
-                LLVMInt32TypeInContext(v.context), dispInfo.methodIndex(),
-                /* sign-extend */ 0);
+                Constants.GET_INTERFACE_METHOD_CACHED, get_intf_method_func_ty);
         LLVMValueRef funcPtr = v.utils.buildFunCall(
                 get_intf_method_func, // ptr to method code
                 obj_bitcast, // the object
                 intf_id_hash_const, // id hash code
                 intf_id_global, // id
-                offset_local); // method index
-
-        LLVMTypeRef funcPtrT = v.utils.ptrTypeRef(funcType);
-        return LLVMBuildBitCast(v.builder, funcPtr, funcPtrT, "cast.interface.method");
+                offset_local, // method index
+                cache); // the inline cache
+        LLVMBuildStore(v.builder, funcPtr, funcPtrTemp);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+        LLVMValueRef method = LLVMBuildLoad(v.builder, funcPtrTemp, "load.intf.method");
+        return LLVMBuildBitCast(v.builder, method, funcPtrT, "cast.interface.method");
     }
 
     @Override
@@ -174,6 +174,8 @@ public class JLangCastExt extends JLangExt {
         Position pos = e.position();
         LocalDecl val = v.tnf.TempSSA("castExpr", e);
         Throw throwExn = v.tnf.Throw(pos, v.ts.ClassCastException(), Collections.emptyList());
+        throwExn = ((JLangThrowExt) JLangExt.ext(throwExn))
+                .setFailedCheck(Constants.PREALLOCATED_CLASS_CAST);
         Instanceof check = v.tnf.InstanceOf(v.tnf.Local(pos, val), to);
         Binary nullCheck = v.tnf.IsNull(v.tnf.Local(pos,  val));
 		Binary isSafe = v.tnf.CondOr(nullCheck, check);
@@ -193,6 +195,8 @@ public class JLangCastExt extends JLangExt {
         }
         else if (from.isPrimitive()) {
             // Call String.valueOf(...)
+            // String concatenation elides this call for most primitive types,
+            // and formats the value directly (see JLangBinaryExt#buildStringConcat).
             return v.tnf.StaticCall(pos, v.ts.String(), v.ts.String(), "valueOf", e);
         }
         else if (e instanceof StringLit) {
@@ -7,6 +7,7 @@ import org.bytedeco.javacpp.LLVM;
 import org.bytedeco.javacpp.LLVM.*;
 
 import jlang.ast.JLangExt;
+import jlang.extension.JLangTryExt.ExceptionFrame;
 import jlang.util.Constants;
 import jlang.visit.LLVMTranslator;
 import polyglot.ast.*;
@@ -14,12 +15,18 @@ import polyglot.types.*;
 import polyglot.util.SerialVersionUID;
 
 import java.lang.Override;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static jlang.extension.JLangSynchronizedExt.buildMonitorFunc;
-import static jlang.extension.JLangSynchronizedExt.buildMonitorFuncWithGlobalMutex;
+import static jlang.util.Constants.BEGIN_CLASS_INIT_FUNC;
+import static jlang.util.Constants.END_CLASS_INIT_FUNC;
+import static jlang.util.Constants.FAIL_CLASS_INIT_FUNC;
 import static jlang.util.Constants.REGISTER_CLASS_FUNC;
 import static jlang.util.Constants.RUNTIME_ARRAY;
 import static org.bytedeco.javacpp.LLVM.*;
@@ -64,6 +71,10 @@ public class JLangClassDeclExt extends JLangExt {
         LLVMValueRef classObjectGlobal = v.utils.getClassObjectGlobal(ct);
         LLVMSetInitializer(classObjectGlobal, LLVMConstNull(classType));
 
+        // Declare class initialization state.
+        LLVMValueRef initStateGlobal = v.utils.getClassInitStateGlobal(ct);
+        LLVMSetInitializer(initStateGlobal, LLVMConstNull(v.utils.llvmPtrSizedIntType()));
+
         // Instance field info.
         LLVMTypeRef fieldInfoType = v.utils.structType(
                 v.utils.i8Ptr(), // char* name
@@ -72,7 +83,10 @@ public class JLangClassDeclExt extends JLangExt {
                 v.utils.i8Ptr(), // type_ptr*
                 v.utils.i8Ptr() // char* sig
         );
+        // Fields are sorted by name (and static fields by signature) so that the
+        // runtime can find them with a binary search.
         LLVMValueRef[] fieldInfoElems = ct.fields().stream().filter(fi -> !fi.flags().isStatic())
+                .sorted(Comparator.comparing((FieldInstance fi) -> fi.name(), JLangClassDeclExt::compareCStrs))
             	.map(fi -> {
             		LLVMValueRef name = v.utils.buildGlobalCStr(fi.name());
             		LLVMValueRef nullPtr = LLVMConstNull(v.utils.toLL(ct));
@@ -95,6 +109,9 @@ public class JLangClassDeclExt extends JLangExt {
         );
 
         LLVMValueRef[] staticFieldElems = ct.fields().stream().filter(fi -> fi.flags().isStatic())
+                .sorted(Comparator.comparing((FieldInstance fi) -> fi.name(), JLangClassDeclExt::compareCStrs)
+                        .thenComparing(fi -> v.mangler.jniUnescapedSignature(fi.type()),
+                                JLangClassDeclExt::compareCStrs))
             	.map(fi -> {
             		LLVMValueRef name = v.utils.buildGlobalCStr(fi.name());
             		LLVMValueRef signature = v.utils.buildGlobalCStr(v.mangler.jniUnescapedSignature(fi.type()));
@@ -118,13 +135,28 @@ public class JLangClassDeclExt extends JLangExt {
                 v.utils.i32(),      // modifiers
                 v.utils.i8Ptr(),     // return type
                 v.utils.i32(),      // number of arg types
-                v.utils.ptrTypeRef(v.utils.i8Ptr())     // argTypes void**
+                v.utils.ptrTypeRef(v.utils.i8Ptr()),     // argTypes void**
+                v.utils.i8Ptr()     // char* signatures of the declared exception types
         );
-        LLVMValueRef[] methodInfoElems = Stream.concat(
+        List<ProcedureInstance> procs = Stream.<ProcedureInstance>concat(
                 ct.methods().stream(), ct.constructors().stream())
+                .collect(Collectors.toList());
+        LLVMValueRef[] methodInfoElems = procs.stream()
                 .map(pi -> buildMethodInfo(v, ct, pi))
                 .toArray(LLVMValueRef[]::new);
 
+        // The runtime relies on the order of the method array (e.g., for interface
+        // method dispatch), so rather than sorting the methods themselves we emit
+        // their indices sorted by name and signature, for a binary search.
+        Comparator<Integer> byNameAndSig = Comparator
+                .comparing((Integer i) -> procName(procs.get(i)), JLangClassDeclExt::compareCStrs)
+                .thenComparing(i -> v.mangler.jniUnescapedSignature(procs.get(i)),
+                        JLangClassDeclExt::compareCStrs);
+        LLVMValueRef[] methodOrderElems = IntStream.range(0, procs.size()).boxed()
+                .sorted(byNameAndSig)
+                .map(i -> LLVMConstInt(v.utils.i32(), i, /*sign-extend*/ 0))
+                .toArray(LLVMValueRef[]::new);
+
         //Info about implemented interfaces. Needed by runtime reflection
         LLVMValueRef[] interfaceInfoElems = v.allInterfaces(ct).stream()
         		.map(intf -> v.utils.getClassObjectGlobal(intf))
@@ -143,7 +175,8 @@ public class JLangClassDeclExt extends JLangExt {
                 v.utils.i32(),      // int32_t
                 v.utils.ptrTypeRef(staticFieldType),     // JavaStaticFieldInfo*
                 v.utils.i32(),      // int32_t
-                v.utils.ptrTypeRef(methodInfoType)      // JavaMethodInfo*
+                v.utils.ptrTypeRef(methodInfoType),      // JavaMethodInfo*
+                v.utils.ptrTypeRef(v.utils.i32())      // int32_t*
         );
 
         // This layout must precisely mirror the layout defined in the runtime (class.cpp).
@@ -191,9 +224,10 @@ public class JLangClassDeclExt extends JLangExt {
                 LLVMConstInt(v.utils.i32(), methodInfoElems.length, /*sign-extend*/ 0),
 
                 // Methods, { char* name, char* sig, int32_t offset, void* fnPtr, void* trampoline }
-                v.utils.buildGlobalArrayAsPtr(methodInfoType, methodInfoElems)
-
+                v.utils.buildGlobalArrayAsPtr(methodInfoType, methodInfoElems),
 
+                // Method indices sorted by name and signature, int32_t*
+                v.utils.buildGlobalConstArrayAsPtr(v.utils.i32(), methodOrderElems)
         );
 
         // Emit class info as a global variable.
@@ -208,14 +242,48 @@ public class JLangClassDeclExt extends JLangExt {
         String debugName = "load_" + ct.fullName();
 
         Runnable buildBody = () -> {
-            // Synchronize the class loading function.
-            buildMonitorFuncWithGlobalMutex(v, Constants.MONITOR_ENTER);
+            // Claim initialization of this class. The runtime blocks while another
+            // thread is initializing it, and returns false if the class is already
+            // initialized or is being initialized by the current thread, in which
+            // case we return the class object as is. If an earlier initialization
+            // failed, the runtime throws NoClassDefFoundError instead.
+            // See JLS 7, section 12.4.2.
+            LLVMTypeRef stateType = v.utils.ptrTypeRef(v.utils.llvmPtrSizedIntType());
+            LLVMTypeRef initFuncType = v.utils.functionType(
+                    v.utils.i8(), stateType, v.utils.ptrTypeRef(LLVMTypeOf(classInfo)));
+            LLVMValueRef beginInit = v.utils.getFunction(BEGIN_CLASS_INIT_FUNC, initFuncType);
+            LLVMValueRef claimed = v.utils.buildFunCall(
+                    beginInit, initStateGlobal, classInfoGlobal);
+            LLVMValueRef mustInit = LLVMBuildICmp(
+                    v.builder, LLVMIntNE, claimed, LLVMConstNull(v.utils.i8()), "must.init");
+            LLVMBasicBlockRef initClass = v.utils.buildBlock("init.class");
+            LLVMBasicBlockRef initialized = v.utils.buildBlock("class.initialized");
+            LLVMBuildCondBr(v.builder, mustInit, initClass, initialized);
+
+            LLVMPositionBuilderAtEnd(v.builder, initialized);
+            LLVMValueRef existing = v.utils.loadClassObject(ct);
+            LLVMBuildRet(v.builder, existing);
+
+            LLVMPositionBuilderAtEnd(v.builder, initClass);
+
+            // Exceptions thrown while initializing the class, including by the
+            // initialization of its super classes, land here. See buildInitFailure.
+            LLVMBasicBlockRef lpadInit = v.utils.buildBlock("lpad.init");
+            v.pushExceptionFrame(new ExceptionFrame(v, lpadInit, null));
 
             // Allocate and store a new java.lang.Class instance.
             // Note that we do not call any constructors for the allocated class objects.
+            // The class object is preceded by a word in which the runtime stores a
+            // pointer to the class information, so that the runtime can find it
+            // without a map lookup. The collector recognizes the resulting interior
+            // pointer, so storing it in the global keeps the allocation alive.
             LLVMValueRef calloc = LLVMGetNamedFunction(v.mod, Constants.CALLOC);
-            LLVMValueRef memory = v.utils.buildFunCall(calloc, v.obj.sizeOf(v.ts.Class()));
-            LLVMValueRef clazz = LLVMBuildBitCast(v.builder, memory, classType, "cast");
+            LLVMValueRef infoWordSize = LLVMConstInt(
+                    v.utils.llvmPtrSizedIntType(), v.utils.llvmPtrSize(), /*sign-extend*/ 0);
+            LLVMValueRef size = LLVMConstAdd(v.obj.sizeOf(v.ts.Class()), infoWordSize);
+            LLVMValueRef memory = v.utils.buildFunCall(calloc, size);
+            LLVMValueRef classMemory = v.utils.buildGEP(memory, infoWordSize);
+            LLVMValueRef clazz = LLVMBuildBitCast(v.builder, classMemory, classType, "cast");
             LLVMValueRef classGlobal = v.utils.getGlobal(v.mangler.classObj(ct), classType);
             LLVMBuildStore(v.builder, clazz, classGlobal);
 
@@ -237,6 +305,10 @@ public class JLangClassDeclExt extends JLangExt {
             	v.utils.buildClassLoadCheck(intf);
             }
 
+            // This class is being initialized by the current thread, so static
+            // initializers need not check it (or its super classes) again.
+            v.classInitChecks.markInitialized(ct);
+
             // Call into runtime to register this class.
             LLVMTypeRef regClassFuncType = v.utils.functionType(
                     v.utils.voidType(), classType, v.utils.ptrTypeRef(LLVMTypeOf(classInfo)));
@@ -267,10 +339,17 @@ public class JLangClassDeclExt extends JLangExt {
                 }
             }
 
-            buildMonitorFuncWithGlobalMutex(v, Constants.MONITOR_EXIT);
+            v.popExceptionFrame();
+
+            // Publish the initialized class, waking up any threads waiting on it.
+            LLVMTypeRef endInitFuncType = v.utils.functionType(v.utils.voidType(), stateType);
+            LLVMValueRef endInit = v.utils.getFunction(END_CLASS_INIT_FUNC, endInitFuncType);
+            v.utils.buildProcCall(endInit, initStateGlobal);
 
             // Return the loaded class.
             LLVMBuildRet(v.builder, clazz);
+
+            buildInitFailure(v, lpadInit, initStateGlobal);
         };
 
         v.utils.buildFunc(
@@ -280,6 +359,37 @@ public class JLangClassDeclExt extends JLangExt {
                 buildBody);
     }
 
+    /**
+     * Builds the landing pad {@code lpadInit}, which catches any exception thrown
+     * by the static initializers of a class. The runtime marks the class as
+     * erroneous, so that other threads waiting for it and later uses of it throw
+     * NoClassDefFoundError, and rethrows the exception, wrapped in an
+     * ExceptionInInitializerError unless it is an Error. See JLS 7, section 12.4.2.
+     */
+    private static void buildInitFailure(
+            LLVMTranslator v, LLVMBasicBlockRef lpadInit, LLVMValueRef initStateGlobal) {
+        LLVMPositionBuilderAtEnd(v.builder, lpadInit);
+        LLVMTypeRef lpadT = v.utils.structType(v.utils.i8Ptr(), v.utils.i32());
+        LLVMValueRef personalityFunc = v.utils.getFunction(
+                Constants.PERSONALITY_FUNC,
+                v.utils.functionType(LLVMInt32TypeInContext(v.context)));
+        LLVMValueRef lpadInitRes = LLVMBuildLandingPad(
+                v.builder, lpadT, personalityFunc, /*numClauses*/ 1, "lpad.init.res");
+        LLVMAddClause(lpadInitRes, LLVMConstNull(v.utils.i8Ptr())); // Catch-all clause.
+        LLVMValueRef exn = LLVMBuildExtractValue(v.builder, lpadInitRes, 0, "exn");
+
+        LLVMValueRef extractJavaExnFunc = v.utils.getFunction(
+                Constants.EXTRACT_EXCEPTION,
+                v.utils.functionType(v.utils.i8Ptr(), v.utils.i8Ptr()));
+        LLVMValueRef jexn = v.utils.buildFunCall(extractJavaExnFunc, exn);
+
+        LLVMTypeRef failInitFuncType = v.utils.functionType(
+                v.utils.voidType(), LLVMTypeOf(initStateGlobal), v.utils.i8Ptr());
+        LLVMValueRef failInit = v.utils.getFunction(FAIL_CLASS_INIT_FUNC, failInitFuncType);
+        v.utils.buildProcCall(failInit, initStateGlobal, jexn);
+        LLVMBuildUnreachable(v.builder);
+    }
+
     /**
      * Builds the following constant struct for {@code pi}.
      *
@@ -291,15 +401,18 @@ public class JLangClassDeclExt extends JLangExt {
      *   void* trampoline; // Trampoline for casting the function pointer to the correct type.
      *   void* intf_id;    // For interface methods, the interface method id.
      *   int32_t intf_id_hash; // A precomputed hash of the intf_id.
-     };
+     *   int32_t modifiers;
+     *   jclass* returnType;
+     *   int32_t numArgTypes;
+     *   jclass** argTypes;
+     *   char* exceptions; // JNI signatures of the declared exception types, concatenated.
+     * };
      */
     protected static LLVMValueRef buildMethodInfo(
             LLVMTranslator v, ClassType ct, ProcedureInstance pi) {
 
         assert pi instanceof ConstructorInstance || pi instanceof MethodInstance;
-        LLVMValueRef name = pi instanceof ConstructorInstance
-                ? v.utils.buildGlobalCStr("<init>")
-                : v.utils.buildGlobalCStr(((MethodInstance) pi).name());
+        LLVMValueRef name = v.utils.buildGlobalCStr(procName(pi));
         LLVMValueRef sig = v.utils.buildGlobalCStr(v.mangler.jniUnescapedSignature(pi));
 
         LLVMValueRef offset;
@@ -348,8 +461,30 @@ public class JLangClassDeclExt extends JLangExt {
             returnType = getTypePointer(v, mi.returnType());
         }
 
+        String exceptionSigs = pi.throwTypes().stream()
+                .map(t -> v.mangler.jniUnescapedSignature(v.utils.erasureLL(t)))
+                .collect(Collectors.joining());
+        LLVMValueRef exceptions = v.utils.buildGlobalCStr(exceptionSigs);
+
         return v.utils.buildConstStruct(name, sig, offset, fnPtrCast, trampolineCast, intfPtr, hash,
-                modifiers, returnType, numArgTypes, argTypesPtr);
+                modifiers, returnType, numArgTypes, argTypesPtr, exceptions);
+    }
+
+    /** The name of {@code pi} in the runtime method info. */
+    private static String procName(ProcedureInstance pi) {
+        return pi instanceof ConstructorInstance ? "<init>" : ((MethodInstance) pi).name();
+    }
+
+    /** Compares strings in the order used by strcmp in the runtime. */
+    private static int compareCStrs(String a, String b) {
+        byte[] x = a.getBytes(StandardCharsets.UTF_8);
+        byte[] y = b.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0, n = Math.min(x.length, y.length); i < n; ++i) {
+            int cmp = Integer.compare(x[i] & 0xff, y[i] & 0xff);
+            if (cmp != 0)
+                return cmp;
+        }
+        return Integer.compare(x.length, y.length);
     }
 
     @SuppressWarnings("WeakerAccess")
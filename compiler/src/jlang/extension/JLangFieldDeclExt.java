@@ -35,6 +35,11 @@ public class JLangFieldDeclExt extends JLangExt {
 		LLVMSetExternallyInitialized(global, 0);
 		LLVMSetInitializer(global, val);
 		LLVMSetLinkage(global, LLVMLinkOnceODRLinkage);
+		// A string constant may be read before the class is initialized,
+		// so the field is redirected to the interned string like the slot
+		// of a string literal (see JLangStringLitExt).
+		if (n.declType().isReference())
+		    v.addStringLiteralSlot(mangledName, global);
 	    } else {
 		LLVMSetInitializer(global, LLVMConstNull(type));
 	    }
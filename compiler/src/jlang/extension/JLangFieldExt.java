@@ -2,14 +2,22 @@
 
 package jlang.extension;
 
+import polyglot.ast.Expr;
 import polyglot.ast.Field;
+import polyglot.ast.LocalDecl;
 import polyglot.ast.Node;
+import polyglot.ast.Receiver;
+import polyglot.ast.Special;
+import polyglot.ast.Stmt;
+import polyglot.types.ClassType;
 import polyglot.types.FieldInstance;
 import polyglot.util.SerialVersionUID;
 
 import java.lang.Override;
+import java.util.List;
 
 import jlang.ast.JLangExt;
+import jlang.visit.DesugarLocally;
 import jlang.visit.LLVMTranslator;
 
 import static org.bytedeco.javacpp.LLVM.*;
@@ -20,25 +28,62 @@ public class JLangFieldExt extends JLangExt {
     @Override
     public Node overrideTranslateLLVM(Node parent, LLVMTranslator v) {
         Field n = (Field) node();
-        LLVMValueRef ptr = translateAsLValue(v); // Emits debug info.
-        LLVMValueRef load = LLVMBuildLoad(v.builder, ptr, "load." + n.name());
+        LLVMValueRef ptr = translateFieldPtr(v, /*isRead*/ true); // Emits debug info.
+        LLVMValueRef load = n.flags().isVolatile()
+                ? v.utils.buildVolatileLoad(ptr, n.type(), "load." + n.name())
+                : LLVMBuildLoad(v.builder, ptr, "load." + n.name());
         v.addTranslation(n, load);
         return super.leaveTranslateLLVM(v);
     }
 
     @Override
     public LLVMValueRef translateAsLValue(LLVMTranslator v) {
+        return translateFieldPtr(v, /*isRead*/ false);
+    }
+
+    /**
+     * Returns true if {@code e} accesses a volatile field. Reads and writes of such
+     * fields must go through the field itself (rather than through its address,
+     * see {@link jlang.ast.AddressOf}) so that they are translated as volatile accesses.
+     */
+    public static boolean isVolatileField(Expr e) {
+        return e instanceof Field && ((Field) e).flags().isVolatile();
+    }
+
+    /**
+     * Returns a copy of {@code f} whose target is a temporary, adding the declaration
+     * of the temporary to {@code stmts}. This allows desugar transformations to both
+     * read and write {@code f} while evaluating its target only once.
+     */
+    public static Field withStableTarget(Field f, List<Stmt> stmts, DesugarLocally v) {
+        Receiver target = f.target();
+        if (f.flags().isStatic() || !(target instanceof Expr) || target instanceof Special)
+            return f;
+        LocalDecl targetFlat = v.tnf.TempSSA("target", (Expr) target);
+        stmts.add(targetFlat);
+        return f.target(v.tnf.Local(f.position(), targetFlat));
+    }
+
+    private LLVMValueRef translateFieldPtr(LLVMTranslator v, boolean isRead) {
         Field n = (Field) node();
         FieldInstance fi = n.fieldInstance();
         n.visitChild(n.target(), v);
 
         if (n.flags().isStatic()) {
             // Ensure containing class is initialized. See JLS 7, section 12.4.1.
-            // TODO: Can optimize this to avoid checks when inside the container class.
-            v.utils.buildClassLoadCheck(fi.container().toClass());
+            // Reads can skip the check if initialization cannot change the value
+            // of any static field. Checks within the container class itself are
+            // elided by buildClassLoadCheck.
+            ClassType container = fi.container().toClass();
+            if (isRead && v.classInitChecks.hasTrivialInitializer(container)) {
+                v.classInitChecks.recordElided();
+            } else {
+                v.utils.buildClassLoadCheck(container);
+            }
             return v.utils.getStaticField(fi);
         }
         else {
+            v.utils.buildNullCheck((Expr) n.target());
             LLVMValueRef instance = v.getTranslation(n.target());
             LLVMValueRef ptr = v.obj.buildFieldElementPtr(instance, fi);
 
@@ -82,11 +82,9 @@ public class JLangNewExt extends JLangProcedureCallExt {
         New n = (New) node();
         ConstructorInstance ci = n.constructorInstance();
         ReferenceType clazz = ci.container();
-        LLVMValueRef size = v.obj.sizeOf(ci.container());
 
         // Allocate space for the new object.
-        LLVMValueRef calloc = LLVMGetNamedFunction(v.mod, Constants.CALLOC);
-        LLVMValueRef rawPtr = v.utils.buildFunCall(calloc, size);
+        LLVMValueRef rawPtr = v.utils.buildObjectAlloc(clazz);
 
         // Bitcast object
         LLVMValueRef obj = LLVMBuildBitCast(v.builder, rawPtr, v.utils.toLL(clazz), "cast.new");
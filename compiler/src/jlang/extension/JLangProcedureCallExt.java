@@ -66,7 +66,6 @@ abstract class JLangProcedureCallExt extends JLangExt {
         LLVMTypeRef funcType = v.utils.functionType(retType, paramTypes);
 
         LLVMValueRef[] args = buildErasedArgs(v, paramTypes);
-        LLVMValueRef funcPtr = buildFuncPtr(v, funcType);
 
         Type returnType = pi instanceof MethodInstance
                 ? ((MethodInstance) pi).returnType()
@@ -74,11 +73,11 @@ abstract class JLangProcedureCallExt extends JLangExt {
 
         if (returnType.isVoid()) {
             // Procedure call.
-            v.utils.buildProcCall(funcPtr, args);
+            buildCall(v, funcType, args, /*isVoid*/ true);
         }
         else {
             // Function call; bitcast result to handle erasure.
-            LLVMValueRef call = v.utils.buildFunCall(funcPtr, args);
+            LLVMValueRef call = buildCall(v, funcType, args, /*isVoid*/ false);
             LLVMTypeRef resType = v.utils.toLL(returnType);
             LLVMValueRef erasureCast = LLVMBuildBitCast(v.builder, call, resType, "cast.erasure");
             v.addTranslation(n, erasureCast);
@@ -114,6 +113,20 @@ abstract class JLangProcedureCallExt extends JLangExt {
         return res;
     }
 
+    /**
+     * Emits the call itself, returning the result (or null if {@code isVoid}).
+     * Calls the function pointer from {@link #buildFuncPtr} unless overridden.
+     */
+    protected LLVMValueRef buildCall(
+            LLVMTranslator v, LLVMTypeRef funcType, LLVMValueRef[] args, boolean isVoid) {
+        LLVMValueRef funcPtr = buildFuncPtr(v, funcType);
+        if (isVoid) {
+            v.utils.buildProcCall(funcPtr, args);
+            return null;
+        }
+        return v.utils.buildFunCall(funcPtr, args);
+    }
+
     /** Returns the receiver argument for this call. Only called if one exists. */
     protected abstract LLVMValueRef buildReceiverArg(LLVMTranslator v);
 
@@ -74,6 +74,11 @@ public class JLangProcedureDeclExt extends JLangExt {
                 v.utils.buildClassLoadCheck(ct);
             }
 
+            // The container class is now known to be initialized, either because we
+            // just checked or because an instance of it exists. Further checks for
+            // the container class or its superclasses in this method are redundant.
+            v.classInitChecks.markInitialized(ct);
+
             // Register as entry point if applicable.
             boolean isEntryPoint = n.name().equals("main")
                     && n.flags().isPublic()
@@ -100,12 +105,29 @@ public class JLangProcedureDeclExt extends JLangExt {
                 assert n.flags().isNative();
                 // Build trampoline to call the "real" native method.
 
-                // Call into the runtime to retrieve the native function pointer.
-                // (Note that we could cache the function pointer if performance is an issue.)
+                // Load the native function pointer from a slot private to this stub.
+                // On the first call the slot is empty, so we call into the runtime,
+                // which looks up the function and fills the slot. The acquire load
+                // pairs with the release store in the runtime.
+                LLVMValueRef clazz = v.utils.loadClassObject(ct);
+                LLVMValueRef slot = v.utils.buildAnonGlobal(
+                        LLVMConstNull(v.utils.i8Ptr()), /*IsConstant*/ false);
+                LLVMValueRef funcPtrTemp = v.utils.buildAlloca("native.func", v.utils.i8Ptr());
+                LLVMBasicBlockRef resolve = v.utils.buildBlock("native.resolve");
+                LLVMBasicBlockRef resolved = v.utils.buildBlock("native.resolved");
+
+                LLVMValueRef cached = LLVMBuildLoad(v.builder, slot, "native.cached");
+                LLVMSetOrdering(cached, LLVMAtomicOrderingAcquire);
+                LLVMSetAlignment(cached, v.utils.llvmPtrSize());
+                LLVMBuildStore(v.builder, cached, funcPtrTemp);
+                LLVMValueRef isNull = LLVMBuildIsNull(v.builder, cached, "native.uncached");
+                LLVMBuildCondBr(v.builder, isNull, resolve, resolved);
+
                 // The arguments here must precisely match the signature of
                 // the function defined in the runtime.
-                LLVMValueRef clazz = v.utils.loadClassObject(ct);
+                LLVMPositionBuilderAtEnd(v.builder, resolve);
                 LLVMValueRef[] runtimeCallArgs = {
+                        slot,
                         clazz,
                         v.utils.buildGlobalCStr(n.name()),
                         v.utils.buildGlobalCStr(v.mangler.jniUnescapedSignature(pi)),
@@ -118,7 +140,12 @@ public class JLangProcedureDeclExt extends JLangExt {
                 LLVMTypeRef runtimeCallType = v.utils.functionType(
                         v.utils.i8Ptr(), runtimeCallArgTypes);
                 LLVMValueRef runtimeFunc = v.utils.getFunction(GET_NATIVE_FUNC, runtimeCallType);
-                LLVMValueRef rawFuncPtr = v.utils.buildFunCall(runtimeFunc, runtimeCallArgs);
+                LLVMValueRef lookedUp = v.utils.buildFunCall(runtimeFunc, runtimeCallArgs);
+                LLVMBuildStore(v.builder, lookedUp, funcPtrTemp);
+                LLVMBuildBr(v.builder, resolved);
+
+                LLVMPositionBuilderAtEnd(v.builder, resolved);
+                LLVMValueRef rawFuncPtr = LLVMBuildLoad(v.builder, funcPtrTemp, "native.func");
 
                 // Get JNIEnv and forward all args to the native method call.
                 List<LLVMValueRef> args = new ArrayList<>();
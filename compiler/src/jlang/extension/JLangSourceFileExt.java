@@ -9,6 +9,7 @@ import jlang.ast.JLangExt;
 import jlang.util.Constants;
 import jlang.visit.LLVMTranslator;
 import polyglot.ast.Node;
+import polyglot.ast.SourceFile;
 import polyglot.main.Options;
 import polyglot.types.TypeSystem;
 import polyglot.util.SerialVersionUID;
@@ -25,6 +26,10 @@ public class JLangSourceFileExt extends JLangExt {
 
     @Override
     public LLVMTranslator enterTranslateLLVM(LLVMTranslator v) {
+        // Collect class declarations up front so that class initialization
+        // checks can be elided for classes declared later in the file.
+        v.classInitChecks.collectClassDecls((SourceFile) node());
+
         // Add a calloc declaration to the current module (declare i8* @GC_malloc(i64)).
         LLVMTypeRef retType = v.utils.ptrTypeRef(v.utils.i8());
         LLVMTypeRef sizeType = v.utils.llvmPtrSizedIntType();
@@ -56,6 +61,9 @@ public class JLangSourceFileExt extends JLangExt {
             }
         }
 
+        // Intern the string literals of this module when it is loaded.
+        buildStringLiteralCtor(v);
+
         // Build ctor functions, if any.
         buildCtors(v);
 
@@ -95,6 +103,32 @@ public class JLangSourceFileExt extends JLangExt {
         v.popFn();
     }
 
+    /**
+     * Build a ctor that passes every string literal slot in the module to the
+     * runtime in a single call. The runtime interns the literal each slot points
+     * to and redirects the slot to the interned string, so that evaluating a
+     * literal is a single load with no runtime call of its own.
+     */
+    private static void buildStringLiteralCtor(LLVMTranslator v) {
+        LLVMValueRef[] lits = v.getStringLiteralSlots().stream()
+                .map((slot) -> LLVMConstBitCast(slot, v.utils.ptrTypeRef(v.utils.i8Ptr())))
+                .toArray(LLVMValueRef[]::new);
+        if (lits.length == 0)
+            return;
+
+        v.utils.buildCtor(() -> {
+            LLVMTypeRef i32 = LLVMInt32TypeInContext(v.context);
+            LLVMTypeRef litsType = v.utils.ptrTypeRef(v.utils.ptrTypeRef(v.utils.i8Ptr()));
+            LLVMTypeRef funcType = v.utils.functionType(v.utils.voidType(), litsType, i32);
+            LLVMValueRef intern = v.utils.getFunction(Constants.INTERN_STRING_FUNC, funcType);
+            LLVMValueRef arr = v.utils.buildGlobalConstArrayAsPtr(
+                    v.utils.ptrTypeRef(v.utils.i8Ptr()), lits);
+            LLVMValueRef count = LLVMConstInt(i32, lits.length, /*sign-extend*/ 0);
+            v.utils.buildProcCall(intern, arr, count);
+            return null;
+        });
+    }
+
     /**
      * Build ctor functions using the ctor suppliers added to the visitor during translation.
      */
@@ -9,14 +9,15 @@ import polyglot.types.ParsedClassType;
 
 import java.lang.Override;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import jlang.ast.JLangExt;
 import jlang.visit.LLVMTranslator;
 
-import static jlang.util.Constants.INTERN_STRING_FUNC;
 import static org.bytedeco.javacpp.LLVM.*;
 
 public class JLangStringLitExt extends JLangExt {
@@ -24,19 +25,37 @@ public class JLangStringLitExt extends JLangExt {
     @Override
     public Node leaveTranslateLLVM(LLVMTranslator v) {
         StringLit n = (StringLit) node();
-
-	LLVMValueRef stringVar = translateString(n.value(), v, lang());
-        LLVMTypeRef internStringFuncType = v.utils.functionType(v.utils.voidType(), LLVMTypeOf(stringVar));
-        LLVMValueRef internString = v.utils.getFunction(INTERN_STRING_FUNC, internStringFuncType);
-        v.utils.buildProcCall(internString, stringVar);
-        v.addTranslation(n,LLVMConstBitCast(stringVar, v.utils.toLL(n.type())));
+        // A literal is loaded from its slot, which the module ctor redirects to
+        // the interned string with the same contents (see JLangSourceFileExt).
+        LLVMValueRef slot = translateStringSlot(n.value(), v, lang());
+        LLVMValueRef stringVar = LLVMBuildLoad(v.builder, slot, "string.lit");
+        v.addTranslation(n, LLVMBuildBitCast(v.builder, stringVar, v.utils.toLL(n.type()), "cast"));
         return super.leaveTranslateLLVM(v);
     }
 
+    /**
+     * Returns a global that holds a pointer to the string literal global for
+     * {@code obj}. The literal global alone does not ensure identity: an image
+     * that does not share the symbol (e.g., the JDK library on macOS, which
+     * uses a two-level namespace) has its own copy, and an equal string may be
+     * interned before the module is loaded. So the slot is registered with
+     * the runtime, which points it to the interned string when the module
+     * is loaded.
+     */
+    public static LLVMValueRef translateStringSlot(String obj, LLVMTranslator v, Lang l) {
+        LLVMValueRef stringVar = translateString(obj, v, l);
+        String slotName = "_string_lit_ref_" + mangledContents(obj);
+        LLVMValueRef slot = v.utils.getGlobal(slotName, LLVMTypeOf(stringVar));
+        LLVMSetLinkage(slot, LLVMLinkOnceODRLinkage);
+        LLVMSetInitializer(slot, stringVar);
+        v.addStringLiteralSlot(slotName, slot);
+        return slot;
+    }
+
     public static LLVMValueRef translateString(String obj, LLVMTranslator v, Lang l) {
-	
-	char[] chars = obj.toCharArray();
-        
+
+        char[] chars = obj.toCharArray();
+
         int sizeOfChar= v.utils.sizeOfType(v.ts.Char());
         ParsedClassType arrayType = v.ts.ArrayObject();
         LLVMValueRef dvGlobal = v.dv.getDispatchVectorFor(arrayType);
@@ -54,26 +73,30 @@ public class JLangStringLitExt extends JLangExt {
                         .toArray(LLVMValueRef[]::new);
 
         LLVMValueRef charArray = v.utils.buildConstStruct(structBody);
-        String reduce = intStream(obj.getBytes()).mapToObj(b -> b + "_").reduce("", (s1, s2) -> s1 + s2);
+        String reduce = mangledContents(obj);
         String charVarName = "_char_arr_" + reduce;
         LLVMValueRef stringLit = v.utils.getGlobal(charVarName, LLVMTypeOf(charArray));
         LLVMSetLinkage(stringLit, LLVMLinkOnceODRLinkage);
         LLVMSetInitializer(stringLit, charArray);
 
-        LLVMValueRef dvString = v.dv.getDispatchVectorFor(v.ts.String());
-
-        LLVMValueRef[] stringLitBody =
-                Stream.of(dvString, sync_vars, LLVMConstBitCast(stringLit, v.utils.toLL(arrayType)))
-                        .toArray(LLVMValueRef[]::new);
+        // Build a complete String instance, so that writes to its other fields
+        // (e.g., the cached hash code) stay within the global.
+        Map<String, LLVMValueRef> fields = new HashMap<>();
+        LLVMTypeRef charArrType = v.utils.toLL(v.ts.arrayOf(v.ts.Char()));
+        fields.put("value", LLVMConstBitCast(stringLit, charArrType));
+        fields.put("hash", LLVMConstInt(v.utils.intType(32), obj.hashCode(), /*sign-extend*/ 0));
+        LLVMValueRef string = v.obj.buildConstObject(v.ts.String(), fields);
+        String stringVarName = "_string_lit_" + reduce;
+        LLVMValueRef stringVar = v.utils.getGlobal(stringVarName, LLVMTypeOf(string));
+        LLVMSetLinkage(stringVar, LLVMLinkOnceODRLinkage);
+        LLVMSetInitializer(stringVar, string);
+        return stringVar;
+    }
 
-        LLVMValueRef string = v.utils.buildConstStruct(stringLitBody);
-	String stringVarName = "_string_lit_" + reduce;
-	LLVMValueRef stringVar = v.utils.getGlobal(stringVarName, LLVMTypeOf(string));
-	LLVMSetLinkage(stringVar, LLVMLinkOnceODRLinkage);
-	LLVMSetInitializer(stringVar, string);
-	return stringVar;
-	
+    private static String mangledContents(String obj) {
+        return intStream(obj.getBytes()).mapToObj(b -> b + "_").reduce("", (s1, s2) -> s1 + s2);
     }
+
     public static IntStream intStream(byte[] array) {
         return IntStream.range(0, array.length).map(idx -> array[idx]);
     }
@@ -3,7 +3,6 @@
 package jlang.extension;
 
 import jlang.ast.JLangExt;
-import jlang.util.Constants;
 import jlang.visit.LLVMTranslator;
 import org.bytedeco.javacpp.LLVM.LLVMBasicBlockRef;
 import org.bytedeco.javacpp.LLVM.LLVMTypeRef;
@@ -26,15 +25,6 @@ public class JLangSynchronizedExt extends JLangExt {
         return super.leaveTranslateLLVM(v);
     }
 
-    public static void buildMonitorFuncWithGlobalMutex(LLVMTranslator v, String op) {
-        LLVMTypeRef getGlobalMutexFuncType = v.utils.functionType(
-                v.utils.toLL(v.ts.Object())
-        );
-        LLVMValueRef getGlobalMutexFunc = v.utils.getFunction(Constants.GET_GLOBAL_MUTEX_OBJECT, getGlobalMutexFuncType);
-        LLVMValueRef globalMutex = v.utils.buildFunCall(getGlobalMutexFunc);
-        buildMonitorFunc(v, op, globalMutex);
-    }
-
     public static void buildMonitorFunc(LLVMTranslator v, String op, LLVMValueRef syncObj) {
         LLVMValueRef cast = LLVMBuildBitCast(v.builder, syncObj, v.utils.toLL(v.ts.Object()), "cast_l");
         LLVMTypeRef monitorFuncType = v.utils.functionType(
@@ -4,9 +4,13 @@ package jlang.extension;
 
 import polyglot.ast.Node;
 import polyglot.ast.Throw;
+import polyglot.main.Options;
+import polyglot.util.Copy;
+import polyglot.util.SerialVersionUID;
 
 import java.lang.Override;
 
+import jlang.JLangOptions;
 import jlang.ast.JLangExt;
 import jlang.util.Constants;
 import jlang.visit.LLVMTranslator;
@@ -14,10 +18,49 @@ import jlang.visit.LLVMTranslator;
 import static org.bytedeco.javacpp.LLVM.*;
 
 public class JLangThrowExt extends JLangExt {
+    private static final long serialVersionUID = SerialVersionUID.generate();
+
+    /**
+     * If this statement throws a new exception for a failed runtime check,
+     * the kind of the check (e.g., {@link Constants#PREALLOCATED_CLASS_CAST});
+     * otherwise -1.
+     */
+    private int failedCheck = -1;
+
+    @Override
+    public Throw node() {
+        return (Throw) super.node();
+    }
+
+    public Throw setFailedCheck(int kind) {
+        return setFailedCheck(node(), kind);
+    }
+
+    public Throw setFailedCheck(Throw c, int kind) {
+        JLangThrowExt ext = (JLangThrowExt) JLangExt.ext(c);
+        if (ext.failedCheck == kind) return c;
+        if (c == node) {
+            c = Copy.Util.copy(c);
+            ext = (JLangThrowExt) JLangExt.ext(c);
+        }
+        ext.failedCheck = kind;
+        return c;
+    }
+
+    @Override
+    public Node overrideTranslateLLVM(Node parent, LLVMTranslator v) {
+        if (failedCheck >= 0 && ((JLangOptions) Options.global).omitStackTraceInFastThrow) {
+            // Throw a shared instance instead of allocating the exception,
+            // once this check has failed often; otherwise translate as usual.
+            v.utils.buildFastThrowCheck(failedCheck);
+        }
+        return super.overrideTranslateLLVM(parent, v);
+    }
 
     @Override
     public Node leaveTranslateLLVM(LLVMTranslator v) {
-        Throw n = (Throw) node();
+        Throw n = node();
+        v.utils.buildNullCheck(n.expr()); // JLS 7, section 14.18.
         LLVMValueRef createExnFun = v.utils.getFunction(Constants.CREATE_EXCEPTION,
                 v.utils.functionType(v.utils.i8Ptr(), v.utils.i8Ptr()));
         LLVMValueRef throwExnFunc = v.utils.getFunction(Constants.THROW_EXCEPTION,
@@ -12,7 +12,9 @@ import polyglot.util.SerialVersionUID;
 import polyglot.visit.AscriptionVisitor;
 
 import java.lang.Override;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import jlang.ast.JLangExt;
 import jlang.visit.DesugarLocally;
@@ -53,10 +55,22 @@ public class JLangUnaryExt extends JLangExt {
         boolean pre = op.equals(PRE_INC) || op.equals(PRE_DEC);
         boolean inc = op.equals(PRE_INC) || op.equals(POST_INC);
 
-        // Get the address and value of the expression.
-        LocalDecl ptrFlat = v.tnf.TempSSA("lvalue", v.tnf.AddressOf(n.expr()));
-        Local ptr = v.tnf.Local(pos, ptrFlat);
-        LocalDecl ptrLoadedFlat = v.tnf.TempSSA("load", v.tnf.Load(copy(ptr)));
+        // Get the address and value of the expression. Volatile fields are
+        // read and written directly, so that both accesses are volatile.
+        List<Stmt> stmts = new ArrayList<>();
+        Expr lvalue;
+        Expr loaded;
+        if (JLangFieldExt.isVolatileField(n.expr())) {
+            lvalue = JLangFieldExt.withStableTarget((Field) n.expr(), stmts, v);
+            loaded = copy(lvalue);
+        } else {
+            LocalDecl ptrFlat = v.tnf.TempSSA("lvalue", v.tnf.AddressOf(n.expr()));
+            stmts.add(ptrFlat);
+            lvalue = v.tnf.Local(pos, ptrFlat);
+            loaded = v.tnf.Load(copy(lvalue));
+        }
+        LocalDecl ptrLoadedFlat = v.tnf.TempSSA("load", loaded);
+        stmts.add(ptrLoadedFlat);
         Local ptrLoaded = v.tnf.Local(pos, ptrLoadedFlat);
 
         // Compute the binop.
@@ -74,10 +88,12 @@ public class JLangUnaryExt extends JLangExt {
         // Store the result and return the correct value.
         LocalDecl resFlat = v.tnf.TempSSA("res", v.tnf.Cast(bin, n.expr().type()));
         Local res = v.tnf.Local(pos, resFlat);
-        Stmt update = v.tnf.EvalAssign(copy(ptr), copy(res));
+        Stmt update = v.tnf.EvalAssign(copy(lvalue), copy(res));
         Expr val = pre ? copy(res) : copy(ptrLoaded);
+        stmts.add(resFlat);
+        stmts.add(update);
 
-        return v.tnf.ESeq(Arrays.asList(ptrFlat, ptrLoadedFlat, resFlat, update), val);
+        return v.tnf.ESeq(stmts, val);
     }
 
     @Override
@@ -17,6 +17,7 @@ import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import static org.bytedeco.javacpp.LLVM.LLVMConstInt;
 import static org.bytedeco.javacpp.LLVM.LLVMConstNull;
 import static org.bytedeco.javacpp.LLVM.LLVMSetInitializer;
 
@@ -51,6 +52,17 @@ public class DispatchVector_c implements DispatchVector {
             }
         },
 
+        GC_DESCRIPTOR {
+            // The garbage collector descriptor of instances allocated from
+            // thread-local free lists. The collector reads it through the first
+            // word of each such object, so the runtime relies on its offset.
+            @Override
+            LLVMValueRef buildValueRef(DispatchVector_c o, ClassType erased) {
+                return LLVMConstInt(o.v.utils.llvmPtrSizedIntType(),
+                        o.v.utils.tlabGcDescriptor(erased), /*sign-extend*/ 0);
+            }
+        },
+
         INTERFACE_METHOD_HASH_TABLE {
             // A hash table for interface method dispatch.
             @Override
@@ -8,6 +8,9 @@ import polyglot.types.ArrayType;
 import polyglot.types.FieldInstance;
 import polyglot.types.ReferenceType;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Defines the layout of Java instance objects in terms of LLVM IR.
  * This includes array objects.
@@ -31,6 +34,20 @@ public interface ObjectStruct {
     /** Returns the size (in bytes) of the given class. */
     int sizeOfObj(ReferenceType rt);
 
+    /**
+     * Returns the indices of the pointer-sized words of an instance of the given
+     * class that may hold pointers, in increasing order. Used to build type
+     * descriptors for the garbage collector.
+     */
+    List<Integer> pointerWords(ReferenceType rt);
+
+    /**
+     * Returns a constant instance of the given class, suitable as the initializer
+     * of a global. Fields named in {@code fieldValues} take the given values;
+     * all other fields are zero.
+     */
+    LLVMValueRef buildConstObject(ReferenceType rt, Map<String, LLVMValueRef> fieldValues);
+
     /** Returns a pointer to the dispatch dispatch vector. */
     LLVMValueRef buildDispatchVectorElementPtr(LLVMValueRef instance, ReferenceType rt);
 
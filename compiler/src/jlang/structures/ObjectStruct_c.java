@@ -4,6 +4,7 @@ package jlang.structures;
 
 import org.bytedeco.javacpp.LLVM.*;
 
+import jlang.util.Constants;
 import jlang.visit.LLVMTranslator;
 import polyglot.types.*;
 import polyglot.util.InternalCompilerError;
@@ -78,6 +79,14 @@ public class ObjectStruct_c implements ObjectStruct {
                         Stream.of(LLVMArrayType(o.v.utils.i8(), 0)))
                         .toArray(LLVMTypeRef[]::new);
             }
+            else if (o.isThrowable(erased)) {
+                // Append space for the header that the unwinder needs to throw this
+                // object, so that throwing does not allocate (see runtime/native/exception.cpp).
+                return Stream.concat(
+                        Stream.of(baseComponents),
+                        Stream.of(o.exceptionHeaderTypeRef()))
+                        .toArray(LLVMTypeRef[]::new);
+            }
             else if (erased.isClass()) {
                 // Standard class instance.
                 return baseComponents;
@@ -122,9 +131,51 @@ public class ObjectStruct_c implements ObjectStruct {
         for (FieldInstance inst : instances) {
             size += v.utils.sizeOfType(inst.type());
         }
+        if (isThrowable(rt))
+            size += Constants.EXCEPTION_HEADER_BYTES;
         return size;
     }
 
+    @Override
+    public List<Integer> pointerWords(ReferenceType rt) {
+        int ptrSize = v.utils.llvmPtrSize();
+        List<Integer> res = new ArrayList<>();
+
+        // The header holds the dispatch vector and the lock word,
+        // which may point to a monitor allocated by the collector.
+        res.add(Layout.DV.ordinal());
+        res.add(Layout.SYNC_VARS.ordinal());
+
+        // Fields are laid out with natural alignment, matching LLVM.
+        int offset = Layout.FIELDS.ordinal() * ptrSize;
+        for (FieldInstance fi : getOrComputeInstanceFields(rt)) {
+            int size = v.utils.sizeOfType(fi.type());
+            offset = (offset + size - 1) / size * size;
+            if (fi.type().isReference())
+                res.add(offset / ptrSize);
+            offset += size;
+        }
+        return res;
+    }
+
+    @Override
+    public LLVMValueRef buildConstObject(ReferenceType rt, Map<String, LLVMValueRef> fieldValues) {
+        LLVMTypeRef type = structTypeRefNonOpaque(rt);
+        LLVMValueRef[] fields = getOrComputeInstanceFields(rt).stream()
+                .map((fi) -> fieldValues.containsKey(fi.name())
+                        ? fieldValues.get(fi.name())
+                        : LLVMConstNull(v.utils.toLL(fi.type())))
+                .toArray(LLVMValueRef[]::new);
+        LLVMValueRef dv = v.dv.getDispatchVectorFor(rt);
+        LLVMValueRef syncVars = LLVMConstNull(v.utils.i8Ptr());
+        if (isThrowable(rt))
+            return v.utils.buildNamedConstStruct(
+                    type, dv, syncVars, v.utils.buildConstStruct(fields),
+                    LLVMConstNull(exceptionHeaderTypeRef()));
+        return v.utils.buildNamedConstStruct(
+                type, dv, syncVars, v.utils.buildConstStruct(fields));
+    }
+
     @Override
     public LLVMValueRef buildDispatchVectorElementPtr(LLVMValueRef instance, ReferenceType rt) {
         structTypeRefNonOpaque(rt); // Ensure non-opaque type.
@@ -153,6 +204,19 @@ public class ObjectStruct_c implements ObjectStruct {
         return LLVMBuildBitCast(v.builder, baseRaw, ptrType, "cast");
     }
 
+    /** Returns true if instances of the given type end with an exception header. */
+    protected boolean isThrowable(ReferenceType rt) {
+        return rt.isClass() && v.utils.erasureLL(rt).isSubtype(v.ts.Throwable());
+    }
+
+    /**
+     * The exception header is opaque to compiled code. It is made of words
+     * so that it is word-aligned and ends the object.
+     */
+    protected LLVMTypeRef exceptionHeaderTypeRef() {
+        return LLVMArrayType(v.utils.i64(), Constants.EXCEPTION_HEADER_BYTES / 8);
+    }
+
     /** Returns an ordered list of all type-erased fields in the given reference type. */
     protected List<FieldInstance> getOrComputeInstanceFields(ReferenceType rt) {
        return getOrComputeFields(rt, false);
@@ -0,0 +1,181 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang.util;
+
+import jlang.JLangOptions;
+import jlang.visit.LLVMTranslator;
+import org.bytedeco.javacpp.PointerPointer;
+import polyglot.main.Options;
+import polyglot.types.ClassType;
+import polyglot.types.FieldInstance;
+import polyglot.types.MethodInstance;
+import polyglot.types.ReferenceType;
+
+import static org.bytedeco.javacpp.LLVM.*;
+
+/**
+ * Translates calls to the compare-and-swap methods of {@code sun.misc.Unsafe}, and to
+ * the read-modify-write methods of {@code AtomicInteger}, {@code AtomicLong}, and
+ * {@code AtomicReference}, into inline {@code cmpxchg} and {@code atomicrmw}
+ * instructions. Otherwise the former are JNI calls into the runtime, and the latter
+ * are compare-and-swap loops around them.
+ *
+ * The atomic classes declare these methods final, so a call always dispatches
+ * to the JDK implementation, which atomically updates the {@code value} field.
+ * All instructions are sequentially consistent, like the volatile accesses that
+ * they replace. Disabled by the -no-atomic-intrinsics option.
+ */
+public class AtomicIntrinsics {
+    private static final String UNSAFE = "sun.misc.Unsafe";
+    private static final String ATOMIC_INTEGER = "java.util.concurrent.atomic.AtomicInteger";
+    private static final String ATOMIC_LONG = "java.util.concurrent.atomic.AtomicLong";
+    private static final String ATOMIC_REFERENCE = "java.util.concurrent.atomic.AtomicReference";
+
+    private final LLVMTranslator v;
+
+    public AtomicIntrinsics(LLVMTranslator v) {
+        this.v = v;
+    }
+
+    /**
+     * Returns the result of an inline translation of a call to {@code mi}, or null
+     * if {@code mi} is not an intrinsic. The arguments {@code args} start with the
+     * receiver and are already cast to the parameter types of {@code funcType}; the
+     * result has the return type of {@code funcType}.
+     */
+    public LLVMValueRef build(MethodInstance mi, LLVMTypeRef funcType, LLVMValueRef[] args) {
+        if (!((JLangOptions) Options.global).atomicIntrinsics || mi.flags().isStatic())
+            return null;
+        ReferenceType container = mi.container();
+        if (!container.isClass())
+            return null;
+
+        String name = mi.name();
+        int arity = mi.formalTypes().size();
+        LLVMTypeRef retType = LLVMGetReturnType(funcType);
+        switch (container.toClass().fullName()) {
+            case UNSAFE:
+                if (arity != 4)
+                    return null;
+                if (name.equals("compareAndSwapInt")
+                        || name.equals("compareAndSwapLong")
+                        || name.equals("compareAndSwapObject")) {
+                    LLVMValueRef ptr = buildUnsafeAddress(args[1], args[2], args[3]);
+                    return buildCompareAndSwap(ptr, args[3], args[4]);
+                }
+                return null;
+            case ATOMIC_INTEGER:
+            case ATOMIC_LONG:
+                if (arity == 0 && name.equals("getAndIncrement"))
+                    return buildGetAndAdd(args[0], container, 1, null, false);
+                if (arity == 0 && name.equals("getAndDecrement"))
+                    return buildGetAndAdd(args[0], container, -1, null, false);
+                if (arity == 0 && name.equals("incrementAndGet"))
+                    return buildGetAndAdd(args[0], container, 1, null, true);
+                if (arity == 0 && name.equals("decrementAndGet"))
+                    return buildGetAndAdd(args[0], container, -1, null, true);
+                if (arity == 1 && name.equals("getAndAdd"))
+                    return buildGetAndAdd(args[0], container, 0, args[1], false);
+                if (arity == 1 && name.equals("addAndGet"))
+                    return buildGetAndAdd(args[0], container, 0, args[1], true);
+                // Fall through for the methods common to all atomic classes.
+            case ATOMIC_REFERENCE:
+                if (arity == 1 && name.equals("getAndSet"))
+                    return buildGetAndSet(args[0], container, args[1], retType);
+                if (arity == 2
+                        && (name.equals("compareAndSet") || name.equals("weakCompareAndSet"))) {
+                    LLVMValueRef ptr = buildValueFieldPtr(args[0], container, args[1]);
+                    return ptr == null ? null : buildCompareAndSwap(ptr, args[1], args[2]);
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns a pointer to the {@code value} field of {@code recv}, cast to a pointer
+     * to the integer type used to access values like {@code val}, or null if the
+     * field cannot be found.
+     */
+    private LLVMValueRef buildValueFieldPtr(
+            LLVMValueRef recv, ReferenceType container, LLVMValueRef val) {
+        ClassType ct = v.utils.erasureLL(container);
+        FieldInstance fi = ct.fieldNamed("value");
+        if (fi == null || fi.flags().isStatic())
+            return null;
+        LLVMValueRef typedRecv = LLVMBuildBitCast(
+                v.builder, recv, v.utils.toLL(ct), "cast.atomic");
+        LLVMValueRef ptr = v.obj.buildFieldElementPtr(typedRecv, fi);
+        return LLVMBuildBitCast(
+                v.builder, ptr, v.utils.ptrTypeRef(intTypeOf(val)), "cast.atomic.value");
+    }
+
+    /** Returns {@code obj + offset}, as in Unsafe, as a pointer to values like {@code val}. */
+    private LLVMValueRef buildUnsafeAddress(LLVMValueRef obj, LLVMValueRef offset, LLVMValueRef val) {
+        LLVMValueRef base = LLVMBuildBitCast(v.builder, obj, v.utils.i8Ptr(), "cast.unsafe");
+        LLVMValueRef raw = LLVMBuildGEP(
+                v.builder, base, new PointerPointer<>(offset), 1, "unsafe.addr");
+        return LLVMBuildBitCast(
+                v.builder, raw, v.utils.ptrTypeRef(intTypeOf(val)), "cast.unsafe.addr");
+    }
+
+    /** Returns true if {@code ptr} held {@code expected} and was atomically set to {@code x}. */
+    private LLVMValueRef buildCompareAndSwap(
+            LLVMValueRef ptr, LLVMValueRef expected, LLVMValueRef x) {
+        LLVMValueRef cmpxchg = LLVMBuildAtomicCmpXchg(
+                v.builder, ptr, toInt(expected), toInt(x),
+                LLVMAtomicOrderingSequentiallyConsistent,
+                LLVMAtomicOrderingSequentiallyConsistent,
+                /*singleThread*/ 0);
+        return LLVMBuildExtractValue(v.builder, cmpxchg, 1, "cas.success");
+    }
+
+    /**
+     * Atomically adds {@code delta} (or the constant {@code constDelta} if {@code delta}
+     * is null) to the value field of {@code recv}, returning either the old or the new value.
+     */
+    private LLVMValueRef buildGetAndAdd(
+            LLVMValueRef recv, ReferenceType container,
+            long constDelta, LLVMValueRef delta, boolean returnNew) {
+        LLVMTypeRef intType = v.utils.toLL(
+                container.toClass().fullName().equals(ATOMIC_INTEGER) ? v.ts.Int() : v.ts.Long());
+        if (delta == null)
+            delta = LLVMConstInt(intType, constDelta, /*sign-extend*/ 1);
+        LLVMValueRef ptr = buildValueFieldPtr(recv, container, delta);
+        if (ptr == null)
+            return null;
+        LLVMValueRef old = LLVMBuildAtomicRMW(
+                v.builder, LLVMAtomicRMWBinOpAdd, ptr, delta,
+                LLVMAtomicOrderingSequentiallyConsistent, /*singleThread*/ 0);
+        return returnNew ? LLVMBuildAdd(v.builder, old, delta, "atomic.new") : old;
+    }
+
+    /** Atomically replaces the value field of {@code recv}, returning the old value. */
+    private LLVMValueRef buildGetAndSet(
+            LLVMValueRef recv, ReferenceType container, LLVMValueRef x, LLVMTypeRef retType) {
+        LLVMValueRef ptr = buildValueFieldPtr(recv, container, x);
+        if (ptr == null)
+            return null;
+        LLVMValueRef old = LLVMBuildAtomicRMW(
+                v.builder, LLVMAtomicRMWBinOpXchg, ptr, toInt(x),
+                LLVMAtomicOrderingSequentiallyConsistent, /*singleThread*/ 0);
+        return isPointer(x) ? LLVMBuildIntToPtr(v.builder, old, retType, "atomic.old") : old;
+    }
+
+    // LLVM 5 has no atomicrmw on pointers, so references are accessed as integers.
+
+    private LLVMTypeRef intTypeOf(LLVMValueRef val) {
+        return isPointer(val) ? v.utils.llvmPtrSizedIntType() : LLVMTypeOf(val);
+    }
+
+    private LLVMValueRef toInt(LLVMValueRef val) {
+        return isPointer(val)
+                ? LLVMBuildPtrToInt(v.builder, val, v.utils.llvmPtrSizedIntType(), "ptr.int")
+                : val;
+    }
+
+    private static boolean isPointer(LLVMValueRef val) {
+        return LLVMGetTypeKind(LLVMTypeOf(val)) == LLVMPointerTypeKind;
+    }
+}
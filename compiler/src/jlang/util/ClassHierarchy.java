@@ -0,0 +1,155 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang.util;
+
+import polyglot.ast.*;
+import polyglot.frontend.Job;
+import polyglot.types.ClassType;
+import polyglot.types.ParsedClassType;
+import polyglot.types.ReferenceType;
+import polyglot.types.Type;
+import polyglot.util.InternalCompilerError;
+import polyglot.visit.NodeVisitor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * The class hierarchy of all classes declared in the current compilation,
+ * including local and anonymous classes. In whole-program mode (see the
+ * -whole-program option) the only other code in the program is in the
+ * library modules. If none of them references a class declared here, then no
+ * other class can extend one, and the hierarchy is exact for these classes.
+ * Otherwise (e.g., the libraries were compiled separately against these
+ * classes) the hierarchy is open, and reports no subclasses. Shared by all jobs.
+ */
+public class ClassHierarchy {
+
+    /** Classes declared in the current compilation, in declaration order. */
+    private final List<ParsedClassType> classes = new ArrayList<>();
+
+    private final Set<ParsedClassType> declared =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final Map<ParsedClassType, List<ClassType>> concreteSubclassCache =
+            new IdentityHashMap<>();
+
+    private static final String SYMBOL_START = "Polyglot_";
+
+    /** A library module referencing a class declared here, or null if there is none. */
+    private final String openedBy;
+
+    /**
+     * Collects the classes declared in {@code jobs}, and checks that none of them
+     * is referenced by the LLVM IR files {@code libraryModules}.
+     * Must be built only once all jobs have been desugared.
+     */
+    public ClassHierarchy(Collection<Job> jobs, Lang lang, Collection<String> libraryModules) {
+        for (Job job : jobs) {
+            if (job.ast() == null)
+                continue;
+            job.ast().visit(new NodeVisitor(lang) {
+                @Override
+                public Node leave(Node old, Node n, NodeVisitor v) {
+                    if (n instanceof ClassDecl) {
+                        add(((ClassDecl) n).type());
+                    } else if (n instanceof New && ((New) n).body() != null) {
+                        add(((New) n).type().toClass());
+                    }
+                    return n;
+                }
+            });
+        }
+        openedBy = findReference(libraryModules);
+    }
+
+    /**
+     * Returns the first module that references a symbol of a class declared here,
+     * or null if there is none. Every symbol of a class (its members, dispatch
+     * vectors, class object, etc.) starts with {@link JLangMangler#classSymbolPrefix},
+     * so a module that extends or implements a class must mention that prefix.
+     */
+    private String findReference(Collection<String> modules) {
+        Set<String> prefixes = new HashSet<>();
+        for (ParsedClassType ct : classes)
+            prefixes.add(JLangMangler.classSymbolPrefix(ct));
+        for (String module : modules) {
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(module))) {
+                for (String line; (line = reader.readLine()) != null; )
+                    if (referencesPrefix(line, prefixes))
+                        return module;
+            } catch (IOException e) {
+                throw new InternalCompilerError("Failed to read " + module, e);
+            }
+        }
+        return null;
+    }
+
+    private static boolean referencesPrefix(String line, Set<String> prefixes) {
+        if (prefixes.isEmpty())
+            return false;
+        for (int start = line.indexOf(SYMBOL_START); start >= 0;
+             start = line.indexOf(SYMBOL_START, start + 1)) {
+            for (int i = start + SYMBOL_START.length(); i < line.length(); ++i) {
+                char c = line.charAt(i);
+                if (c == '_' && prefixes.contains(line.substring(start, i + 1)))
+                    return true;
+                if (!Character.isLetterOrDigit(c) && c != '_' && c != '$' && c != '.')
+                    break;
+            }
+        }
+        return false;
+    }
+
+    private void add(ClassType ct) {
+        ParsedClassType decl = declaration(ct);
+        if (declared.add(decl))
+            classes.add(decl);
+    }
+
+    /**
+     * Returns the non-abstract classes that are subtypes of {@code ct}
+     * (including {@code ct} itself), or null if {@code ct} may have unknown
+     * subclasses, because it is not declared in the current compilation or
+     * the hierarchy is open.
+     */
+    public synchronized List<ClassType> concreteSubclasses(ClassType ct) {
+        ParsedClassType target = declaration(ct);
+        if (openedBy != null || !declared.contains(target))
+            return null;
+        return concreteSubclassCache.computeIfAbsent(target, (key) -> {
+            List<ClassType> res = new ArrayList<>();
+            for (ParsedClassType sub : classes)
+                if (!sub.flags().isAbstract() && !sub.flags().isInterface() && isSubtype(sub, key))
+                    res.add(sub);
+            return Collections.unmodifiableList(res);
+        });
+    }
+
+    /**
+     * Returns a library module that references a class declared in the current
+     * compilation, making the hierarchy open, or null if the hierarchy is exact.
+     */
+    public String openedBy() {
+        return openedBy;
+    }
+
+    private static boolean isSubtype(ClassType ct, ParsedClassType target) {
+        if (declaration(ct) == target)
+            return true;
+        Type superType = ct.superType();
+        if (superType != null && superType.isClass() && isSubtype(superType.toClass(), target))
+            return true;
+        for (ReferenceType it : ct.interfaces())
+            if (it.isClass() && isSubtype(it.toClass(), target))
+                return true;
+        return false;
+    }
+
+    private static ParsedClassType declaration(ClassType ct) {
+        return (ParsedClassType) ct.declaration();
+    }
+}
@@ -0,0 +1,318 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang.util;
+
+import org.bytedeco.javacpp.LLVM.*;
+
+import jlang.visit.LLVMTranslator;
+import polyglot.ast.*;
+import polyglot.types.ClassType;
+import polyglot.types.Type;
+import polyglot.visit.NodeVisitor;
+
+import java.util.*;
+
+import static org.bytedeco.javacpp.LLVM.*;
+
+/**
+ * Tracks class initialization checks (see {@link LLVMUtils#buildClassLoadCheck(ClassType)})
+ * so that provably redundant checks can be elided. A check for class C is redundant if
+ * <ul>
+ * <li>C or one of its subclasses is known to be initialized on entry to the current
+ * function (e.g., C is the container of the current method), or</li>
+ * <li>every path to the check passes through an earlier check for C or one of its
+ * subclasses, since initializing a class initializes its superclasses first.</li>
+ * </ul>
+ * In addition, reads of static fields can skip the check if the container class has
+ * a trivial static initializer (see {@link #hasTrivialInitializer(ClassType)}).
+ */
+public class ClassInitChecks {
+    private final LLVMTranslator v;
+
+    /** A check emitted into the current function that may later be found redundant. */
+    private static class Check {
+        final Set<String> implied;
+        final LLVMBasicBlockRef block;
+        final LLVMBasicBlockRef cont;
+        final LLVMValueRef state;
+        final LLVMValueRef cond;
+        final LLVMValueRef br;
+
+        Check(Set<String> implied, LLVMBasicBlockRef block, LLVMBasicBlockRef cont,
+              LLVMValueRef state, LLVMValueRef cond, LLVMValueRef br) {
+            this.implied = implied;
+            this.block = block;
+            this.cont = cont;
+            this.state = state;
+            this.cond = cond;
+            this.br = br;
+        }
+    }
+
+    private static class FnChecks {
+        /** Classes known to be initialized everywhere in the current function. */
+        final Set<String> initialized = new HashSet<>();
+
+        /** Checks emitted into the current function, in emission order. */
+        final List<Check> checks = new ArrayList<>();
+    }
+
+    /** A stack of per-function state, mirroring the function contexts of the translator. */
+    private final Deque<FnChecks> fns = new ArrayDeque<>();
+
+    /** Class declarations in the current compilation unit, keyed by class. */
+    private final Map<String, ClassDecl> classDecls = new HashMap<>();
+
+    private final Map<String, Boolean> trivialInitializers = new HashMap<>();
+
+    private int emitted;
+    private int elided;
+
+    public ClassInitChecks(LLVMTranslator v) {
+        this.v = v;
+    }
+
+    /** Records the class declarations of {@code sf} for {@link #hasTrivialInitializer}. */
+    public void collectClassDecls(SourceFile sf) {
+        sf.visit(new NodeVisitor(v.lang()) {
+            @Override
+            public Node leave(Node old, Node n, NodeVisitor visitor) {
+                if (n instanceof ClassDecl) {
+                    ClassDecl cd = (ClassDecl) n;
+                    classDecls.put(key(cd.type()), cd);
+                }
+                return n;
+            }
+        });
+    }
+
+    /** Must be called when entering a function. */
+    public void enterFn() { fns.push(new FnChecks()); }
+
+    /** Must be called when leaving a function. */
+    public void leaveFn() { fns.pop(); }
+
+    /**
+     * Marks {@code ct} and its superclasses as initialized for the remainder of the
+     * current function. Callers must ensure that {@code ct} is initialized (or being
+     * initialized by the current thread) on every path from the current position.
+     */
+    public void markInitialized(ClassType ct) {
+        fns.getFirst().initialized.addAll(withSuperclasses(ct));
+    }
+
+    /** Returns whether a check for {@code ct} would be redundant at the current position. */
+    public boolean isKnownInitialized(ClassType ct) {
+        return !fns.isEmpty() && fns.getFirst().initialized.contains(key(ct));
+    }
+
+    /** Records a check built by {@link LLVMUtils#buildClassLoadCheck(ClassType)}. */
+    public void recordCheck(
+            ClassType ct, LLVMBasicBlockRef block, LLVMBasicBlockRef cont,
+            LLVMValueRef state, LLVMValueRef cond, LLVMValueRef br) {
+        ++emitted;
+        if (!fns.isEmpty()) {
+            Check check = new Check(withSuperclasses(ct), block, cont, state, cond, br);
+            fns.getFirst().checks.add(check);
+        }
+    }
+
+    /** Records a check that was skipped at translation time. */
+    public void recordElided() {
+        ++elided;
+    }
+
+    /** Number of checks remaining in the current compilation unit. */
+    public int emittedCount() {
+        return emitted;
+    }
+
+    /** Number of checks elided in the current compilation unit. */
+    public int elidedCount() {
+        return elided;
+    }
+
+    /**
+     * Returns true if {@code ct} is declared in the current compilation unit, its static
+     * initializer consists only of compile-time constant field initializers, and the same
+     * holds for all of its superclasses other than {@code java.lang.Object} (which is
+     * always initialized before any entry point runs). Initializing such a class has no
+     * effect on the values of its static fields, since the field globals are emitted
+     * with their initial values. (Superinterfaces are not initialized along with a class;
+     * see JLS 7, section 12.4.1.)
+     */
+    public boolean hasTrivialInitializer(ClassType ct) {
+        String key = key(ct);
+        Boolean res = trivialInitializers.get(key);
+        if (res == null) {
+            // Guard against cycles in malformed hierarchies.
+            trivialInitializers.put(key, false);
+            res = computeTrivialInitializer(ct);
+            trivialInitializers.put(key, res);
+        }
+        return res;
+    }
+
+    private boolean computeTrivialInitializer(ClassType ct) {
+        if (v.ts.typeEquals(v.utils.erasureLL(ct), v.ts.Object()))
+            return true;
+        ClassDecl cd = classDecls.get(key(ct));
+        if (cd == null)
+            return false;
+        for (ClassMember m : cd.body().members()) {
+            if (m instanceof Initializer && ((Initializer) m).flags().isStatic())
+                return false;
+            if (m instanceof FieldDecl) {
+                FieldDecl fd = (FieldDecl) m;
+                if (fd.flags().isStatic() && fd.init() != null
+                        && !v.lang().isConstant(fd.init(), v.lang()))
+                    return false;
+            }
+        }
+        Type superType = ct.superType();
+        return superType == null || hasTrivialInitializer(superType.toClass());
+    }
+
+    /**
+     * Removes checks in {@code fn} that are dominated by an earlier check for the same
+     * class or one of its subclasses. The conditional branch of each redundant check is
+     * folded to always skip the class loading call. Must be called once the function
+     * body is complete.
+     */
+    public void elideDominatedChecks(LLVMValueRef fn) {
+        List<Check> checks = fns.getFirst().checks;
+        if (checks.size() < 2)
+            return;
+
+        Dominators dom = new Dominators(fn);
+        LLVMValueRef falseVal = LLVMConstInt(LLVMInt1TypeInContext(v.context), 0, /*sign-extend*/ 0);
+        for (Check check : checks) {
+            boolean redundant = false;
+            for (Check prev : checks) {
+                if (prev != check
+                        && prev.implied.containsAll(check.implied)
+                        && dom.dominates(prev.cont, check.block)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (redundant) {
+                LLVMSetOperand(check.br, 0, falseVal);
+                LLVMInstructionEraseFromParent(check.cond);
+                LLVMInstructionEraseFromParent(check.state);
+                --emitted;
+                ++elided;
+            }
+        }
+    }
+
+    private String key(ClassType ct) {
+        return v.mangler.classLoadingFunc(ct);
+    }
+
+    private Set<String> withSuperclasses(ClassType ct) {
+        Set<String> res = new HashSet<>();
+        for (Type t = ct; t != null && t.isClass(); t = t.toClass().superType())
+            res.add(key(t.toClass()));
+        return res;
+    }
+
+    /**
+     * Dominator tree of the reachable basic blocks of a function, computed with the
+     * iterative algorithm of Cooper, Harvey, and Kennedy.
+     */
+    private static class Dominators {
+        /** Reverse postorder index of each reachable block, keyed by block address. */
+        private final Map<Long, Integer> order = new HashMap<>();
+
+        /** Immediate dominator of each block, by reverse postorder index. */
+        private final int[] idom;
+
+        Dominators(LLVMValueRef fn) {
+            List<LLVMBasicBlockRef> blocks = reversePostorder(LLVMGetEntryBasicBlock(fn));
+            for (int i = 0; i < blocks.size(); ++i)
+                order.put(blocks.get(i).address(), i);
+
+            List<List<Integer>> preds = new ArrayList<>();
+            for (int i = 0; i < blocks.size(); ++i)
+                preds.add(new ArrayList<>());
+            for (int i = 0; i < blocks.size(); ++i) {
+                LLVMValueRef term = LLVMGetBasicBlockTerminator(blocks.get(i));
+                int numSuccs = term == null ? 0 : LLVMGetNumSuccessors(term);
+                for (int s = 0; s < numSuccs; ++s)
+                    preds.get(order.get(LLVMGetSuccessor(term, s).address())).add(i);
+            }
+
+            idom = new int[blocks.size()];
+            Arrays.fill(idom, -1);
+            idom[0] = 0;
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int b = 1; b < idom.length; ++b) {
+                    int newIdom = -1;
+                    for (int p : preds.get(b)) {
+                        if (idom[p] == -1)
+                            continue;
+                        newIdom = newIdom == -1 ? p : intersect(p, newIdom);
+                    }
+                    if (idom[b] != newIdom) {
+                        idom[b] = newIdom;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        private int intersect(int a, int b) {
+            while (a != b) {
+                while (a > b)
+                    a = idom[a];
+                while (b > a)
+                    b = idom[b];
+            }
+            return a;
+        }
+
+        /** Returns whether {@code a} dominates {@code b}. Unreachable blocks dominate nothing. */
+        boolean dominates(LLVMBasicBlockRef a, LLVMBasicBlockRef b) {
+            Integer ai = order.get(a.address());
+            Integer bi = order.get(b.address());
+            if (ai == null || bi == null)
+                return false;
+            int curr = bi;
+            while (curr > ai)
+                curr = idom[curr];
+            return curr == ai;
+        }
+
+        private static List<LLVMBasicBlockRef> reversePostorder(LLVMBasicBlockRef entry) {
+            List<LLVMBasicBlockRef> postorder = new ArrayList<>();
+            Set<Long> visited = new HashSet<>();
+            Deque<LLVMBasicBlockRef> stack = new ArrayDeque<>();
+            Deque<Integer> nextSucc = new ArrayDeque<>();
+            visited.add(entry.address());
+            stack.push(entry);
+            nextSucc.push(0);
+            while (!stack.isEmpty()) {
+                LLVMBasicBlockRef block = stack.peek();
+                int i = nextSucc.pop();
+                LLVMValueRef term = LLVMGetBasicBlockTerminator(block);
+                int numSuccs = term == null ? 0 : LLVMGetNumSuccessors(term);
+                if (i < numSuccs) {
+                    nextSucc.push(i + 1);
+                    LLVMBasicBlockRef succ = LLVMGetSuccessor(term, i);
+                    if (visited.add(succ.address())) {
+                        stack.push(succ);
+                        nextSucc.push(0);
+                    }
+                } else {
+                    stack.pop();
+                    postorder.add(block);
+                }
+            }
+            Collections.reverse(postorder);
+            return postorder;
+        }
+    }
+}
@@ -18,29 +18,103 @@ public class Constants {
     public static final String PRIMITIVE_CLASS_OBJECT_SUFFIX = "ClassObject";
 
     public static final String CALLOC = "__GC_malloc";
+    public static final String TYPED_MALLOC = "__GC_malloc_typed";
+    public static final String TLAB_GLOBAL = "__jlang_tlab";
+    public static final String TLAB_REFILL = "__jlang_tlab_refill";
     public static final String ENTRY_TRAMPOLINE = "Java_jlang_runtime_MainWrapper_main";
     public static final int LLVM_ADDR_SPACE = 0;
 
     public static final int CTOR_METHOD_INFO_OFFSET = -2;
     public static final int STATIC_METHOD_INFO_OFFSET = -1;
     public static final String REGISTER_CLASS_FUNC = "RegisterJavaClass";
-    public static final String INTERN_STRING_FUNC = "InternStringLit";
+    public static final String BEGIN_CLASS_INIT_FUNC = "BeginClassInit";
+    public static final String END_CLASS_INIT_FUNC = "EndClassInit";
+    public static final String FAIL_CLASS_INIT_FUNC = "FailClassInit";
+    public static final String INTERN_STRING_FUNC = "InternStringLits";
     public static final String GET_NATIVE_FUNC = "GetJavaNativeFunc";
     public static final String PERSONALITY_FUNC = "__java_personality_v0";
     public static final String CREATE_EXCEPTION = "createUnwindException";
     public static final String THROW_EXCEPTION = "throwUnwindException";
     public static final String EXTRACT_EXCEPTION = "extractJavaExceptionObject";
+    public static final String THROW_NPE_FUNC = "__jlang_throw_npe";
+    public static final String THROW_ARITHMETIC_FUNC = "__jlang_throw_arithmetic";
+    public static final String THROW_PREALLOCATED_FUNC = "__jlang_throw_preallocated";
     public static final String CREATE_ARRAY = "createArray";
     public static final String CREATE_1D_ARRAY = "create1DArray";
     public static final String RESUME_UNWIND_EXCEPTION = "_Unwind_Resume";
     public static final String MONITOR_ENTER = "jni_MonitorEnter";
     public static final String MONITOR_EXIT = "jni_MonitorExit";
-    public static final String GET_GLOBAL_MUTEX_OBJECT = "getGlobalMutexObject";
+    public static final String GET_INTERFACE_METHOD_CACHED = "__getInterfaceMethodCached";
+    public static final String EMPTY_INTERFACE_CACHE = "__emptyInterfaceCache";
+    public static final String STRING_CONCAT_FUNC = "__jlang_concat";
   
     public static final Set<String> NON_INVOKE_FUNCTIONS = new HashSet<>(CollectionUtil.list(
-            CALLOC, CREATE_EXCEPTION, EXTRACT_EXCEPTION
+            CALLOC, TYPED_MALLOC, TLAB_REFILL, CREATE_EXCEPTION, EXTRACT_EXCEPTION,
+            GET_INTERFACE_METHOD_CACHED
     ));
 
+    /**
+     * The value of a class initialization state word once static initialization
+     * of that class has completed. The word is zero before initialization begins,
+     * holds a runtime thread token while initialization is in progress, and holds
+     * a distinct error value if a static initializer threw an exception.
+     * Must match the runtime (class.cpp).
+     */
+    public static final int CLASS_INIT_DONE = 1;
+
+    /**
+     * Objects of at most {@code TLAB_MAX_GRANULES * TLAB_GRANULE_BYTES} bytes are
+     * allocated from thread-local free lists, one per size in granules.
+     * Must match the runtime (alloc.h).
+     */
+    public static final int TLAB_GRANULE_BYTES = 16;
+    public static final int TLAB_MAX_GRANULES = 16;
+
+    /**
+     * The tag of a Boehm GC bitmap descriptor, whose remaining bits mark the words
+     * of an object that may hold pointers, starting from the most significant bit.
+     * Must match GC_DS_BITMAP in gc_mark.h.
+     */
+    public static final long GC_DS_BITMAP = 1;
+    public static final int GC_DS_TAG_BITS = 2;
+
+    /**
+     * The kinds of the parts of a string concatenation passed to
+     * {@link #STRING_CONCAT_FUNC}, which formats primitive parts itself.
+     * Must match the runtime (concat.h).
+     */
+    public static final int CONCAT_STRING = 0;
+    public static final int CONCAT_INT = 1;
+    public static final int CONCAT_LONG = 2;
+    public static final int CONCAT_CHAR = 3;
+    public static final int CONCAT_BOOLEAN = 4;
+
+    /**
+     * The number of bytes at the end of every throwable that are reserved for the
+     * header the unwinder needs to throw it. Must match the runtime (exception.cpp).
+     */
+    public static final int EXCEPTION_HEADER_BYTES = 56;
+
+    /**
+     * The kinds of the shared exception instances thrown by
+     * {@link #THROW_PREALLOCATED_FUNC} for failed runtime checks.
+     * Must match the runtime (exception.h).
+     */
+    public static final int PREALLOCATED_NULL_POINTER = 0;
+    public static final int PREALLOCATED_ARRAY_INDEX_OUT_OF_BOUNDS = 1;
+    public static final int PREALLOCATED_CLASS_CAST = 2;
+    public static final int PREALLOCATED_ARITHMETIC = 3;
+
+    /**
+     * The number of new exceptions, with stack traces, that a runtime check
+     * throws before it switches to the shared instance of its exception
+     * under -omit-stack-trace-in-fast-throw.
+     */
+    public static final int FAST_THROW_THRESHOLD = 8;
+
+    // TODO: This data layout is likely only accurate for x86_64, Mac OS X.
+    public static final String DATA_LAYOUT = "e-m:o-i64:64-f80:128-n8:16:32:64-S128";
+
     public static final int DEBUG_INFO_VERSION = 3;
     public static final int DEBUG_DWARF_VERSION = 4;
 
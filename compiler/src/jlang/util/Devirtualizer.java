@@ -0,0 +1,145 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang.util;
+
+import jlang.visit.LLVMTranslator;
+import polyglot.types.ClassType;
+import polyglot.types.MethodInstance;
+import polyglot.types.ReferenceType;
+import polyglot.util.InternalCompilerError;
+
+import java.util.*;
+
+/**
+ * Uses class hierarchy analysis (see {@link ClassHierarchy}) to find virtual and
+ * interface calls with at most two possible targets. Such calls can be made
+ * direct, guarded by a dispatch vector comparison in the bimorphic case.
+ * Class hierarchy analysis is only used in whole-program mode, where the
+ * hierarchy is known to be complete. Otherwise only calls on receivers
+ * of a final class are made direct.
+ */
+public class Devirtualizer {
+    private final LLVMTranslator v;
+    private final ClassHierarchy cha;
+
+    private int monomorphic;
+    private int bimorphic;
+    private int virtual;
+
+    /**
+     * The targets of a devirtualized call. If {@code guard} is null the call always
+     * dispatches to {@code target}; otherwise it dispatches to {@code target} when the
+     * receiver is an instance of exactly class {@code guard}, and to {@code fallback}
+     * in all other cases.
+     */
+    public static class Targets {
+        public final MethodInstance target;
+        public final ClassType guard;
+        public final MethodInstance fallback;
+
+        Targets(MethodInstance target, ClassType guard, MethodInstance fallback) {
+            this.target = target;
+            this.guard = guard;
+            this.fallback = fallback;
+        }
+    }
+
+    /** Creates a devirtualizer; {@code cha} is null outside of whole-program mode. */
+    public Devirtualizer(LLVMTranslator v, ClassHierarchy cha) {
+        this.v = v;
+        this.cha = cha;
+    }
+
+    /**
+     * Returns the possible targets of a dynamically dispatched call to {@code mi}
+     * on a receiver of static type {@code recvTy}, or null if the call must use
+     * dynamic dispatch.
+     */
+    public Targets resolve(ReferenceType recvTy, MethodInstance mi) {
+        Targets res = resolveTargets(recvTy, mi);
+        if (res == null)
+            ++virtual;
+        else if (res.guard == null)
+            ++monomorphic;
+        else
+            ++bimorphic;
+        return res;
+    }
+
+    private Targets resolveTargets(ReferenceType recvTy, MethodInstance mi) {
+        if (!recvTy.isClass())
+            return null;
+        ClassType recvClass = recvTy.toClass();
+        List<ClassType> subclasses;
+        if (recvClass.flags().isFinal()) {
+            // Sound without class hierarchy analysis, since a final class has no subclasses.
+            subclasses = Collections.singletonList(recvClass);
+        } else if (cha != null) {
+            subclasses = cha.concreteSubclasses(recvClass);
+        } else {
+            return null;
+        }
+        if (subclasses == null || subclasses.isEmpty())
+            return null;
+
+        // Group the possible receiver classes by implementation, in a deterministic order.
+        Map<String, MethodInstance> impls = new TreeMap<>();
+        Map<String, List<ClassType>> receivers = new HashMap<>();
+        for (ClassType sub : subclasses) {
+            MethodInstance impl = implementation(recvTy, sub, mi);
+            if (impl == null)
+                return null;
+            String name = v.mangler.proc(impl);
+            impls.put(name, impl);
+            receivers.computeIfAbsent(name, (key) -> new ArrayList<>()).add(sub);
+            if (impls.size() > 2)
+                return null;
+        }
+
+        List<String> names = new ArrayList<>(impls.keySet());
+        if (names.size() == 1)
+            return new Targets(impls.get(names.get(0)), null, null);
+
+        // Guard on the implementation with a single receiver class.
+        for (int i = 0; i < 2; ++i) {
+            String name = names.get(i);
+            String other = names.get(1 - i);
+            if (receivers.get(name).size() == 1)
+                return new Targets(impls.get(name), receivers.get(name).get(0), impls.get(other));
+        }
+        return null;
+    }
+
+    /**
+     * Returns the method that a call to {@code mi} through static type {@code recvTy}
+     * dispatches to on instances of class {@code sub}, using the same lookup as the
+     * dispatch vectors of {@code sub}. Returns null if the lookup fails.
+     */
+    private MethodInstance implementation(ReferenceType recvTy, ClassType sub, MethodInstance mi) {
+        List<MethodInstance> subMethods = v.cdvMethods(v.utils.erasureLL(sub));
+        try {
+            int idx = recvTy.toClass().flags().isInterface()
+                    ? v.indexOfOverridingMethod(mi, v.cdvMethods(sub))
+                    : v.dispatchInfo(recvTy, mi).methodIndex();
+            MethodInstance impl = subMethods.get(idx);
+            return impl.flags().isAbstract() ? null : impl;
+        } catch (InternalCompilerError | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /** Number of calls made direct in the current compilation unit. */
+    public int monomorphicCount() {
+        return monomorphic;
+    }
+
+    /** Number of calls made direct behind a type guard in the current compilation unit. */
+    public int bimorphicCount() {
+        return bimorphic;
+    }
+
+    /** Number of calls left virtual in the current compilation unit. */
+    public int virtualCount() {
+        return virtual;
+    }
+}
@@ -57,6 +57,9 @@ public class JLangDesugared extends AbstractGoal {
                 // Translate synchronized keyword to a try-finally block to handle control transfer.
                 new VisitorGoal(job, new DesugarSynchronized(job, ts, nf)),
 
+                // Mark array accesses in counted loops that need no bounds check.
+                new VisitorGoal(job, new EliminateBoundsChecks(nf.lang())),
+
                 // Local desugar transformations.
                 // It's usually unsafe to run a pass after this one, since
                 // additional passes might create new non-desugared nodes.
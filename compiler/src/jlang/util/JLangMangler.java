@@ -35,6 +35,9 @@ public class JLangMangler {
     private static final String CLASS_STR = "class";
     private static final String CLASS_INFO_STR = "class_info";
     private static final String LOAD_CLASS_STR = "load_class";
+    private static final String CLASS_INIT_STATE_STR = "init_state";
+    private static final String GC_BITMAP_STR = "gc_bitmap";
+    private static final String GC_DESCR_STR = "gc_descr";
 
     // From the JNI API.
 	private static final String CODE_POINT_ESCAPE = "_0";
@@ -136,11 +139,34 @@ public class JLangMangler {
      * E.g., package.Clazz$InnerClass
      */
     public String userVisibleClassName(ClassType t) {
+        return className(t);
+    }
+
+    private static String className(ClassType t) {
         return t.outer() != null
-                ? userVisibleClassName(t.outer()) + "$" + t.name()
+                ? className(t.outer()) + "$" + t.name()
                 : t.fullName();
     }
 
+    /**
+     * Returns the common prefix of the symbols of the members, dispatch vectors,
+     * and class object of the class declared as {@code base}.
+     * E.g., Polyglot_package_Clazz_
+     */
+    public static String classSymbolPrefix(ClassType base) {
+        return POLYGLOT_PREFIX + "_" + symbolClassName(base) + "_";
+    }
+
+    /**
+     * Returns the name of a class as used in symbols, with '_' escaped as "_1"
+     * and '.' written as '_'. Identifiers cannot start with a digit, so the name
+     * can be recovered from the symbol (see runtime/native/stack_trace.cpp).
+     * E.g., package_My_1Clazz$InnerClass
+     */
+    private static String symbolClassName(ClassType base) {
+        return className(base).replace("_", UNDERSCORE_ESCAPE).replace('.', '_');
+    }
+
     /**
      * Returns the type signature of the given procedure for JNI purposes.
      * E.g., (ILjava/lang/String;[I)J
@@ -193,7 +219,7 @@ public class JLangMangler {
         String baseName = userVisibleClassName(base);
         return (mangleEscapes) ?
         		escapeSignature(baseName) :
-        			baseName.replace('.', '_');
+        			symbolClassName(base);
     }
 
     private String procSuffix(ProcedureInstance pi, String name, boolean abbreviated, boolean mangleUnicode) {
@@ -322,6 +348,18 @@ public class JLangMangler {
         return classSpecificGlobal(ct, LOAD_CLASS_STR);
     }
 
+    public String classInitState(ClassType ct) {
+        return classSpecificGlobal(ct, CLASS_INIT_STATE_STR);
+    }
+
+    public String gcBitmap(ReferenceType rt) {
+        return classSpecificGlobal(rt, GC_BITMAP_STR);
+    }
+
+    public String gcDescriptor(ReferenceType rt) {
+        return classSpecificGlobal(rt, GC_DESCR_STR);
+    }
+
     private String classSpecificGlobal(ReferenceType rt, String suffix) {
         return typePrefix(rt) + "_" + suffix;
     }
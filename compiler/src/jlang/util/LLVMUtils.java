@@ -2,15 +2,26 @@
 
 package jlang.util;
 
+import jlang.JLangOptions;
+import jlang.ast.ESeq;
 import jlang.extension.JLangStringLitExt;
 import jlang.visit.LLVMTranslator;
 import org.bytedeco.javacpp.PointerPointer;
+import polyglot.ast.ArrayInit;
+import polyglot.ast.Binary;
+import polyglot.ast.Cast;
 import polyglot.ast.Expr;
 import polyglot.ast.Lang;
+import polyglot.ast.Lit;
+import polyglot.ast.New;
+import polyglot.ast.NewArray;
+import polyglot.ast.NullLit;
+import polyglot.ast.Special;
 import polyglot.ext.jl5.types.JL5TypeSystem;
 import polyglot.ext.jl5.types.RawClass;
 import polyglot.ext.jl5.types.inference.LubType;
 import polyglot.ext.jl7.types.DiamondType;
+import polyglot.main.Options;
 import polyglot.types.*;
 import polyglot.util.InternalCompilerError;
 import polyglot.util.Position;
@@ -20,9 +31,9 @@ import java.util.List;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static jlang.extension.JLangSynchronizedExt.buildMonitorFunc;
-import static jlang.extension.JLangSynchronizedExt.buildMonitorFuncWithGlobalMutex;
 import static org.bytedeco.javacpp.LLVM.*;
 
 /**
@@ -286,6 +297,10 @@ public class LLVMUtils {
         LLVMPositionBuilderAtEnd(v.builder, entry);
         LLVMBuildBr(v.builder, body);
 
+        // Now that the control flow graph is complete, remove class
+        // initialization checks dominated by equivalent checks.
+        v.classInitChecks.elideDominatedChecks(func);
+
         // Cleanup.
         v.debugInfo.popScope();
         v.popFn();
@@ -797,25 +812,188 @@ public class LLVMUtils {
         return v.utils.buildGEP(global, 0, 0);
     }
 
+    /**
+     * Allocates zeroed memory for an instance of class {@code rt}, returning an i8*.
+     * The allocation carries a type descriptor built from the object layout, so that
+     * the garbage collector only scans words that may hold pointers. The descriptor
+     * itself is created by the runtime on first use and cached in a per-class global.
+     */
+    public LLVMValueRef buildTypedMalloc(ReferenceType rt) {
+        LLVMTypeRef wordType = llvmPtrSizedIntType();
+        int bitsPerWord = 8 * llvmPtrSize();
+
+        List<Integer> pointerWords = v.obj.pointerWords(rt);
+        int numBits = pointerWords.get(pointerWords.size() - 1) + 1;
+        long[] bitmap = new long[(numBits + bitsPerWord - 1) / bitsPerWord];
+        for (int word : pointerWords)
+            bitmap[word / bitsPerWord] |= 1L << (word % bitsPerWord);
+
+        LLVMValueRef bitmapGlobal = LLVMGetNamedGlobal(v.mod, v.mangler.gcBitmap(rt));
+        LLVMValueRef descrGlobal = LLVMGetNamedGlobal(v.mod, v.mangler.gcDescriptor(rt));
+        if (bitmapGlobal == null) {
+            LLVMValueRef[] bitmapVals = LongStream.of(bitmap)
+                    .mapToObj(w -> LLVMConstInt(wordType, w, /*sign-extend*/ 0))
+                    .toArray(LLVMValueRef[]::new);
+            LLVMValueRef bitmapArr = buildConstArray(wordType, bitmapVals);
+            bitmapGlobal = getGlobal(v.mangler.gcBitmap(rt), LLVMTypeOf(bitmapArr));
+            LLVMSetInitializer(bitmapGlobal, bitmapArr);
+            LLVMSetGlobalConstant(bitmapGlobal, 1);
+            LLVMSetLinkage(bitmapGlobal, LLVMPrivateLinkage);
+
+            descrGlobal = getGlobal(v.mangler.gcDescriptor(rt), wordType);
+            LLVMSetInitializer(descrGlobal, LLVMConstNull(wordType));
+            LLVMSetLinkage(descrGlobal, LLVMPrivateLinkage);
+        }
+
+        LLVMTypeRef funcType = functionType(
+                i8Ptr(), wordType, ptrTypeRef(wordType), wordType, ptrTypeRef(wordType));
+        LLVMValueRef func = getFunction(Constants.TYPED_MALLOC, funcType);
+        return buildFunCall(
+                func,
+                v.obj.sizeOf(rt),
+                buildGEP(bitmapGlobal, 0, 0),
+                LLVMConstInt(wordType, numBits, /*sign-extend*/ 0),
+                descrGlobal);
+    }
+
+    /**
+     * Returns the number of granules occupied by an instance of class {@code rt}
+     * if it is allocated from a thread-local free list, or zero if it is too large.
+     * See {@link Constants#TLAB_MAX_GRANULES}.
+     */
+    public long tlabGranules(ReferenceType rt) {
+        v.obj.sizeOf(rt); // Ensures that the struct type is non-opaque.
+        long size = abiSizeOf(v.obj.structTypeRef(rt));
+        long granules = (size + Constants.TLAB_GRANULE_BYTES - 1) / Constants.TLAB_GRANULE_BYTES;
+        return granules <= Constants.TLAB_MAX_GRANULES ? granules : 0;
+    }
+
+    /**
+     * Returns the Boehm GC bitmap descriptor for instances of class {@code ct}
+     * allocated from thread-local free lists, which the collector reads from the
+     * dispatch vector of each such object. Returns zero, which marks nothing, for
+     * classes that are never allocated there.
+     */
+    public long tlabGcDescriptor(ClassType ct) {
+        if (ct.flags().isInterface() || ct.flags().isAbstract() || tlabGranules(ct) == 0)
+            return 0;
+        int bitsPerWord = 8 * llvmPtrSize();
+        assert tlabGranules(ct) * Constants.TLAB_GRANULE_BYTES / llvmPtrSize()
+                <= bitsPerWord - Constants.GC_DS_TAG_BITS;
+        long descr = Constants.GC_DS_BITMAP;
+        for (int word : v.obj.pointerWords(ct))
+            descr |= 1L << (bitsPerWord - 1 - word);
+        return descr;
+    }
+
+    /**
+     * Allocates zeroed memory for a new instance of class {@code rt}, returning an i8*.
+     *
+     * Small objects are popped inline off a thread-local free list for their size
+     * (see runtime/native/alloc.h), calling into the runtime only when the list is
+     * empty. Note that the first word of such objects holds a free list link,
+     * which the caller is expected to overwrite with the dispatch vector. These
+     * objects are still scanned precisely: the collector reads their type
+     * descriptor from the dispatch vector (see {@link #tlabGcDescriptor}).
+     * Larger objects use {@link #buildTypedMalloc(ReferenceType)}.
+     */
+    public LLVMValueRef buildObjectAlloc(ReferenceType rt) {
+        long granules = tlabGranules(rt);
+        if (granules == 0)
+            return buildTypedMalloc(rt);
+
+        LLVMTypeRef wordType = llvmPtrSizedIntType();
+        LLVMTypeRef tlabType = ptrTypeRef(i8Ptr());
+        LLVMValueRef tlabGlobal = LLVMGetNamedGlobal(v.mod, Constants.TLAB_GLOBAL);
+        if (tlabGlobal == null) {
+            tlabGlobal = getGlobal(Constants.TLAB_GLOBAL, tlabType);
+            LLVMSetThreadLocal(tlabGlobal, 1);
+        }
+
+        LLVMValueRef objTemp = buildAlloca("tlab.obj", i8Ptr());
+        LLVMBasicBlockRef fast = buildBlock("tlab.fast");
+        LLVMBasicBlockRef slow = buildBlock("tlab.slow");
+        LLVMBasicBlockRef end = buildBlock("tlab.end");
+
+        LLVMValueRef granulesVal = LLVMConstInt(wordType, granules, /*sign-extend*/ 0);
+        LLVMValueRef tlab = LLVMBuildLoad(v.builder, tlabGlobal, "load.tlab");
+        LLVMValueRef slot = buildGEP(tlab, granulesVal);
+        LLVMValueRef head = LLVMBuildLoad(v.builder, slot, "load.tlab.head");
+        LLVMValueRef isEmpty = LLVMBuildIsNull(v.builder, head, "tlab.empty");
+        LLVMBuildCondBr(v.builder, isEmpty, slow, fast);
+
+        // Pop the head of the free list.
+        LLVMPositionBuilderAtEnd(v.builder, fast);
+        LLVMValueRef link = LLVMBuildBitCast(v.builder, head, tlabType, "cast.tlab.link");
+        LLVMValueRef next = LLVMBuildLoad(v.builder, link, "load.tlab.next");
+        LLVMBuildStore(v.builder, next, slot);
+        LLVMBuildStore(v.builder, head, objTemp);
+        LLVMBuildBr(v.builder, end);
+
+        // Refill the free list in the runtime.
+        LLVMPositionBuilderAtEnd(v.builder, slow);
+        LLVMTypeRef refillType = functionType(i8Ptr(), wordType);
+        LLVMValueRef refill = getFunction(Constants.TLAB_REFILL, refillType);
+        LLVMValueRef obj = buildFunCall(refill, granulesVal);
+        LLVMBuildStore(v.builder, obj, objTemp);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+        return LLVMBuildLoad(v.builder, objTemp, "tlab.obj");
+    }
+
+    /** Returns the allocation size of {@code t} in bytes under {@link Constants#DATA_LAYOUT}. */
+    public long abiSizeOf(LLVMTypeRef t) {
+        LLVMTargetDataRef td = LLVMCreateTargetData(Constants.DATA_LAYOUT);
+        long res = LLVMABISizeOfType(td, t);
+        LLVMDisposeTargetData(td);
+        return res;
+    }
+
     public LLVMValueRef buildGlobalCStr(String str) {
         LLVMValueRef val = LLVMConstStringInContext(v.context, str, str.length(), 0);
         LLVMValueRef global = buildAnonGlobal(val, true);
         return v.utils.buildGEP(global, 0, 0);
     }
 
-    /** Emits a check to ensure that the given class has been loaded by the runtime. */
+    /**
+     * Returns the global word holding the initialization state of class
+     * {@code ct}. See {@link Constants#CLASS_INIT_DONE}.
+     */
+    public LLVMValueRef getClassInitStateGlobal(ClassType ct) {
+        String mangled = v.mangler.classInitState(ct);
+        return v.utils.getGlobal(mangled, llvmPtrSizedIntType());
+    }
+
+    /**
+     * Emits a check to ensure that the given class has been loaded by the runtime.
+     *
+     * The fast path is a single acquire load of the class initialization state,
+     * which pairs with the release store performed by the runtime once static
+     * initialization completes. Only when the class is not yet initialized do we
+     * call into the class loading function, which synchronizes per JLS 7, section 12.4.2.
+     *
+     * No check is emitted if the class is already known to be initialized in the
+     * current function; see {@link ClassInitChecks}.
+     */
     public void buildClassLoadCheck(ClassType ct) {
-        // Synchronize the class loading function.
-        buildMonitorFuncWithGlobalMutex(v, Constants.MONITOR_ENTER);
+        if (v.classInitChecks.isKnownInitialized(ct)) {
+            v.classInitChecks.recordElided();
+            return;
+        }
 
+        LLVMBasicBlockRef checkBlock = LLVMGetInsertBlock(v.builder);
         LLVMBasicBlockRef loadClass = v.utils.buildBlock("load.class");
         LLVMBasicBlockRef end = v.utils.buildBlock("continue");
-        String classMangled = v.mangler.classObj(ct);
-        LLVMTypeRef classType = v.utils.toLL(v.ts.Class());
-        LLVMValueRef classGlobal = v.utils.getGlobal(classMangled, classType);
-        LLVMValueRef clazz = LLVMBuildLoad(v.builder, classGlobal, "class");
-        LLVMValueRef check = LLVMBuildIsNull(v.builder, clazz, "class.null");
-        LLVMBuildCondBr(v.builder, check, loadClass, end);
+        LLVMValueRef stateGlobal = getClassInitStateGlobal(ct);
+        LLVMValueRef state = LLVMBuildLoad(v.builder, stateGlobal, "class.init.state");
+        LLVMSetOrdering(state, LLVMAtomicOrderingAcquire);
+        LLVMSetAlignment(state, llvmPtrSize());
+        LLVMValueRef done = LLVMConstInt(
+                llvmPtrSizedIntType(), Constants.CLASS_INIT_DONE, /*sign-extend*/ 0);
+        LLVMValueRef check = LLVMBuildICmp(v.builder, LLVMIntNE, state, done, "class.uninit");
+        LLVMValueRef br = LLVMBuildCondBr(v.builder, check, loadClass, end);
+        v.classInitChecks.recordCheck(ct, checkBlock, end, state, check, br);
 
         LLVMPositionBuilderAtEnd(v.builder, loadClass);
         String loadClassMangled = v.mangler.classLoadingFunc(ct);
@@ -825,8 +1003,146 @@ public class LLVMUtils {
         LLVMBuildBr(v.builder, end);
 
         LLVMPositionBuilderAtEnd(v.builder, end);
+    }
+
+    /**
+     * Emits a check that throws a NullPointerException if the translation of
+     * {@code e} is null. Skipped if {@code e} is known to be non-null.
+     *
+     * The throwing block ends in unreachable, so LLVM treats it as cold and lays
+     * it out of line; repeated checks of the same value are folded by the optimizer.
+     */
+    public void buildNullCheck(Expr e) {
+        if (isNonNull(e))
+            return;
+
+        LLVMValueRef val = v.getTranslation(e);
+        LLVMBasicBlockRef npe = v.utils.buildBlock("npe");
+        LLVMBasicBlockRef end = v.utils.buildBlock("nonnull");
+        LLVMValueRef isNull = LLVMBuildIsNull(v.builder, val, "is.null");
+        LLVMBuildCondBr(v.builder, isNull, npe, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, npe);
+        buildThrowFailedCheck(Constants.THROW_NPE_FUNC, Constants.PREALLOCATED_NULL_POINTER);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+    }
+
+    /**
+     * Emits a check that throws an ArithmeticException if the integer
+     * {@code divisor} is zero (JLS 7, section 15.17.2).
+     */
+    public void buildDivisionByZeroCheck(LLVMValueRef divisor) {
+        LLVMBasicBlockRef zero = v.utils.buildBlock("div.zero");
+        LLVMBasicBlockRef end = v.utils.buildBlock("div.nonzero");
+        LLVMValueRef isZero = LLVMBuildICmp(
+                v.builder, LLVMIntEQ, divisor, LLVMConstNull(LLVMTypeOf(divisor)), "div.is.zero");
+        LLVMBuildCondBr(v.builder, isZero, zero, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, zero);
+        buildThrowFailedCheck(Constants.THROW_ARITHMETIC_FUNC, Constants.PREALLOCATED_ARITHMETIC);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+    }
+
+    /**
+     * Calls the runtime function {@code throwFunc}, which throws a new exception for
+     * a failed runtime check of the given kind, ending the current block.
+     */
+    private void buildThrowFailedCheck(String throwFunc, int kind) {
+        if (((JLangOptions) Options.global).omitStackTraceInFastThrow)
+            buildFastThrowCheck(kind);
+        LLVMValueRef func = getFunction(throwFunc, functionType(LLVMVoidTypeInContext(v.context)));
+        buildProcCall(func);
+        LLVMBuildUnreachable(v.builder);
+    }
+
+    /**
+     * Emits the start of a throw for a failed runtime check of the given kind
+     * (see {@link Constants#PREALLOCATED_NULL_POINTER}) under
+     * -omit-stack-trace-in-fast-throw. As in HotSpot, a check site only switches to
+     * throwing the shared instance of its exception once it has failed often, here
+     * {@link Constants#FAST_THROW_THRESHOLD} times, counted by a global for the site.
+     * Until then, the builder is left in a block that must throw a new exception.
+     */
+    public void buildFastThrowCheck(int kind) {
+        LLVMValueRef counter = buildAnonGlobal(LLVMConstInt(i32(), 0, /*sign-extend*/ 0), false);
+        LLVMBasicBlockRef fresh = buildBlock("throw.fresh");
+        LLVMBasicBlockRef shared = buildBlock("throw.shared");
+        LLVMValueRef count = LLVMBuildLoad(v.builder, counter, "throw.count");
+        LLVMSetOrdering(count, LLVMAtomicOrderingMonotonic);
+        LLVMSetAlignment(count, 4);
+        LLVMValueRef threshold = LLVMConstInt(i32(), Constants.FAST_THROW_THRESHOLD, /*sign-extend*/ 0);
+        LLVMValueRef isFresh = LLVMBuildICmp(v.builder, LLVMIntULT, count, threshold, "throw.is.fresh");
+        LLVMBuildCondBr(v.builder, isFresh, fresh, shared);
+
+        LLVMPositionBuilderAtEnd(v.builder, shared);
+        buildThrowPreallocated(kind);
+
+        // Racing threads may lose increments, which only delays the switch.
+        LLVMPositionBuilderAtEnd(v.builder, fresh);
+        LLVMValueRef next = LLVMBuildAdd(
+                v.builder, count, LLVMConstInt(i32(), 1, /*sign-extend*/ 0), "throw.count.next");
+        LLVMValueRef store = LLVMBuildStore(v.builder, next, counter);
+        LLVMSetOrdering(store, LLVMAtomicOrderingMonotonic);
+        LLVMSetAlignment(store, 4);
+    }
 
-        buildMonitorFuncWithGlobalMutex(v, Constants.MONITOR_EXIT);
+    /**
+     * Throws the shared instance of the given kind of exception (see
+     * {@link Constants#PREALLOCATED_NULL_POINTER}), ending the current block.
+     */
+    private void buildThrowPreallocated(int kind) {
+        LLVMValueRef throwFunc = getFunction(
+                Constants.THROW_PREALLOCATED_FUNC,
+                functionType(LLVMVoidTypeInContext(v.context), i32()));
+        buildProcCall(throwFunc, LLVMConstInt(i32(), kind, /*sign-extend*/ 0));
+        LLVMBuildUnreachable(v.builder);
+    }
+
+    /** Returns true if {@code e} cannot evaluate to null. */
+    private boolean isNonNull(Expr e) {
+        if (e instanceof Special || e instanceof New || e instanceof NewArray
+                || e instanceof ArrayInit || e instanceof Lit && !(e instanceof NullLit))
+            return true;
+        if (e instanceof Binary)
+            return e.type().isReference(); // String concatenation.
+        if (e instanceof Cast)
+            return isNonNull(((Cast) e).expr());
+        if (e instanceof ESeq)
+            return isNonNull(((ESeq) e).expr());
+        return false;
+    }
+
+    /**
+     * Builds a load of a volatile variable of Java type {@code t} from {@code ptr}.
+     * Volatile accesses are sequentially consistent (JLS 7, section 17.4.4),
+     * which on x86 costs nothing more than a plain load.
+     */
+    public LLVMValueRef buildVolatileLoad(LLVMValueRef ptr, Type t, String name) {
+        if (t.isBoolean()) {
+            // LLVM has no atomic i1 accesses, so access the byte holding the value.
+            LLVMValueRef bytePtr = LLVMBuildBitCast(v.builder, ptr, ptrTypeRef(i8()), "cast.bool");
+            LLVMValueRef b = buildVolatileLoad(bytePtr, v.ts.Byte(), name);
+            return LLVMBuildTrunc(v.builder, b, toLL(t), name);
+        }
+        LLVMValueRef load = LLVMBuildLoad(v.builder, ptr, name);
+        LLVMSetOrdering(load, LLVMAtomicOrderingSequentiallyConsistent);
+        LLVMSetAlignment(load, sizeOfType(t));
+        return load;
+    }
+
+    /** Builds a store of a volatile variable; see {@link #buildVolatileLoad}. */
+    public LLVMValueRef buildVolatileStore(LLVMValueRef val, LLVMValueRef ptr, Type t) {
+        if (t.isBoolean()) {
+            LLVMValueRef bytePtr = LLVMBuildBitCast(v.builder, ptr, ptrTypeRef(i8()), "cast.bool");
+            LLVMValueRef b = LLVMBuildZExt(v.builder, val, i8(), "zext.bool");
+            return buildVolatileStore(b, bytePtr, v.ts.Byte());
+        }
+        LLVMValueRef store = LLVMBuildStore(v.builder, val, ptr);
+        LLVMSetOrdering(store, LLVMAtomicOrderingSequentiallyConsistent);
+        LLVMSetAlignment(store, sizeOfType(t));
+        return store;
     }
 
     /**
@@ -0,0 +1,174 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang.visit;
+
+import polyglot.ast.*;
+import polyglot.types.LocalInstance;
+import polyglot.visit.NodeVisitor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import jlang.ast.JLangExt;
+import jlang.extension.JLangArrayAccessExt;
+
+/**
+ * Marks array accesses that are provably in bounds as already guarded, so that
+ * {@link DesugarLocally} does not emit index bounds checks for them.
+ *
+ * Handles canonical counted loops of the form
+ * {@code for (int i = c; i < a.length; i++) { ... a[i] ... }},
+ * where {@code c} is a non-negative constant, {@code a} and {@code i} are locals
+ * not assigned in the condition or body, and {@code i} is only incremented by the
+ * loop update. Then {@code 0 <= i < a.length} holds throughout the body, and the
+ * increment cannot overflow since {@code i < a.length <= Integer.MAX_VALUE}.
+ * Array accesses in enhanced for-loops are guarded by construction
+ * (see {@link jlang.extension.JLangExtendedForExt}).
+ *
+ * Must run before {@link DesugarLocally}.
+ */
+public class EliminateBoundsChecks extends NodeVisitor {
+
+    public EliminateBoundsChecks(Lang lang) {
+        super(lang);
+    }
+
+    @Override
+    public Node leave(Node old, Node n, NodeVisitor v) {
+        if (!(n instanceof For))
+            return n;
+        For loop = (For) n;
+
+        LocalInstance idx = inductionVariable(loop);
+        if (idx == null)
+            return n;
+        Set<LocalInstance> arrays = new HashSet<>();
+        collectBoundedArrays(loop.cond(), idx, arrays);
+        if (arrays.isEmpty())
+            return n;
+
+        Set<LocalInstance> invariant = new HashSet<>(arrays);
+        invariant.add(idx);
+        if (assigns(loop.cond(), invariant) || assigns(loop.body(), invariant))
+            return n;
+
+        Stmt body = (Stmt) loop.body().visit(new NodeVisitor(lang()) {
+            @Override
+            public Node override(Node parent, Node n) {
+                // Code in local and anonymous classes may run outside of the loop.
+                return n instanceof ClassBody ? n : null;
+            }
+
+            @Override
+            public Node leave(Node old, Node n, NodeVisitor v) {
+                if (n instanceof ArrayAccess) {
+                    ArrayAccess aa = (ArrayAccess) n;
+                    if (isLocal(aa.index(), idx) && arrays.contains(local(aa.array()))) {
+                        JLangArrayAccessExt ext = (JLangArrayAccessExt) JLangExt.ext(aa);
+                        return ext.setGuarded(aa);
+                    }
+                }
+                return n;
+            }
+        });
+        return loop.body(body);
+    }
+
+    /**
+     * Returns the loop variable of {@code loop} if it is an int local initialized
+     * to a non-negative constant and updated only by a single increment.
+     */
+    private static LocalInstance inductionVariable(For loop) {
+        if (loop.cond() == null || loop.iters().size() != 1)
+            return null;
+
+        ForUpdate update = loop.iters().get(0);
+        if (!(update instanceof Eval))
+            return null;
+        Expr inc = ((Eval) update).expr();
+        Expr target;
+        if (inc instanceof Unary
+                && (((Unary) inc).operator() == Unary.POST_INC
+                    || ((Unary) inc).operator() == Unary.PRE_INC)) {
+            target = ((Unary) inc).expr();
+        } else if (inc instanceof LocalAssign
+                && ((LocalAssign) inc).operator() == Assign.ADD_ASSIGN
+                && isIntLit(((LocalAssign) inc).right(), 1)) {
+            target = ((LocalAssign) inc).left();
+        } else {
+            return null;
+        }
+
+        LocalInstance li = local(target);
+        if (li == null || !li.type().isInt())
+            return null;
+        for (ForInit init : loop.inits()) {
+            if (init instanceof LocalDecl) {
+                LocalDecl ld = (LocalDecl) init;
+                if (ld.localInstance().orig() == li) {
+                    Expr e = ld.init();
+                    return e instanceof IntLit && ((IntLit) e).value() >= 0 ? li : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds to {@code arrays} each local {@code a} such that {@code cond}
+     * implies {@code idx < a.length}.
+     */
+    private static void collectBoundedArrays(
+            Expr cond, LocalInstance idx, Set<LocalInstance> arrays) {
+        if (!(cond instanceof Binary))
+            return;
+        Binary b = (Binary) cond;
+        if (b.operator() == Binary.COND_AND) {
+            collectBoundedArrays(b.left(), idx, arrays);
+            collectBoundedArrays(b.right(), idx, arrays);
+        } else if (b.operator() == Binary.LT && isLocal(b.left(), idx)
+                && b.right() instanceof Field) {
+            Field f = (Field) b.right();
+            if (f.name().equals("length") && f.target() instanceof Local
+                    && f.target().type().isArray()) {
+                arrays.add(local((Local) f.target()));
+            }
+        }
+    }
+
+    /** Returns true if {@code n} may assign to any of {@code locals}. */
+    private boolean assigns(Node n, Set<LocalInstance> locals) {
+        boolean[] res = {false};
+        n.visit(new NodeVisitor(lang()) {
+            @Override
+            public Node leave(Node old, Node n, NodeVisitor v) {
+                Expr target = null;
+                if (n instanceof LocalAssign) {
+                    target = ((LocalAssign) n).left();
+                } else if (n instanceof Unary) {
+                    Unary.Operator op = ((Unary) n).operator();
+                    if (op == Unary.PRE_INC || op == Unary.POST_INC
+                            || op == Unary.PRE_DEC || op == Unary.POST_DEC)
+                        target = ((Unary) n).expr();
+                }
+                if (target != null && locals.contains(local(target)))
+                    res[0] = true;
+                return n;
+            }
+        });
+        return res[0];
+    }
+
+    private static boolean isIntLit(Expr e, long value) {
+        return e instanceof IntLit && ((IntLit) e).value() == value;
+    }
+
+    private static boolean isLocal(Expr e, LocalInstance li) {
+        return local(e) == li;
+    }
+
+    /** Returns the original local instance of {@code e}, or null if not a local. */
+    private static LocalInstance local(Receiver e) {
+        return e instanceof Local ? ((Local) e).localInstance().orig() : null;
+    }
+}
@@ -9,7 +9,11 @@ import jlang.ast.JLangNodeFactory;
 import jlang.extension.JLangTryExt.ExceptionFrame;
 import jlang.structures.*;
 import jlang.types.JLangTypeSystem;
+import jlang.util.AtomicIntrinsics;
+import jlang.util.ClassHierarchy;
+import jlang.util.ClassInitChecks;
 import jlang.util.DebugInfo;
+import jlang.util.Devirtualizer;
 import jlang.util.LLVMUtils;
 import jlang.util.JLangMangler;
 import jlang.util.TypedNodeFactory;
@@ -44,6 +48,9 @@ public class LLVMTranslator extends NodeVisitor {
     public final JLangMangler mangler;
     public final ObjectStruct obj;
     public final DispatchVector dv;
+    public final ClassInitChecks classInitChecks;
+    public final Devirtualizer devirtualizer;
+    public final AtomicIntrinsics atomicIntrinsics;
 
     private int ctorCounter;
 
@@ -82,10 +89,16 @@ public class LLVMTranslator extends NodeVisitor {
     private FnCtxt fnCtxt() { return fnCtxts.getFirst(); }
 
     /** Must be called when entering a function. */
-    public void pushFn(LLVMValueRef fn) { fnCtxts.push(new FnCtxt(fn)); }
+    public void pushFn(LLVMValueRef fn) {
+        fnCtxts.push(new FnCtxt(fn));
+        classInitChecks.enterFn();
+    }
 
     /** Must be called when leaving a function. */
-    public void popFn() { fnCtxts.pop(); }
+    public void popFn() {
+        fnCtxts.pop();
+        classInitChecks.leaveFn();
+    }
 
     public LLVMValueRef currFn() { return fnCtxts.peek().fn; }
 
@@ -114,10 +127,25 @@ public class LLVMTranslator extends NodeVisitor {
         return ListUtil.copy(ctors, false);
     }
 
+    /**
+     * Globals of the module that point to string literals, keyed by name. When the
+     * module is loaded, the runtime points each of them to the interned string
+     * with the same contents.
+     */
+    private Map<String, LLVMValueRef> stringLiteralSlots = new LinkedHashMap<>();
+
+    public void addStringLiteralSlot(String name, LLVMValueRef global) {
+        stringLiteralSlots.putIfAbsent(name, global);
+    }
+
+    public List<LLVMValueRef> getStringLiteralSlots() {
+        return new ArrayList<>(stringLiteralSlots.values());
+    }
+
     public LLVMTranslator(
             String filePath, LLVMContextRef context,
             LLVMModuleRef mod, LLVMBuilderRef builder,
-            JLangTypeSystem ts, JLangNodeFactory nf) {
+            JLangTypeSystem ts, JLangNodeFactory nf, ClassHierarchy cha) {
         super(nf.lang());
         this.context = context;
         this.mod = mod;
@@ -128,6 +156,9 @@ public class LLVMTranslator extends NodeVisitor {
         this.mangler = new JLangMangler(this);
         this.obj = createObjectStruct();
         this.dv = createDispatchVector();
+        this.classInitChecks = new ClassInitChecks(this);
+        this.devirtualizer = new Devirtualizer(this, cha);
+        this.atomicIntrinsics = new AtomicIntrinsics(this);
         this.nf = nf;
         this.ts = ts;
         this.tnf = new TypedNodeFactory(ts, nf);
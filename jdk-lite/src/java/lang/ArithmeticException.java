@@ -0,0 +1,15 @@
+//Copyright (C) 2018 Cornell University
+
+package java.lang;
+
+public
+class ArithmeticException extends RuntimeException {
+
+    public ArithmeticException() {
+        super();
+    }
+
+    public ArithmeticException(String s) {
+        super(s);
+    }
+}
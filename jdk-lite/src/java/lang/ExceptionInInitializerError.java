@@ -0,0 +1,25 @@
+//Copyright (C) 2018 Cornell University
+
+package java.lang;
+
+public class ExceptionInInitializerError extends LinkageError {
+
+    private Throwable exception;
+
+    public ExceptionInInitializerError() {
+        super();
+    }
+
+    public ExceptionInInitializerError(Throwable thrown) {
+        super(null, thrown);
+        this.exception = thrown;
+    }
+
+    public ExceptionInInitializerError(String s) {
+        super(s);
+    }
+
+    public Throwable getException() {
+        return exception;
+    }
+}
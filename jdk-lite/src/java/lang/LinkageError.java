@@ -0,0 +1,18 @@
+//Copyright (C) 2018 Cornell University
+
+package java.lang;
+
+public class LinkageError extends Error {
+
+    public LinkageError() {
+        super();
+    }
+
+    public LinkageError(String s) {
+        super(s);
+    }
+
+    public LinkageError(String s, Throwable cause) {
+        super(s, cause);
+    }
+}
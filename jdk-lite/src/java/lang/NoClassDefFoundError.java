@@ -0,0 +1,14 @@
+//Copyright (C) 2018 Cornell University
+
+package java.lang;
+
+public class NoClassDefFoundError extends LinkageError {
+
+    public NoClassDefFoundError() {
+        super();
+    }
+
+    public NoClassDefFoundError(String s) {
+        super(s);
+    }
+}
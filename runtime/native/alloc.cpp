@@ -0,0 +1,95 @@
+// Copyright (C) 2018 Cornell University
+
+#include "alloc.h"
+#include "rep.h"
+
+#include <cstddef>
+#include <cstdio>
+#include <cstdlib>
+
+#define GC_THREADS
+#include <gc_mark.h>
+#undef GC_THREADS
+
+static void *emptyTlab[JLANG_TLAB_MAX_GRANULES + 1];
+
+__thread void **__jlang_tlab = emptyTlab;
+
+static pthread_key_t tlabKey;
+static pthread_once_t tlabKeyOnce = PTHREAD_ONCE_INIT;
+
+// The collector kind of objects on the free lists. Its mark descriptor tells
+// the collector to read each object's descriptor from the word at offset
+// gc_descr_ of the dispatch vector that the object's first word points to.
+//
+// An object still on a free list holds a link to the next free object in its
+// first word instead, so the collector reads the second word of that object,
+// which is cleared, and marks nothing. The last object's link is null, which
+// the collector also skips.
+static int tlabKind;
+
+static_assert(offsetof(DispatchVector, gc_descr_) == sizeof(void *),
+              "the descriptor must lie within the smallest free object");
+
+static void createTlabKind() {
+    GC_word descr = static_cast<GC_word>(
+                        -static_cast<GC_signed_word>(
+                            offsetof(DispatchVector, gc_descr_)) -
+                        GC_INDIR_PER_OBJ_BIAS) |
+                    GC_DS_PER_OBJECT;
+    tlabKind = GC_new_kind(GC_new_free_list(), descr,
+                           /*add_size_to_descriptor*/ 0,
+                           /*clear_new_objects*/ 1);
+}
+
+// Releases the free lists of an exiting thread, letting the collector
+// reclaim any objects left on them.
+static void freeTlab(void *tlab) {
+    __jlang_tlab = emptyTlab;
+    GC_FREE(tlab);
+}
+
+static void createTlabKey() {
+    if (pthread_key_create(&tlabKey, freeTlab) != 0) {
+        perror("pthread_key_create failed");
+    }
+    createTlabKind();
+}
+
+// Allocates the free list table of the current thread. The table is
+// uncollectable so that the collector treats it as a root; otherwise objects
+// sitting on the free lists could be reclaimed and handed out twice.
+static void **createTlab() {
+    pthread_once(&tlabKeyOnce, createTlabKey);
+    void **tlab = reinterpret_cast<void **>(
+        GC_MALLOC_UNCOLLECTABLE(sizeof(emptyTlab)));
+    pthread_setspecific(tlabKey, tlab);
+    __jlang_tlab = tlab;
+    return tlab;
+}
+
+extern "C" {
+
+void *__jlang_tlab_refill(size_t granules) {
+    void **tlab = __jlang_tlab;
+    if (tlab == emptyTlab)
+        tlab = createTlab();
+
+    // As GC_malloc_many does, leave a byte past the end of each object when
+    // the collector recognizes interior pointers, so that a pointer just past
+    // an object does not retain the next one.
+    size_t bytes = granules * JLANG_TLAB_GRANULE_BYTES;
+    if (GC_get_all_interior_pointers())
+        bytes += JLANG_TLAB_GRANULE_BYTES;
+    void *list = nullptr;
+    GC_generic_malloc_many(bytes, tlabKind, &list);
+    if (list == nullptr) {
+        fprintf(stderr, "Out of memory\n");
+        abort();
+    }
+    tlab[granules] = GC_NEXT(list);
+    GC_NEXT(list) = nullptr;
+    return list;
+}
+
+} // extern "C"
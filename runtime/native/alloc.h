@@ -0,0 +1,36 @@
+// Copyright (C) 2018 Cornell University
+
+// Thread-local allocation buffers for small objects.
+//
+// Each thread owns a table of free lists, indexed by object size in granules
+// (see JLANG_TLAB_GRANULE_BYTES). Compiled code pops objects off these lists
+// inline, and calls __jlang_tlab_refill only when a list is empty. Lists are
+// refilled in bulk with GC_generic_malloc_many, so most allocations never
+// enter the collector. The objects belong to a collector kind that reads the
+// mark descriptor of each object from its dispatch vector, so they are
+// scanned as precisely as objects with a typed allocation.
+#pragma once
+
+#include <cstddef>
+#include <pthread.h>
+
+#define GC_THREADS
+#include <gc.h>
+#undef GC_THREADS
+
+// Must match the constants in the compiler (see jlang.util.Constants).
+#define JLANG_TLAB_GRANULE_BYTES 16
+#define JLANG_TLAB_MAX_GRANULES 16
+
+extern "C" {
+
+// The free list table of the current thread. Entry i holds a list of cleared
+// objects of at least i granules, linked through their first word. Before the
+// first refill on a thread this points to a shared table of empty lists.
+extern __thread void **__jlang_tlab;
+
+// Returns a cleared object of at least the given number of granules, after
+// refilling the current thread's free list for that size.
+void *__jlang_tlab_refill(size_t granules);
+
+} // extern "C"
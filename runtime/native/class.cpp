@@ -8,6 +8,8 @@
 #include "array.h"
 #include "base_class.h"
 #include "constants.h"
+#include "exception.h"
+#include "intern.h"
 #include "jni.h"
 #include "jvm.h"
 #include "rep.h"
@@ -28,6 +30,7 @@
 
 #define GC_THREADS
 #include <gc.h>
+#include <gc_typed.h>
 #undef GC_THREADS
 
 #define MEMCPY(a, b, c) memcpy((void *)a, (void *)b, c)
@@ -75,6 +78,7 @@ PRIM_CLASS_DEF(void)
         newInfo->num_fields = 0;                                               \
         newInfo->num_static_fields = 0;                                        \
         newInfo->num_methods = 0;                                              \
+        newInfo->method_order = NULL;                                          \
         newInfo->obj_size = classSize;                                         \
         newInfo->super_ptr = NULL;                                             \
         newInfo->cdv = NULL;                                                   \
@@ -82,11 +86,11 @@ PRIM_CLASS_DEF(void)
     } else                                                                     \
         ((void)0)
 
-// just copy over DV
-// dw475 TODO should copy over sync vars
+// just copy over DV, starting out with a fresh lock word
 #define REGISTER_PRIM_CLASS(prim)                                              \
-    PRIM_CLASS(prim, Klass) = (JClassRep *)malloc(classSize);                  \
+    PRIM_CLASS(prim, Klass) = AllocJavaClassObject(classSize);                 \
     memcpy(PRIM_CLASS(prim, Klass), baseClass, classSize);                     \
+    PRIM_CLASS(prim, Klass)->Super()->ResetLockWord();                         \
     Polyglot_native_##prim =                                                   \
         reinterpret_cast<jclass>(PRIM_CLASS(prim, Klass));                     \
     PRIM_REGISTER(prim);
@@ -104,16 +108,126 @@ jclass Polyglot_native_char;
 jclass Polyglot_native_boolean;
 jclass Polyglot_native_void;
 
-// For simplicity we store class information in a map.
-// If we find this to be too slow, we could allocate extra memory for
-// class objects and store the information inline with each instance.
-static std::unordered_map<jclass, const JavaClassInfo *> classes;
-static std::unordered_map<std::string, const jclass> cnames;
+// Each class object is preceded by a word that points to the information for
+// that class once it is registered, so that finding the information for a
+// class is a single load. Class objects are allocated with this word by the
+// compiler (see JLangClassDeclExt) and by AllocJavaClassObject.
+static const JavaClassInfo **ClassInfoSlot(jclass cls) {
+    return reinterpret_cast<const JavaClassInfo **>(cls) - 1;
+}
+
+// Allocates a zeroed class object of the given size for a class created by
+// the runtime, with room for its information word.
+static JClassRep *AllocJavaClassObject(int size) {
+    void **memory = static_cast<void **>(calloc(1, sizeof(void *) + size));
+    return reinterpret_cast<JClassRep *>(memory + 1);
+}
+
+// Maps class names to class objects.
+//
+// Lookups are lock-free. The table uses open addressing and entries are never
+// removed; when the table fills up, writers publish a larger copy instead of
+// resizing it in place. Writers must hold the global mutex. Replaced tables
+// are never freed, since readers may still be using them, but their total
+// size is bounded by the size of the current table.
+namespace {
+
+struct ClassNameEntry {
+    const char *name; // Null if the entry is empty. Written last.
+    jclass cls;
+};
+
+struct ClassNameTable {
+    size_t capacity; // A power of two.
+    size_t size;
+    ClassNameEntry *entries;
+};
+
+} // namespace
+
+static ClassNameTable *classNames = nullptr;
+
+static size_t HashClassName(const char *name) {
+    size_t hash = 14695981039346656037ULL; // FNV-1a
+    for (const char *c = name; *c != '\0'; ++c) {
+        hash ^= static_cast<unsigned char>(*c);
+        hash *= 1099511628211ULL;
+    }
+    return hash;
+}
+
+static jclass LookupClassName(const ClassNameTable *table, const char *name) {
+    if (table == nullptr)
+        return nullptr;
+    size_t mask = table->capacity - 1;
+    for (size_t i = HashClassName(name) & mask;; i = (i + 1) & mask) {
+        ClassNameEntry *e = &table->entries[i];
+        const char *entryName = __atomic_load_n(&e->name, __ATOMIC_ACQUIRE);
+        if (entryName == nullptr)
+            return nullptr;
+        if (strcmp(entryName, name) == 0)
+            return e->cls;
+    }
+}
+
+static void InsertClassName(ClassNameTable *table, const char *name,
+                            jclass cls) {
+    size_t mask = table->capacity - 1;
+    size_t i = HashClassName(name) & mask;
+    while (table->entries[i].name != nullptr)
+        i = (i + 1) & mask;
+    table->entries[i].cls = cls;
+    __atomic_store_n(&table->entries[i].name, name, __ATOMIC_RELEASE);
+    ++table->size;
+}
+
+// Must hold the global mutex. The name must outlive the table.
+static void AddClassName(const char *name, jclass cls) {
+    ClassNameTable *table = classNames;
+    if (table == nullptr || (table->size + 1) * 2 > table->capacity) {
+        size_t capacity = table == nullptr ? 1024 : table->capacity * 2;
+        ClassNameTable *larger = new ClassNameTable{
+            capacity, 0, new ClassNameEntry[capacity]()};
+        if (table != nullptr) {
+            for (size_t i = 0; i < table->capacity; ++i) {
+                ClassNameEntry &e = table->entries[i];
+                if (e.name != nullptr)
+                    InsertClassName(larger, e.name, e.cls);
+            }
+        }
+        __atomic_store_n(&classNames, larger, __ATOMIC_RELEASE);
+        table = larger;
+    }
+    InsertClassName(table, name, cls);
+}
+
+// Class initialization states. A state word is zero before initialization,
+// holds the address of the initializing thread's token while initialization
+// is in progress, and is CLASS_INIT_DONE afterwards, or CLASS_INIT_ERROR if
+// a static initializer threw an exception.
+// CLASS_INIT_DONE must match Constants.CLASS_INIT_DONE in JLang.
+#define CLASS_INIT_NONE 0
+#define CLASS_INIT_DONE 1
+#define CLASS_INIT_ERROR 2
+
+// Only threads that find a class uninitialized take this lock, so it is
+// shared by all classes rather than allocated per class.
+static pthread_mutex_t classInitMutex = PTHREAD_MUTEX_INITIALIZER;
+static pthread_cond_t classInitCond = PTHREAD_COND_INITIALIZER;
+static thread_local char classInitToken;
 
 extern "C" {
 
-// invoked by JLang compiler to intern string literals when they are loaded
-void InternStringLit(jstring str) { *str = *internJString(str); }
+// Invoked once per module by a JLang-generated ctor to intern the string
+// literals of that module. Each slot is a global through which compiled code
+// reads a literal, and initially points to the module's copy of it. The slot
+// is redirected to the interned string with the same contents, which is not
+// that copy if another image (e.g., one that does not share the literal
+// symbol with this module) or the running program interned it first.
+void InternStringLits(jstring **slots, jint count) {
+    for (jint i = 0; i < count; ++i)
+        *slots[i] = internJString(*slots[i]);
+}
 
 /**
  * Register a java class where cls points to the class object and
@@ -152,10 +266,54 @@ void RegisterJavaClass(jclass cls, const JavaClassInfo *info) {
                    m->name, m->sig, m->offset, m->fnPtr, m->trampoline);
         }
     }
-    assert(classes.count(cls) == 0 && "Java class was loaded twice!");
-    classes.emplace(cls, info);
-    std::string cname(info->name);
-    cnames.emplace(cname, cls);
+    assert(*ClassInfoSlot(cls) == nullptr && "Java class was loaded twice!");
+    __atomic_store_n(ClassInfoSlot(cls), info, __ATOMIC_RELEASE);
+    AddClassName(info->name, cls);
+}
+
+jboolean BeginClassInit(intptr_t *state, const JavaClassInfo *info) {
+    intptr_t self = reinterpret_cast<intptr_t>(&classInitToken);
+    intptr_t curr = __atomic_load_n(state, __ATOMIC_ACQUIRE);
+    if (curr == CLASS_INIT_DONE || curr == self) {
+        return JNI_FALSE;
+    }
+
+    {
+        ScopedLock lock(&classInitMutex);
+        while (true) {
+            curr = __atomic_load_n(state, __ATOMIC_ACQUIRE);
+            if (curr == CLASS_INIT_DONE || curr == self) {
+                return JNI_FALSE;
+            }
+            if (curr == CLASS_INIT_NONE) {
+                __atomic_store_n(state, self, __ATOMIC_RELAXED);
+                return JNI_TRUE;
+            }
+            if (curr == CLASS_INIT_ERROR) {
+                break;
+            }
+            // Another thread is initializing the class.
+            pthread_cond_wait(&classInitCond, &classInitMutex);
+        }
+    }
+    // Throw only once the lock is released.
+    throwNoClassDefFoundError(info->name);
+    return JNI_FALSE;
+}
+
+void EndClassInit(intptr_t *state) {
+    ScopedLock lock(&classInitMutex);
+    __atomic_store_n(state, CLASS_INIT_DONE, __ATOMIC_RELEASE);
+    pthread_cond_broadcast(&classInitCond);
+}
+
+void FailClassInit(intptr_t *state, jthrowable cause) {
+    {
+        ScopedLock lock(&classInitMutex);
+        __atomic_store_n(state, CLASS_INIT_ERROR, __ATOMIC_RELEASE);
+        pthread_cond_broadcast(&classInitCond);
+    }
+    throwExceptionInInitializerError(cause);
 }
 
 } // extern "C"
@@ -208,8 +366,9 @@ const jclass initArrayClass(const char *name) {
 
     // create base array class and its info.
     jclass runtimeArrayClass = getRuntimeArrayClass();
-    jclass newKlazz = (jclass)malloc(jclass_size);
+    jclass newKlazz = AllocJavaClassObject(jclass_size)->Wrap();
     memcpy(newKlazz, runtimeArrayClass, jclass_size);
+    Unwrap(newKlazz)->Super()->ResetLockWord();
     JavaClassInfo *newInfo = (JavaClassInfo *)malloc(sizeof(JavaClassInfo));
     memcpy(newInfo, GetJavaClassInfo(runtimeArrayClass), sizeof(JavaClassInfo));
 
@@ -231,6 +390,7 @@ const jclass initArrayClass(const char *name) {
     newInfo->static_fields = nullptr;
     newInfo->num_methods = 0;
     newInfo->methods = nullptr;
+    newInfo->method_order = nullptr;
 
     // init and set cdv/
     int numOfCdv = getNumOfRuntimeArrayCdvMethods();
@@ -394,13 +554,9 @@ int arrayRepSize(jclass cls) {
  * Returns the class info object for the given java class object
  */
 const JavaClassInfo *GetJavaClassInfo(jclass cls) {
-    ScopedLock lock(Monitor::Instance().globalMutex());
-    
-    try {
-        return classes.at(cls);
-    } catch (const std::out_of_range &oor) {
+    if (cls == NULL)
         return NULL;
-    }
+    return __atomic_load_n(ClassInfoSlot(cls), __ATOMIC_ACQUIRE);
 }
 
 /**
@@ -428,15 +584,16 @@ const jclass GetJavaClassFromPathName(const char *name) {
  * Example: java.lang.Class returns the Class class object
  */
 const jclass GetJavaClassFromName(const char *name) {
-    try {
-        return cnames.at(std::string(name));
-    } catch (const std::out_of_range &oor) {
-        if (isArrayClassName(name)) {
-            return initArrayClass(name);
-        } else {
-            return NULL;
-        }
-    }
+    jclass cls = LookupClassName(
+        __atomic_load_n(&classNames, __ATOMIC_ACQUIRE), name);
+    if (cls != NULL || !isArrayClassName(name))
+        return cls;
+
+    // Array classes are created on first use. Check again while holding
+    // the lock, so that each is created only once.
+    ScopedLock lock(Monitor::Instance().globalMutex());
+    cls = LookupClassName(classNames, name);
+    return cls != NULL ? cls : initArrayClass(name);
 }
 
 DispatchVector *GetJavaCdvFromName(const char *name) {
@@ -511,6 +668,27 @@ std::string SigToClassName(const std::string &sig) {
     throw std::invalid_argument("invalid signature to be converted: " + sig);
 }
 
+// Returns a type descriptor for arrays of primitives, under which the
+// collector scans only the object header (the dispatch vector and lock word),
+// never the elements.
+static GC_descr primitiveArrayDescr() {
+    GC_word bitmap[1] = {0};
+    GC_set_bit(bitmap, 0); // cdv_
+    GC_set_bit(bitmap, 1); // lock word
+    return GC_make_descriptor(bitmap, 2);
+}
+
+// Allocates zeroed memory for an array. Arrays of references are scanned
+// conservatively, while arrays of primitives (including the char data of
+// strings) are allocated with a descriptor that excludes their elements.
+static JArrayRep *allocArray(int elementSize, int len, bool primitive) {
+    size_t size = sizeof(JArrayRep) + elementSize * len;
+    if (!primitive)
+        return (JArrayRep *)GC_MALLOC(size);
+    static GC_descr descr = primitiveArrayDescr();
+    return (JArrayRep *)GC_MALLOC_EXPLICITLY_TYPED(size, descr);
+}
+
 /**
  * Helper function to initialize an array in runtime.
  */
@@ -527,8 +705,7 @@ JArrayRep *createArrayHelper(const char *arrType, int *len, int depth) {
         elementSize = arrayRepSize(primComponent);
     }
 
-    JArrayRep *arr =
-        (JArrayRep *)GC_MALLOC(sizeof(JArrayRep) + elementSize * (*len));
+    JArrayRep *arr = allocArray(elementSize, *len, primComponent != NULL);
     arr->Super()->SetCdv(cdv);
     arr->SetLength(*len);
     arr->SetElemSize(elementSize);
@@ -562,8 +739,7 @@ jarray create1DArray(const char *arrType, int len) {
         elementSize = arrayRepSize(primComponent);
     }
 
-    JArrayRep *arr =
-        (JArrayRep *)GC_MALLOC(sizeof(JArrayRep) + elementSize * len);
+    JArrayRep *arr = allocArray(elementSize, len, primComponent != NULL);
     arr->Super()->SetCdv(cdv);
     arr->SetLength(len);
     arr->SetElemSize(elementSize);
@@ -571,20 +747,39 @@ jarray create1DArray(const char *arrType, int len) {
     return arr->Wrap();
 }
 
+// The compiler emits field and method information sorted by name and
+// signature (see JLangClassDeclExt), so lookups use a binary search.
+// Returns the index of the element of [count] that compares equal,
+// or -1 if there is none.
+template <typename Compare>
+static int32_t BinarySearch(int32_t count, Compare compare) {
+    int32_t lo = 0, hi = count;
+    while (lo < hi) {
+        int32_t mid = lo + (hi - lo) / 2;
+        int cmp = compare(mid);
+        if (cmp == 0)
+            return mid;
+        if (cmp < 0)
+            hi = mid;
+        else
+            lo = mid + 1;
+    }
+    return -1;
+}
+
 /**
  * Return the field information for the given class's static field
  */
 const JavaStaticFieldInfo *GetJavaStaticFieldInfo(jclass cls, const char *name,
                                                   const char *sig) {
-    ScopedLock lock(Monitor::Instance().globalMutex());
-
-    auto *clazz = classes.at(cls);
+    auto *clazz = GetJavaClassInfo(cls);
     auto *fields = clazz->static_fields;
-    for (int32_t i = 0, e = clazz->num_static_fields; i < e; ++i) {
-        auto *f = &fields[i];
-        if (strcmp(name, f->name) == 0 && strcmp(sig, f->sig) == 0) {
-            return f;
-        }
+    int32_t i = BinarySearch(clazz->num_static_fields, [&](int32_t i) {
+        int cmp = strcmp(name, fields[i].name);
+        return cmp != 0 ? cmp : strcmp(sig, fields[i].sig);
+    });
+    if (i >= 0) {
+        return &fields[i];
     }
 
     // TODO: Should technically throw NoSuchFieldError.
@@ -593,21 +788,28 @@ const JavaStaticFieldInfo *GetJavaStaticFieldInfo(jclass cls, const char *name,
     abort();
 }
 
+/**
+ * Return the field information for the given class's field,
+ * or null if there is no such field
+ */
+const JavaFieldInfo *TryGetJavaFieldInfo(jclass cls, const char *name) {
+    auto *clazz = GetJavaClassInfo(cls);
+    auto *fields = clazz->fields;
+    int32_t i = BinarySearch(clazz->num_fields, [&](int32_t i) {
+        return strcmp(name, fields[i].name);
+    });
+    return i >= 0 ? &fields[i] : nullptr;
+}
+
 /**
  * Return the field information for the given class's field
  */
 const JavaFieldInfo *GetJavaFieldInfo(jclass cls, const char *name) {
-    ScopedLock lock(Monitor::Instance().globalMutex());
-
-    auto *clazz = classes.at(cls);
-    auto *fields = clazz->fields;
-    for (int32_t i = 0, e = clazz->num_fields; i < e; ++i) {
-        auto *f = &fields[i];
-        if (strcmp(name, f->name) == 0) {
-            return f;
-        }
+    if (auto *field = TryGetJavaFieldInfo(cls, name)) {
+        return field;
     }
 
+    auto *clazz = GetJavaClassInfo(cls);
     // TODO: Should technically throw NoSuchFieldError.
     fprintf(stderr, "Could not find field %s in class %s. Aborting.\n", name,
             clazz->name);
@@ -617,15 +819,17 @@ const JavaFieldInfo *GetJavaFieldInfo(jclass cls, const char *name) {
 const std::pair<JavaMethodInfo *, int32_t>
 TryGetJavaMethodInfo(jclass cls, const char *name, const char *sig,
                      bool search_super) {
-    ScopedLock lock(Monitor::Instance().globalMutex());
-    
-    auto *clazz = classes.at(cls);
+    auto *clazz = GetJavaClassInfo(cls);
     auto *methods = clazz->methods;
-    for (int32_t i = 0, e = clazz->num_methods; i < e; ++i) {
-        auto *m = &methods[i];
-        if (strcmp(name, m->name) == 0 && strcmp(sig, m->sig) == 0) {
-            return std::pair<JavaMethodInfo *, int32_t>(m, i);
-        }
+    auto *order = clazz->method_order;
+    int32_t i = BinarySearch(clazz->num_methods, [&](int32_t i) {
+        auto *m = &methods[order[i]];
+        int cmp = strcmp(name, m->name);
+        return cmp != 0 ? cmp : strcmp(sig, m->sig);
+    });
+    if (i >= 0) {
+        return std::pair<JavaMethodInfo *, int32_t>(&methods[order[i]],
+                                                    order[i]);
     }
 
     // Recurse to super class.
@@ -649,12 +853,67 @@ GetJavaStaticMethodInfo(jclass cls, const char *name, const char *sig) {
     return TryGetJavaMethodInfo(cls, name, sig, false);
 }
 
+// A direct-mapped cache of resolved methods, keyed by class and method.
+// Each entry is guarded by a sequence number that is odd while the entry is
+// being written, so that lookups need no lock. Collisions simply overwrite.
+namespace {
+
+struct ResolvedMethodEntry {
+    size_t seq;
+    jclass cls;
+    const JavaMethodInfo *method;
+    const JavaMethodInfo *resolved;
+};
+
+} // namespace
+
+static constexpr size_t kResolvedMethodCacheSize = 1024; // A power of two.
+static ResolvedMethodEntry resolvedMethods[kResolvedMethodCacheSize];
+
+static ResolvedMethodEntry *ResolvedMethodSlot(jclass cls,
+                                               const JavaMethodInfo *m) {
+    size_t hash = reinterpret_cast<uintptr_t>(cls) * 31 +
+                  reinterpret_cast<uintptr_t>(m);
+    hash ^= hash >> 17;
+    return &resolvedMethods[(hash >> 4) & (kResolvedMethodCacheSize - 1)];
+}
+
+const JavaMethodInfo *ResolveJavaMethod(jclass cls, const JavaMethodInfo *m) {
+    ResolvedMethodEntry *e = ResolvedMethodSlot(cls, m);
+    size_t seq = __atomic_load_n(&e->seq, __ATOMIC_ACQUIRE);
+    if (seq % 2 == 0) {
+        jclass entryCls = __atomic_load_n(&e->cls, __ATOMIC_RELAXED);
+        auto *entryMethod = __atomic_load_n(&e->method, __ATOMIC_RELAXED);
+        auto *resolved = __atomic_load_n(&e->resolved, __ATOMIC_RELAXED);
+        __atomic_thread_fence(__ATOMIC_ACQUIRE);
+        if (__atomic_load_n(&e->seq, __ATOMIC_RELAXED) == seq &&
+            entryCls == cls && entryMethod == m) {
+            return resolved;
+        }
+    }
+
+    const JavaMethodInfo *resolved =
+        TryGetJavaMethodInfo(cls, m->name, m->sig, true).first;
+    if (resolved == nullptr)
+        return nullptr;
+
+    // Skip the update if another thread is writing the entry.
+    if (seq % 2 == 0 &&
+        __atomic_compare_exchange_n(&e->seq, &seq, seq + 1, false,
+                                    __ATOMIC_ACQUIRE, __ATOMIC_RELAXED)) {
+        __atomic_thread_fence(__ATOMIC_RELEASE);
+        __atomic_store_n(&e->cls, cls, __ATOMIC_RELAXED);
+        __atomic_store_n(&e->method, m, __ATOMIC_RELAXED);
+        __atomic_store_n(&e->resolved, resolved, __ATOMIC_RELAXED);
+        __atomic_store_n(&e->seq, seq + 2, __ATOMIC_RELEASE);
+    }
+    return resolved;
+}
+
 // java.lang.Object -> Polyglot_java_lang_Object_load_class
+// Underscores in class names are escaped as "_1" (see JLangMangler).
 #define LOADER_PREFIX "Polyglot_"
-#define LOADER_PREFIX_LEN 9
 #define LOADER_SUFFIX "_load_class"
-#define LOADER_SUFFIX_LEN 10
-#define LOADER_NAME_CHARS (LOADER_PREFIX_LEN + LOADER_SUFFIX_LEN)
 
 typedef jclass (*class_loader)();
 
@@ -664,20 +923,18 @@ typedef jclass (*class_loader)();
  * java.lang.Class
  */
 jclass LoadJavaClassFromLib(const char *name) {
-    int name_len = strlen(name);
-    int new_len = name_len + LOADER_NAME_CHARS + 1;
-    char class_load_name[new_len];
-    strcpy(class_load_name, LOADER_PREFIX);
-    int i = 0;
-    for (; i < name_len; i++) {
-        char next_char = name[i];
-        class_load_name[LOADER_PREFIX_LEN + i] =
-            (next_char == '.' || next_char == '/') ? '_' : next_char;
-    }
-    class_load_name[LOADER_PREFIX_LEN + i] = '\0';
-    strcat(class_load_name, LOADER_SUFFIX);
-    auto class_load_func =
-        reinterpret_cast<class_loader>(dlsym(RTLD_DEFAULT, class_load_name));
+    std::string class_load_name = LOADER_PREFIX;
+    for (const char *c = name; *c != '\0'; ++c) {
+        if (*c == '.' || *c == '/')
+            class_load_name += '_';
+        else if (*c == '_')
+            class_load_name += "_1";
+        else
+            class_load_name += *c;
+    }
+    class_load_name += LOADER_SUFFIX;
+    auto class_load_func = reinterpret_cast<class_loader>(
+        dlsym(RTLD_DEFAULT, class_load_name.c_str()));
     if (class_load_func != NULL) {
         return class_load_func();
     } else {
@@ -690,7 +947,8 @@ jclass LoadJavaClassFromLib(const char *name) {
  * function will be invoked. The class name is in the format java.lang.Class
  */
 jclass FindClass(const char *name) {
-    ScopedLock scopedLock(Monitor::Instance().globalMutex());
+    // No lock is held while loading, since class loading functions
+    // synchronize on their own and may block on other threads.
     jclass clazz = GetJavaClassFromName(name);
     if (clazz == nullptr) {
         clazz = LoadJavaClassFromLib(name);
@@ -703,7 +961,6 @@ jclass FindClass(const char *name) {
  * function will be invoked. The class name is in the format java/lang/Class
  */
 jclass FindClassFromPathName(const char *name) {
-    ScopedLock scopedLock(Monitor::Instance().globalMutex());
     jclass clazz = GetJavaClassFromPathName(name);
     if (clazz == nullptr) {
         clazz = LoadJavaClassFromLib(name);
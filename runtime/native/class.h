@@ -58,6 +58,7 @@ struct JavaMethodInfo {
     jclass *returnType;
     int32_t numArgTypes;
     jclass **argTypes; // array of arg types
+    char *exceptions;  // Signatures of the declared exception types.
 };
 
 struct JavaClassInfo {
@@ -72,24 +73,42 @@ struct JavaClassInfo {
     jclass **intfs;
 
     int32_t num_fields;
-    JavaFieldInfo *fields;
+    JavaFieldInfo *fields; // Sorted by name.
 
     int32_t num_static_fields;
-    JavaStaticFieldInfo *static_fields;
+    JavaStaticFieldInfo *static_fields; // Sorted by name, then signature.
 
     int32_t num_methods;
     JavaMethodInfo *methods;
+    int32_t *method_order; // Indices into methods, sorted by name, then sig.
 };
 
 // Called by the runtime at most once per class to register
 // the class information declared above.
 void RegisterJavaClass(jclass cls, const JavaClassInfo *data);
 
+// Called by class loading functions to claim the initialization of a class,
+// following the procedure in JLS 7, section 12.4.2. Blocks while another
+// thread is initializing the class. Returns true if the caller must run the
+// initialization, or false if the class is already initialized or is being
+// initialized by the current thread. Throws NoClassDefFoundError if an
+// earlier initialization of the class failed.
+jboolean BeginClassInit(intptr_t *state, const JavaClassInfo *info);
+
+// Marks the class as initialized and wakes up any waiting threads.
+void EndClassInit(intptr_t *state);
+
+// Called by class loading functions when a static initializer throws.
+// Marks the class as erroneous, wakes up any waiting threads, and
+// rethrows the exception, wrapped in ExceptionInInitializerError
+// unless it is an Error.
+void FailClassInit(intptr_t *state, jthrowable cause);
+
 jarray createArray(const char *arrType, int *len, int sizeOfLen);
 
 jarray create1DArray(const char *arrType, int len);
 
-void InternStringLit(jstring str);
+void InternStringLits(jstring **slots, jint count);
 
 } // extern "C"
 
@@ -107,6 +126,9 @@ const jclass GetJavaClassFromPathName(const char *name);
 
 const JavaFieldInfo *GetJavaFieldInfo(jclass cls, const char *name);
 
+// Returns null if the class has no field with the given name.
+const JavaFieldInfo *TryGetJavaFieldInfo(jclass cls, const char *name);
+
 const JavaStaticFieldInfo *GetJavaStaticFieldInfo(jclass cls, const char *name,
                                                   const char *sig);
 
@@ -116,6 +138,11 @@ GetJavaMethodInfo(jclass cls, const char *name, const char *sig);
 const std::pair<JavaMethodInfo *, int32_t>
 GetJavaStaticMethodInfo(jclass cls, const char *name, const char *sig);
 
+// Returns the implementation of the method [m] in class [cls], which is
+// either [cls] itself or a subclass of the class that declares [m].
+// Results are cached, so this is cheap for repeated calls.
+const JavaMethodInfo *ResolveJavaMethod(jclass cls, const JavaMethodInfo *m);
+
 jclass LoadJavaClassFromLib(const char *name);
 
 jclass FindClass(const char *name);
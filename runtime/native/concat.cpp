@@ -0,0 +1,109 @@
+// Copyright (C) 2018 Cornell University
+
+#include "concat.h"
+
+#include "class.h"
+#include "factory.h"
+#include "rep.h"
+
+#include <cstring>
+
+#define GC_THREADS
+#include <gc.h>
+#undef GC_THREADS
+
+static const char *const kTrue = "true";
+static const char *const kFalse = "false";
+
+// Returns the magnitude of an integer, which is representable
+// as an unsigned value even for the minimum jlong.
+static uint64_t magnitude(jlong val) {
+    return val < 0 ? -static_cast<uint64_t>(val) : static_cast<uint64_t>(val);
+}
+
+static jint decimalLength(jlong val) {
+    jint len = val < 0 ? 2 : 1;
+    for (uint64_t m = magnitude(val); m >= 10; m /= 10)
+        ++len;
+    return len;
+}
+
+static jchar *putDecimal(jchar *out, jlong val) {
+    jint len = decimalLength(val);
+    jchar *end = out + len;
+    jchar *p = end;
+    uint64_t m = magnitude(val);
+    do {
+        *--p = static_cast<jchar>('0' + m % 10);
+        m /= 10;
+    } while (m != 0);
+    if (val < 0)
+        *--p = '-';
+    return end;
+}
+
+static JStringRep *stringPart(jlong part) {
+    return reinterpret_cast<JStringRep *>(static_cast<intptr_t>(part));
+}
+
+// Wraps a filled char array in a new String without copying it.
+static jstring wrapChars(jcharArray chars) {
+    static const JavaClassInfo *info =
+        GetJavaClassInfo(FindClass("java.lang.String"));
+    if (info == nullptr || info->cdv == nullptr)
+        return CreateJavaString(chars);
+    JStringRep *str = static_cast<JStringRep *>(GC_MALLOC(info->obj_size));
+    str->Super()->SetCdv(static_cast<DispatchVector *>(info->cdv));
+    str->SetChars(Unwrap(chars));
+    return str->Wrap();
+}
+
+extern "C" {
+
+jstring __jlang_concat(const jlong *parts, const jbyte *kinds, jint count) {
+    jint len = 0;
+    for (jint i = 0; i < count; ++i) {
+        switch (kinds[i]) {
+        case JLANG_CONCAT_STRING:
+            len += stringPart(parts[i])->Chars()->Length();
+            break;
+        case JLANG_CONCAT_INT:
+        case JLANG_CONCAT_LONG:
+            len += decimalLength(parts[i]);
+            break;
+        case JLANG_CONCAT_CHAR:
+            len += 1;
+            break;
+        case JLANG_CONCAT_BOOLEAN:
+            len += parts[i] ? 4 : 5;
+            break;
+        }
+    }
+
+    jcharArray chars = CreateJavaCharArray(len);
+    jchar *out = static_cast<jchar *>(Unwrap(chars)->Data());
+    for (jint i = 0; i < count; ++i) {
+        switch (kinds[i]) {
+        case JLANG_CONCAT_STRING: {
+            JArrayRep *src = stringPart(parts[i])->Chars();
+            memcpy(out, src->Data(), src->Length() * sizeof(jchar));
+            out += src->Length();
+            break;
+        }
+        case JLANG_CONCAT_INT:
+        case JLANG_CONCAT_LONG:
+            out = putDecimal(out, parts[i]);
+            break;
+        case JLANG_CONCAT_CHAR:
+            *out++ = static_cast<jchar>(parts[i]);
+            break;
+        case JLANG_CONCAT_BOOLEAN:
+            for (const char *s = parts[i] ? kTrue : kFalse; *s != '\0'; ++s)
+                *out++ = static_cast<jchar>(*s);
+            break;
+        }
+    }
+    return wrapChars(chars);
+}
+
+} // extern "C"
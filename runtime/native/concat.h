@@ -0,0 +1,27 @@
+// Copyright (C) 2018 Cornell University
+
+// String concatenation.
+//
+// The compiler translates a chain of string concatenations into a single
+// call to __jlang_concat, which computes the length of the result, then
+// allocates and fills it in one pass. Integral, char, and boolean operands are
+// passed as raw values and formatted here, avoiding intermediate strings.
+#pragma once
+
+#include "jni.h"
+
+// The kinds of the parts of a concatenation.
+// Must match the constants in the compiler (see jlang.util.Constants).
+#define JLANG_CONCAT_STRING 0
+#define JLANG_CONCAT_INT 1
+#define JLANG_CONCAT_LONG 2
+#define JLANG_CONCAT_CHAR 3
+#define JLANG_CONCAT_BOOLEAN 4
+
+extern "C" {
+
+// Returns the concatenation of count parts. String parts are non-null
+// jstring pointers; the others are sign- or zero-extended primitive values.
+jstring __jlang_concat(const jlong *parts, const jbyte *kinds, jint count);
+
+} // extern "C"
@@ -0,0 +1,375 @@
+// Copyright (C) 2018 Cornell University
+
+#include "debug_line.h"
+
+#ifdef __linux__
+
+#include <algorithm>
+#include <cstdint>
+#include <cstring>
+#include <link.h>
+#include <mutex>
+#include <string>
+#include <unordered_map>
+#include <vector>
+
+#include <fcntl.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <unistd.h>
+
+namespace {
+
+// Standard and extended opcodes of DWARF line number programs.
+enum {
+    DW_LNS_copy = 1,
+    DW_LNS_advance_pc = 2,
+    DW_LNS_advance_line = 3,
+    DW_LNS_set_file = 4,
+    DW_LNS_const_add_pc = 8,
+    DW_LNS_fixed_advance_pc = 9,
+
+    DW_LNE_end_sequence = 1,
+    DW_LNE_set_address = 2,
+    DW_LNE_define_file = 3,
+};
+
+// A bounds-checked cursor into a mapped section.
+struct Reader {
+    const uint8_t *pos;
+    const uint8_t *end;
+
+    bool AtEnd() const { return pos >= end; }
+
+    template <typename T> T Read() {
+        T val = 0;
+        if (pos + sizeof(T) <= end)
+            memcpy(&val, pos, sizeof(T));
+        pos += sizeof(T);
+        return val;
+    }
+
+    uint64_t ReadULEB() {
+        uint64_t val = 0;
+        for (int shift = 0; pos < end; shift += 7) {
+            uint8_t b = *pos++;
+            if (shift < 64)
+                val |= static_cast<uint64_t>(b & 0x7f) << shift;
+            if (!(b & 0x80))
+                break;
+        }
+        return val;
+    }
+
+    int64_t ReadSLEB() {
+        uint64_t val = 0;
+        int shift = 0;
+        uint8_t b = 0;
+        while (pos < end) {
+            b = *pos++;
+            if (shift < 64)
+                val |= static_cast<uint64_t>(b & 0x7f) << shift;
+            shift += 7;
+            if (!(b & 0x80))
+                break;
+        }
+        if (shift < 64 && (b & 0x40))
+            val |= ~static_cast<uint64_t>(0) << shift;
+        return static_cast<int64_t>(val);
+    }
+
+    const char *ReadString() {
+        const char *s = reinterpret_cast<const char *>(pos);
+        while (pos < end && *pos != 0)
+            ++pos;
+        ++pos;
+        return s;
+    }
+};
+
+struct LineRow {
+    uintptr_t address;
+    uint32_t file;
+    int32_t line;
+    bool endSequence;
+};
+
+// The line number program of one compilation unit, and the
+// range of (unrelocated) addresses that it describes.
+struct LineUnit {
+    const uint8_t *begin;
+    const uint8_t *end;
+    uintptr_t low;
+    uintptr_t high;
+};
+
+struct ModuleLines {
+    uintptr_t bias; // Added to the addresses in the line tables when loaded.
+    std::vector<LineUnit> units;
+};
+
+// Runs the line number program starting at begin, calling onRow for each row
+// of the line table until it returns true. Collects the file names into files
+// if non-null; the names are indexed from 1, as in the program.
+template <typename F>
+void RunLineProgram(const uint8_t *begin, const uint8_t *end,
+                    std::vector<const char *> *files, F onRow) {
+    Reader r{begin, end};
+    uint64_t length = r.Read<uint32_t>();
+    bool dwarf64 = length == 0xffffffff;
+    if (dwarf64)
+        length = r.Read<uint64_t>();
+    if (length > static_cast<uint64_t>(end - r.pos))
+        return;
+    r.end = r.pos + length;
+
+    uint16_t version = r.Read<uint16_t>();
+    if (version < 2 || version > 4)
+        return;
+    uint64_t headerLength = dwarf64 ? r.Read<uint64_t>() : r.Read<uint32_t>();
+    if (headerLength > static_cast<uint64_t>(r.end - r.pos))
+        return;
+    const uint8_t *program = r.pos + headerLength;
+    uint8_t minInstLength = r.Read<uint8_t>();
+    if (version >= 4)
+        r.Read<uint8_t>(); // Maximum operations per instruction (VLIW only).
+    r.Read<uint8_t>();     // Default is_stmt.
+    int8_t lineBase = r.Read<int8_t>();
+    uint8_t lineRange = r.Read<uint8_t>();
+    uint8_t opcodeBase = r.Read<uint8_t>();
+    if (lineRange == 0 || opcodeBase == 0)
+        return;
+    const uint8_t *opcodeLengths = r.pos;
+
+    if (files != nullptr) {
+        r.pos += opcodeBase - 1;
+        while (!r.AtEnd() && *r.pos != 0)
+            r.ReadString(); // Include directories.
+        ++r.pos;
+        files->push_back(nullptr);
+        while (!r.AtEnd() && *r.pos != 0) {
+            files->push_back(r.ReadString());
+            r.ReadULEB(); // Directory index.
+            r.ReadULEB(); // Modification time.
+            r.ReadULEB(); // Length.
+        }
+    }
+
+    r.pos = program;
+    LineRow row = {0, 1, 1, false};
+    while (!r.AtEnd()) {
+        uint8_t op = r.Read<uint8_t>();
+        if (op >= opcodeBase) {
+            uint8_t adjusted = op - opcodeBase;
+            row.address += (adjusted / lineRange) * minInstLength;
+            row.line += lineBase + adjusted % lineRange;
+            if (onRow(row))
+                return;
+            continue;
+        }
+        switch (op) {
+        case 0: {
+            uint64_t len = r.ReadULEB();
+            const uint8_t *next = r.pos + len;
+            uint8_t extended = len > 0 ? r.Read<uint8_t>() : 0;
+            if (extended == DW_LNE_end_sequence) {
+                row.endSequence = true;
+                if (onRow(row))
+                    return;
+                row = {0, 1, 1, false};
+            } else if (extended == DW_LNE_set_address) {
+                row.address = r.Read<uintptr_t>();
+            } else if (extended == DW_LNE_define_file && files != nullptr) {
+                files->push_back(r.ReadString());
+            }
+            r.pos = next;
+            break;
+        }
+        case DW_LNS_copy:
+            if (onRow(row))
+                return;
+            break;
+        case DW_LNS_advance_pc:
+            row.address += r.ReadULEB() * minInstLength;
+            break;
+        case DW_LNS_advance_line:
+            row.line += r.ReadSLEB();
+            break;
+        case DW_LNS_set_file:
+            row.file = r.ReadULEB();
+            break;
+        case DW_LNS_const_add_pc:
+            row.address += ((255 - opcodeBase) / lineRange) * minInstLength;
+            break;
+        case DW_LNS_fixed_advance_pc:
+            row.address += r.Read<uint16_t>();
+            break;
+        default:
+            // Skip the operands of opcodes that only change state
+            // we do not track (columns, is_stmt, and so on).
+            for (uint8_t i = 0; i < opcodeLengths[op - 1]; ++i)
+                r.ReadULEB();
+        }
+    }
+}
+
+// Maps the object file at path and indexes the units of its line table.
+// The mapping is kept for the lifetime of the program.
+ModuleLines *LoadModuleLines(const char *path, uintptr_t bias) {
+    ModuleLines *module = new ModuleLines{bias, {}};
+    int fd = open(path, O_RDONLY | O_CLOEXEC);
+    if (fd < 0)
+        return module;
+    struct stat st;
+    void *map = MAP_FAILED;
+    if (fstat(fd, &st) == 0 && st.st_size >= (off_t)sizeof(ElfW(Ehdr)))
+        map = mmap(nullptr, st.st_size, PROT_READ, MAP_PRIVATE, fd, 0);
+    close(fd);
+    if (map == MAP_FAILED)
+        return module;
+
+    const uint8_t *file = static_cast<const uint8_t *>(map);
+    size_t size = st.st_size;
+    auto ehdr = reinterpret_cast<const ElfW(Ehdr) *>(file);
+    if (memcmp(ehdr->e_ident, ELFMAG, SELFMAG) != 0 ||
+        ehdr->e_shoff + ehdr->e_shnum * sizeof(ElfW(Shdr)) > size ||
+        ehdr->e_shstrndx >= ehdr->e_shnum) {
+        munmap(map, size);
+        return module;
+    }
+    auto shdrs = reinterpret_cast<const ElfW(Shdr) *>(file + ehdr->e_shoff);
+    const ElfW(Shdr) &strtab = shdrs[ehdr->e_shstrndx];
+    const ElfW(Shdr) *debugLine = nullptr;
+    for (int i = 0; i < ehdr->e_shnum; ++i) {
+        if (strtab.sh_offset + shdrs[i].sh_name < size &&
+            strcmp(reinterpret_cast<const char *>(file + strtab.sh_offset +
+                                                  shdrs[i].sh_name),
+                   ".debug_line") == 0) {
+            debugLine = &shdrs[i];
+            break;
+        }
+    }
+    if (debugLine == nullptr || debugLine->sh_type == SHT_NOBITS ||
+        debugLine->sh_offset + debugLine->sh_size > size) {
+        munmap(map, size);
+        return module;
+    }
+
+    const uint8_t *pos = file + debugLine->sh_offset;
+    const uint8_t *end = pos + debugLine->sh_size;
+    while (end - pos >= 4) {
+        Reader r{pos, end};
+        uint64_t length = r.Read<uint32_t>();
+        if (length == 0xffffffff)
+            length = r.Read<uint64_t>();
+        if (r.pos > end || length > static_cast<uint64_t>(end - r.pos))
+            break;
+        LineUnit unit = {pos, r.pos + length, UINTPTR_MAX, 0};
+        RunLineProgram(unit.begin, unit.end, nullptr, [&](const LineRow &row) {
+            // Sequences at address zero belong to discarded functions.
+            if (row.address != 0) {
+                unit.low = std::min(unit.low, row.address);
+                unit.high = std::max(unit.high, row.address);
+            }
+            return false;
+        });
+        if (unit.low <= unit.high)
+            module->units.push_back(unit);
+        pos = unit.end;
+    }
+    return module;
+}
+
+struct LoadedObject {
+    uintptr_t pc;
+    const char *name;
+    uintptr_t bias;
+    bool found;
+};
+
+int FindLoadedObject(struct dl_phdr_info *info, size_t size, void *data) {
+    auto obj = static_cast<LoadedObject *>(data);
+    for (int i = 0; i < info->dlpi_phnum; ++i) {
+        const ElfW(Phdr) &phdr = info->dlpi_phdr[i];
+        uintptr_t start = info->dlpi_addr + phdr.p_vaddr;
+        if (phdr.p_type == PT_LOAD && obj->pc >= start &&
+            obj->pc < start + phdr.p_memsz) {
+            obj->name = info->dlpi_name;
+            obj->bias = info->dlpi_addr;
+            obj->found = true;
+            return 1;
+        }
+    }
+    return 0;
+}
+
+} // namespace
+
+bool LookupSourceLine(void *pc, const char **file, int *line) {
+    LoadedObject obj = {reinterpret_cast<uintptr_t>(pc), nullptr, 0, false};
+    if (dl_iterate_phdr(FindLoadedObject, &obj) == 0 || !obj.found)
+        return false;
+
+    // The main program has an empty name.
+    std::string path = obj.name != nullptr && obj.name[0] != '\0'
+                           ? obj.name
+                           : "/proc/self/exe";
+    static std::mutex mutex;
+    static std::unordered_map<std::string, ModuleLines *> modules;
+    ModuleLines *module;
+    {
+        std::lock_guard<std::mutex> lock(mutex);
+        ModuleLines *&slot = modules[path];
+        if (slot == nullptr)
+            slot = LoadModuleLines(path.c_str(), obj.bias);
+        module = slot;
+    }
+
+    uintptr_t addr = obj.pc - module->bias;
+    for (const LineUnit &unit : module->units) {
+        if (addr < unit.low || addr > unit.high)
+            continue;
+        std::vector<const char *> files;
+        LineRow prev = {0, 0, 0, true};
+        bool found = false;
+        RunLineProgram(unit.begin, unit.end, &files, [&](const LineRow &row) {
+            if (!prev.endSequence && prev.address <= addr &&
+                addr < row.address) {
+                found = true;
+                return true;
+            }
+            prev = row;
+            return false;
+        });
+        if (!found)
+            continue;
+        const char *name =
+            prev.file < files.size() ? files[prev.file] : nullptr;
+        if (name != nullptr) {
+            const char *slash = strrchr(name, '/');
+            name = slash != nullptr ? slash + 1 : name;
+        }
+        *file = name;
+        *line = prev.line;
+        return true;
+    }
+    return false;
+}
+
+#else
+
+#include <cstdio>
+
+// Only ELF objects are supported for now. On macOS the line tables
+// are left in the object files, or collected by dsymutil.
+bool LookupSourceLine(void *pc, const char **file, int *line) {
+    static bool warned = [] {
+        fprintf(stderr, "Warning: line numbers in stack traces are only "
+                        "supported for ELF (Linux) executables\n");
+        return true;
+    }();
+    (void)warned;
+    return false;
+}
+
+#endif
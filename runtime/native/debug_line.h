@@ -0,0 +1,16 @@
+// Copyright (C) 2018 Cornell University
+
+// Maps code addresses to source lines using the DWARF line tables
+// (.debug_line, versions 2 through 4) that JLang emits for each
+// compilation unit. Tables are read from the object file on disk,
+// and are only indexed when an address in that file is first looked up.
+//
+// Only ELF object files (Linux) are supported. Elsewhere, e.g., on macOS,
+// where the line tables stay in the object files or in a dSYM bundle,
+// stack traces have no line numbers, and a warning says so once.
+#pragma once
+
+// Finds the source file (without its directory) and line of the instruction
+// at pc, returning false if there is no line information for pc.
+// The file name points to memory that lives as long as the program.
+bool LookupSourceLine(void *pc, const char **file, int *line);
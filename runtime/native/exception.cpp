@@ -2,12 +2,15 @@
 
 #include "exception.h"
 
+#include "class.h"
+#include "factory.h"
 #include "reflect.h"
 #include "stack_trace.h"
 #include "threads.h"
 
 #include <cstdio>
 #include <cstring>
+#include <exception>
 #include <inttypes.h>
 #include <stdexcept>
 #include <unwind.h>
@@ -62,11 +65,15 @@ extern "C" {
 void
     Polyglot_jlang_runtime_Exceptions_createClassNotFoundException__Ljava_lang_String_2(
         jstring);
-void Polyglot_jlang_runtime_Exceptions_throwNewThrowable__Ljava_lang_Class_2Ljava_lang_String_2(
-    jclass clazz, jstring str);
 void Polyglot_jlang_runtime_Exceptions_throwThrowable__Ljava_lang_Throwable_2(
     jthrowable obj);
 void Polyglot_jlang_runtime_Exceptions_throwInterruptedException__();
+void Polyglot_jlang_runtime_Exceptions_throwNullPointerException__();
+void Polyglot_jlang_runtime_Exceptions_throwArithmeticException__();
+void Polyglot_jlang_runtime_Exceptions_throwNoClassDefFoundError__Ljava_lang_String_2(
+    jstring name);
+void Polyglot_jlang_runtime_Exceptions_throwExceptionInInitializerError__Ljava_lang_Throwable_2(
+    jthrowable t);
 // A distinct integer identifying our own exceptions.
 const uint64_t javaExceptionClass = 8101813523428701805ll;
 
@@ -77,23 +84,83 @@ struct JavaException_t {
     _Unwind_Exception unwindException;
 };
 
+// The compiler reserves this many bytes at the end of every throwable,
+// so that a JavaException_t can be placed there instead of being allocated
+// when the throwable is thrown. Must match the compiler (Constants.java).
+// Objects and their sizes are word-aligned, so at most one word of the
+// space may be needed to align the header.
+static constexpr size_t kExceptionHeaderBytes = 56;
+static_assert(sizeof(JavaException_t) + alignof(JavaException_t) -
+                      sizeof(void *) <=
+                  kExceptionHeaderBytes,
+              "exception header does not fit in the reserved space");
+
 typedef struct _Unwind_Context *_Unwind_Context_t;
 
+JavaException_t *extractJavaException(_Unwind_Exception *unwindException) {
+    struct JavaException_t dummyException;
+    int64_t ourBaseFromUnwindOffset =
+        ((uintptr_t)&dummyException) -
+        ((uintptr_t)&dummyException.unwindException);
+
+    JavaException_t *exn =
+        (struct JavaException_t *)(((char *)unwindException) +
+                                   ourBaseFromUnwindOffset);
+    return exn;
+}
+
+// Returns the header reserved at the end of the given throwable.
+static JavaException_t *EmbeddedJavaException(jobject jexception) {
+    const JavaClassInfo *info =
+        GetJavaClassInfo(Unwrap(jexception)->Cdv()->Class()->Wrap());
+    uintptr_t end = reinterpret_cast<uintptr_t>(Unwrap(jexception)) +
+                    info->obj_size;
+    uintptr_t align = alignof(JavaException_t);
+    uintptr_t header = (end - kExceptionHeaderBytes + align - 1) & ~(align - 1);
+    return reinterpret_cast<JavaException_t *>(header);
+}
+
+// Releases the embedded header of a thrown exception, if it has one.
+static void releaseJavaException(JavaException_t *exn) {
+    if (exn == EmbeddedJavaException(exn->jexception))
+        __atomic_store_n(&exn->jexception, nullptr, __ATOMIC_RELEASE);
+}
+
+// Called when C++ code catches the exception with catch (...).
 void deleteJavaException(_Unwind_Reason_Code reason,
                          _Unwind_Exception *expToDelete) {
-    return; // The exception will be deleted by the garbage collector
+    // The exception will be deleted by the garbage collector.
+    releaseJavaException(extractJavaException(expToDelete));
 }
 
+// The exception most recently raised by this thread. Compiled code raises
+// an exception again after each finally block it unwinds through, so this
+// is the exception that reaches a C++ handler.
+static thread_local _Unwind_Exception *raisedException;
+
+// The jexception field of the embedded header doubles as a flag recording
+// that the throwable is being thrown: it is set when the header is claimed
+// here, and cleared when the exception is caught. A throwable that is thrown
+// again before it is caught, such as one shared between threads, gets a
+// separately allocated header instead. (A clone of a throwable copies the
+// header, but not the claim, since it points to the original.)
 _Unwind_Exception *createUnwindException(jobject jexception) {
-    JavaException_t *ret =
-        (JavaException_t *)GC_malloc(sizeof(JavaException_t));
-    ret->jexception = jexception;
+    JavaException_t *ret = EmbeddedJavaException(jexception);
+    jobject owner = __atomic_load_n(&ret->jexception, __ATOMIC_ACQUIRE);
+    if (owner == jexception ||
+        !__atomic_compare_exchange_n(&ret->jexception, &owner, jexception,
+                                     /*weak*/ false, __ATOMIC_ACQ_REL,
+                                     __ATOMIC_ACQUIRE)) {
+        ret = (JavaException_t *)GC_malloc(sizeof(JavaException_t));
+        ret->jexception = jexception;
+    }
     ret->unwindException.exception_class = javaExceptionClass;
     ret->unwindException.exception_cleanup = deleteJavaException;
     return &ret->unwindException;
 }
 
 void throwUnwindException(_Unwind_Exception *exception) {
+    raisedException = exception;
     _Unwind_RaiseException(exception);
     fprintf(stderr, "- - - - - - - - - - - - - - - - - -\n"
                     "Aborting due to uncaught exception.\n");
@@ -109,20 +176,13 @@ void throwUnwindException(_Unwind_Exception *exception) {
     abort();
 }
 
-JavaException_t *extractJavaException(_Unwind_Exception *unwindException) {
-    struct JavaException_t dummyException;
-    int64_t ourBaseFromUnwindOffset =
-        ((uintptr_t)&dummyException) -
-        ((uintptr_t)&dummyException.unwindException);
-
-    JavaException_t *exn =
-        (struct JavaException_t *)(((char *)unwindException) +
-                                   ourBaseFromUnwindOffset);
-    return exn;
-}
-
+// Called when the exception is caught, which releases the embedded header
+// for the next throw.
 jobject extractJavaExceptionObject(_Unwind_Exception *unwindException) {
-    return extractJavaException(unwindException)->jexception;
+    JavaException_t *exn = extractJavaException(unwindException);
+    jobject jexception = exn->jexception;
+    releaseJavaException(exn);
+    return jexception;
 }
 
 /// Read a uleb128 encoded value and advance pointer
@@ -510,6 +570,43 @@ __java_personality_v0(int version, _Unwind_Action actions,
                       context);
 }
 
+// Called by compiled code on a null dereference.
+void __jlang_throw_npe() {
+    Polyglot_jlang_runtime_Exceptions_throwNullPointerException__();
+}
+
+// Called by compiled code on an integer division by zero.
+void __jlang_throw_arithmetic() {
+    Polyglot_jlang_runtime_Exceptions_throwArithmeticException__();
+}
+
+// Called by compiled code for a failed runtime check when compiled with
+// -omit-stack-trace-in-fast-throw, once the check has failed often.
+// Throws an instance shared by all threads, with no message or stack
+// trace, so that throwing allocates nothing.
+void __jlang_throw_preallocated(jint kind) {
+    static const char *const classNames[kNumPreallocated] = {
+        "java.lang.NullPointerException",
+        "java.lang.ArrayIndexOutOfBoundsException",
+        "java.lang.ClassCastException",
+        "java.lang.ArithmeticException",
+    };
+    static jobject preallocated[kNumPreallocated];
+    assert(kind >= 0 && kind < kNumPreallocated);
+
+    jobject exn = __atomic_load_n(&preallocated[kind], __ATOMIC_ACQUIRE);
+    if (exn == nullptr) {
+        jobject created = CreateStacklessThrowable(FindClass(classNames[kind]));
+        // Keep the instance that won any race, so that it stays unique.
+        if (__atomic_compare_exchange_n(&preallocated[kind], &exn, created,
+                                        /*weak*/ false, __ATOMIC_ACQ_REL,
+                                        __ATOMIC_ACQUIRE)) {
+            exn = created;
+        }
+    }
+    throwUnwindException(createUnwindException(exn));
+}
+
 } // extern "C"
 
 void throwClassNotFoundException(JNIEnv *env, const char *name) {
@@ -519,9 +616,21 @@ void throwClassNotFoundException(JNIEnv *env, const char *name) {
 }
 
 void throwNewThrowable(JNIEnv *env, jclass clazz, const char *msg) {
-    jstring msgStr = env->NewStringUTF(msg);
-    Polyglot_jlang_runtime_Exceptions_throwNewThrowable__Ljava_lang_Class_2Ljava_lang_String_2(
-        clazz, msgStr);
+    // Every throwable the runtime creates has a (String) constructor.
+    jmethodID init =
+        env->GetMethodID(clazz, "<init>", "(Ljava/lang/String;)V");
+    jstring msgStr = msg != nullptr ? env->NewStringUTF(msg) : nullptr;
+    jobject exn = env->NewObject(clazz, init, msgStr);
+    throwThrowable(env, static_cast<jthrowable>(exn));
+}
+
+jthrowable CaughtJavaException() {
+    // Only C++ exceptions are visible to std::current_exception.
+    if (std::current_exception() != nullptr || raisedException == nullptr ||
+        raisedException->exception_class != javaExceptionClass)
+        return nullptr;
+    return static_cast<jthrowable>(
+        extractJavaException(raisedException)->jexception);
 }
 
 void throwThrowable(JNIEnv *env, jthrowable obj) {
@@ -532,3 +641,18 @@ void throwThrowable(JNIEnv *env, jthrowable obj) {
 void throwInterruptedException(JNIEnv *env) {
     Polyglot_jlang_runtime_Exceptions_throwInterruptedException__();
 }
+
+void throwNoClassDefFoundError(const char *className) {
+    jsize len = strlen(className);
+    jcharArray chars = CreateJavaCharArray(len);
+    jchar *data = static_cast<jchar *>(Unwrap(chars)->Data());
+    for (jsize i = 0; i < len; ++i)
+        data[i] = static_cast<jchar>(className[i]);
+    Polyglot_jlang_runtime_Exceptions_throwNoClassDefFoundError__Ljava_lang_String_2(
+        CreateJavaString(chars));
+}
+
+void throwExceptionInInitializerError(jthrowable cause) {
+    Polyglot_jlang_runtime_Exceptions_throwExceptionInInitializerError__Ljava_lang_Throwable_2(
+        cause);
+}
@@ -11,9 +11,33 @@ void throwNewThrowable(JNIEnv *env, jclass clazz, const char *msg);
 void throwThrowable(JNIEnv *env, jthrowable obj);
 void throwInterruptedException(JNIEnv *env);
 
+// Thrown when a class whose static initializer failed is used again.
+void throwNoClassDefFoundError(const char *className);
+
+// Rethrows an exception thrown by a static initializer, wrapping it
+// in an ExceptionInInitializerError unless it is an Error.
+void throwExceptionInInitializerError(jthrowable cause);
+
+// Within a catch (...) handler in C++ code, returns the Java exception
+// being handled, or null if the handler caught a C++ exception.
+jthrowable CaughtJavaException();
+
+// The kinds of the shared exception instances thrown by
+// __jlang_throw_preallocated. Must match the compiler (Constants.java).
+enum PreallocatedException {
+    kPreallocatedNullPointer = 0,
+    kPreallocatedArrayIndexOutOfBounds = 1,
+    kPreallocatedClassCast = 2,
+    kPreallocatedArithmetic = 3,
+    kNumPreallocated
+};
+
 extern "C" {
 
 _Unwind_Exception *createUnwindException(jobject jexception);
 void throwUnwindException(_Unwind_Exception *exception);
+void __jlang_throw_npe();
+void __jlang_throw_arithmetic();
+void __jlang_throw_preallocated(jint kind);
 
 } // extern "C"
@@ -67,8 +67,6 @@ jstring CreateJavaString(jcharArray chars) {
 }
 
 jobject CreateJavaObject(jclass clazz) {
-    ScopedLock lock(Monitor::Instance().globalMutex());
-
     auto info = GetJavaClassInfo(clazz);
     // TODO set exception (class is interface or abstract)
     if (info == NULL || info->cdv == NULL) {
@@ -102,5 +100,7 @@ jobject CloneJavaObject(jobject obj) {
         size = info->obj_size;
     }
     memcpy(new_obj, obj, size);
+    // The clone starts out unlocked.
+    Unwrap(new_obj)->ResetLockWord();
     return new_obj;
 }
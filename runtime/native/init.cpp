@@ -21,7 +21,7 @@ void InitializeMainThread() {
 
     // setup currentThread for main thread
     currentThread = GetMainThread();
-    Threads::Instance().threads[currentThread].threadStatus = true;
+    CurrentNativeThread().threadStatus = true;
 
     // initialize the system class
     Polyglot_java_lang_System_initializeSystemClass__();
@@ -9,8 +9,16 @@
 #include "monitor.h"
 #include "threads.h"
 
+// After this many misses a call site is considered megamorphic, and
+// its inline cache is no longer updated. This also bounds the number of
+// entries allocated per call site, since old entries are never freed
+// (other threads may still be reading them).
+#define INTERFACE_CACHE_MAX_MISSES 8
+
 extern "C" {
 
+InterfaceCacheEntry __emptyInterfaceCache = {nullptr, nullptr, 0};
+
 void __createInterfaceTables(DispatchVector *D, int capacity, int size,
                              int intf_id_hashcodes[], void *intf_ids[],
                              void *intf_tables[]) {
@@ -28,6 +36,22 @@ void *__getInterfaceMethod(jobject obj, int intf_id_hash, void *intf_id,
     return itab[method_index];
 }
 
+void *__getInterfaceMethodCached(jobject obj, int intf_id_hash, void *intf_id,
+                                 int method_index,
+                                 InterfaceCacheEntry **cache) {
+    void *method =
+        __getInterfaceMethod(obj, intf_id_hash, intf_id, method_index);
+    InterfaceCacheEntry *curr = __atomic_load_n(cache, __ATOMIC_ACQUIRE);
+    if (curr->misses < INTERFACE_CACHE_MAX_MISSES) {
+        InterfaceCacheEntry *entry = new InterfaceCacheEntry;
+        entry->cdv = Unwrap(obj)->Cdv();
+        entry->method = method;
+        entry->misses = curr->misses + 1;
+        __atomic_store_n(cache, entry, __ATOMIC_RELEASE);
+    }
+    return method;
+}
+
 } // extern "C"
 
 idv_ht::idv_ht(size_t capacity) {
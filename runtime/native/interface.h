@@ -4,11 +4,32 @@
 
 #include <jni.h>
 
+#include <cstdint>
+
 extern "C" {
 
+// An entry in the per-call-site inline cache for interface method calls.
+// Entries are immutable once published, so that compiled code can read them
+// without synchronization after an acquire load of the cache pointer.
+struct InterfaceCacheEntry {
+    void *cdv;       // The receiver's DispatchVector*.
+    void *method;    // The method to call for receivers with this cdv.
+    intptr_t misses; // The number of misses at this call site so far.
+};
+
+// The initial entry of every inline cache, which never matches a receiver.
+extern InterfaceCacheEntry __emptyInterfaceCache;
+
 void *__getInterfaceMethod(jobject obj, int intf_id_hash, void *intf_id,
                            int method_index);
 
+// Called by compiled code on an inline cache miss. Performs the full interface
+// table lookup and publishes a new entry for the receiver to *cache, unless the
+// call site has missed too often (i.e., it is megamorphic).
+void *__getInterfaceMethodCached(jobject obj, int intf_id_hash, void *intf_id,
+                                 int method_index,
+                                 InterfaceCacheEntry **cache);
+
 struct idv_ht_node {
     idv_ht_node *next;
     void *intf_id;
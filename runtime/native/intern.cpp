@@ -0,0 +1,193 @@
+// Copyright (C) 2018 Cornell University
+
+#include "intern.h"
+
+#include "class.h"
+#include "rep.h"
+
+#include <cstdint>
+#include <cstdlib>
+#include <cstring>
+#include <mutex>
+
+#define GC_THREADS
+#include <gc.h>
+#undef GC_THREADS
+
+namespace {
+
+constexpr int kStripeBits = 6;
+constexpr int kStripes = 1 << kStripeBits;
+constexpr size_t kInitialBuckets = 16;
+
+struct Entry {
+    Entry *next;
+    jint hash; // The Java hash code of the string.
+    jint len;
+    // Whether the string is heap-allocated. Such strings are held through a
+    // hidden pointer, and have a finalizer that removes their entry once
+    // they are unreachable.
+    bool weak;
+    // Whether a lookup has returned the string since its finalizer was
+    // registered, which may have made an unreachable string reachable again.
+    bool returned;
+    void *link; // The string, or a hidden pointer to it if weak.
+};
+
+// Stripes are constant-initialized, so that string literals can be interned
+// by module ctors before the static initializers of the runtime have run.
+struct Stripe {
+    std::mutex lock;
+    Entry **buckets = nullptr;
+    size_t numBuckets = 0;
+    size_t size = 0;
+};
+
+Stripe stripes[kStripes];
+
+} // namespace
+
+static uint32_t stripeIndex(uint32_t mixed) {
+    return mixed >> (32 - kStripeBits);
+}
+
+// The offset of the cached hash code in String, 0 if String has no such
+// field (as in jdk-lite), or -1 until String has been loaded. (Module ctors
+// intern string literals before any class is loaded.)
+static int32_t hashOffset = -1;
+
+static int32_t stringHashOffset() {
+    int32_t offset = __atomic_load_n(&hashOffset, __ATOMIC_RELAXED);
+    if (offset >= 0)
+        return offset;
+    jclass cls = GetJavaClassFromName("java.lang.String");
+    if (GetJavaClassInfo(cls) == nullptr)
+        return -1;
+    const JavaFieldInfo *field = TryGetJavaFieldInfo(cls, "hash");
+    offset = field != nullptr ? field->offset : 0;
+    __atomic_store_n(&hashOffset, offset, __ATOMIC_RELAXED);
+    return offset;
+}
+
+// Same as String.hashCode(), including its use of the cached hash code.
+static jint javaHash(JStringRep *rep) {
+    int32_t offset = stringHashOffset();
+    jint *cached = offset > 0 ? reinterpret_cast<jint *>(
+                                    reinterpret_cast<char *>(rep) + offset)
+                              : nullptr;
+    if (cached != nullptr) {
+        jint h = __atomic_load_n(cached, __ATOMIC_RELAXED);
+        if (h != 0)
+            return h;
+    }
+    jint len = rep->Chars()->Length();
+    const jchar *chars = static_cast<const jchar *>(rep->Chars()->Data());
+    uint32_t h = 0;
+    for (jint i = 0; i < len; ++i)
+        h = 31 * h + chars[i];
+    if (cached != nullptr)
+        __atomic_store_n(cached, static_cast<jint>(h), __ATOMIC_RELAXED);
+    return static_cast<jint>(h);
+}
+
+// Spreads the bits of a hash code, since nearby strings often have nearby
+// hash codes. The high bits select a stripe and the low bits a bucket.
+static uint32_t mix(jint hash) {
+    return static_cast<uint32_t>(hash) * 0x9E3779B9u;
+}
+
+// Returns the string of an entry, with the lock of its stripe held.
+// A weak entry is removed only by the finalizer of its string, which takes
+// the same lock, and the collector keeps the string until its finalizer has
+// run. So unlike a disappearing link, the pointer never dangles, and reading
+// it does not need the allocation lock of the collector.
+static JStringRep *entryString(Entry *e) {
+    if (!e->weak)
+        return static_cast<JStringRep *>(e->link);
+    e->returned = true;
+    return static_cast<JStringRep *>(
+        GC_REVEAL_POINTER(reinterpret_cast<GC_hidden_pointer>(e->link)));
+}
+
+// Runs once a heap-allocated interned string is unreachable, and removes
+// its entry, unless a lookup may have returned the string after the
+// collector found it unreachable. The check is then repeated after the
+// next collection.
+static void finalizeEntry(void *obj, void *data) {
+    Entry *e = static_cast<Entry *>(data);
+    Stripe &s = stripes[stripeIndex(mix(e->hash))];
+    std::lock_guard<std::mutex> guard(s.lock);
+    if (e->returned) {
+        e->returned = false;
+        GC_REGISTER_FINALIZER_NO_ORDER(obj, finalizeEntry, e, nullptr, nullptr);
+        return;
+    }
+    Entry **prev = &s.buckets[mix(e->hash) & (s.numBuckets - 1)];
+    while (*prev != e)
+        prev = &(*prev)->next;
+    *prev = e->next;
+    --s.size;
+    free(e);
+}
+
+static void growStripe(Stripe &s) {
+    size_t n = s.numBuckets == 0 ? kInitialBuckets : s.numBuckets * 2;
+    Entry **buckets = static_cast<Entry **>(calloc(n, sizeof(Entry *)));
+    for (size_t i = 0; i < s.numBuckets; ++i) {
+        Entry *e = s.buckets[i];
+        while (e != nullptr) {
+            Entry *next = e->next;
+            size_t b = mix(e->hash) & (n - 1);
+            e->next = buckets[b];
+            buckets[b] = e;
+            e = next;
+        }
+    }
+    free(s.buckets);
+    s.buckets = buckets;
+    s.numBuckets = n;
+}
+
+jstring internJString(jstring str) {
+    JStringRep *rep = Unwrap(str);
+    jint len = rep->Chars()->Length();
+    const jchar *chars = static_cast<const jchar *>(rep->Chars()->Data());
+    jint hash = javaHash(rep);
+    uint32_t mixed = mix(hash);
+
+    Entry *e;
+    {
+        Stripe &s = stripes[stripeIndex(mixed)];
+        std::lock_guard<std::mutex> guard(s.lock);
+        if (s.size >= s.numBuckets * 2)
+            growStripe(s);
+
+        Entry **bucket = &s.buckets[mixed & (s.numBuckets - 1)];
+        for (Entry *other = *bucket; other != nullptr; other = other->next) {
+            if (other->hash != hash || other->len != len)
+                continue;
+            JStringRep *otherRep = entryString(other);
+            if (memcmp(otherRep->Chars()->Data(), chars,
+                       len * sizeof(jchar)) == 0)
+                return otherRep->Wrap();
+        }
+
+        e = static_cast<Entry *>(malloc(sizeof(Entry)));
+        e->hash = hash;
+        e->len = len;
+        e->weak = GC_base(rep) != nullptr;
+        e->returned = false;
+        e->link = e->weak ? reinterpret_cast<void *>(GC_HIDE_POINTER(rep))
+                          : static_cast<void *>(rep);
+        e->next = *bucket;
+        *bucket = e;
+        ++s.size;
+    }
+
+    // Registered without the stripe lock, since registration may run other
+    // finalizers. The string cannot be collected before then, as it is
+    // still referenced here.
+    if (e->weak)
+        GC_REGISTER_FINALIZER_NO_ORDER(rep, finalizeEntry, e, nullptr, nullptr);
+    return str;
+}
@@ -0,0 +1,22 @@
+// Copyright (C) 2018 Cornell University
+
+// The string intern table, shared by String.intern() and string literals.
+//
+// The table is split into stripes, each with its own lock and chained hash
+// table, so that threads interning different strings rarely contend. Entries
+// cache the hash code of their string, so lookups and resizing only touch
+// the contents of strings whose hash codes match. Heap-allocated strings are
+// held through hidden pointers, and removed by a finalizer, so that interned
+// strings that are no longer reachable can still be collected. String
+// literals are static data and are held directly.
+#pragma once
+
+#include "jni.h"
+
+extern "C" {
+
+// Returns the interned string with the same contents as str,
+// interning str itself if there is none.
+jstring internJString(jstring str);
+
+} // extern "C"
@@ -256,7 +256,7 @@ static T CallJavaInstanceMethod(jobject obj, jmethodID id, const jvalue *args) {
     // which will include a direct function pointer. Then we
     // can do a direct call.
     auto clazz = Unwrap(obj)->Cdv()->Class()->Wrap();
-    m = GetJavaMethodInfo(clazz, m->name, m->sig).first;
+    m = ResolveJavaMethod(clazz, m);
     if (m == NULL) {
         return (T)NULL;
     }
@@ -337,7 +337,7 @@ static jobjectArray GetJavaConstructors(jclass clazz, const JavaClassInfo *info,
         if (IS_CONSTRUCTOR(&(info->methods[i]))) {
             POLYGLOT_ARRAY_STORE(
                 res, (jint)ctors_copied,
-                CreateConstructor(clazz, info, info->methods[i]));
+                CreateConstructor(clazz, info, i));
             ctors_copied++;
         }
     }
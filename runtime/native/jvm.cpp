@@ -6,6 +6,7 @@
 #include "exception.h"
 #include "factory.h"
 #include "helper.h"
+#include "intern.h"
 #include "jni.h"
 #include "monitor.h"
 #include "rep.h"
@@ -66,57 +67,6 @@ static void JvmIgnore(const char *name) {
     fflush(stderr);
 }
 
-struct HashableShortArray {
-    int len;
-    unsigned short *chars;
-
-    bool operator==(const HashableShortArray &other) const {
-        if (len == other.len) {
-            for (int i = 0; i < len; i++) {
-                if (chars[i] != other.chars[i]) {
-                    return false;
-                }
-            }
-            return true;
-        } else {
-            return false;
-        }
-    }
-};
-
-namespace std {
-
-template <> struct hash<HashableShortArray> {
-    std::size_t operator()(const HashableShortArray k) const {
-        std::size_t hash = 7;
-        for (int i = 0; i < k.len; i++) {
-            hash = hash * 31 + k.chars[i];
-        }
-        return hash;
-    }
-};
-
-} // namespace std
-
-std::unordered_map<HashableShortArray, jstring> InternedStrings;
-
-jstring internJString(jstring str) {
-    ScopedLock lock(Monitor::Instance().globalMutex());
-
-    HashableShortArray *h =
-        (HashableShortArray *)malloc(sizeof(HashableShortArray));
-    h->len = (int)Unwrap(str)->Chars()->Length();
-    h->chars = (unsigned short *)Unwrap(str)->Chars()->Data();
-    auto search = InternedStrings.find(*h);
-    if (search != InternedStrings.end()) {
-        free(h);
-        return search->second;
-    } else {
-        InternedStrings.insert({*h, str});
-        return str;
-    }
-}
-
 extern "C" {
 // we copied this number from open JDK -> not sure the implications
 #define JVM_INTERFACE_VERSION 4
@@ -130,8 +80,7 @@ jint JVM_IHashCode(JNIEnv *env, jobject obj) {
 
 void JVM_MonitorWait(JNIEnv *env, jobject obj, jlong ms) {
     // check interrupted before waiting
-    if (Threads::Instance().threads[currentThread].interrupted) {
-        Threads::Instance().threads[currentThread].interrupted = false;
+    if (CurrentNativeThread().interrupted.exchange(false)) {
         throwInterruptedException(env);
     }
     Monitor::Instance().wait(obj, ms);
@@ -300,7 +249,7 @@ jboolean JVM_IsSupportedJNIVersion(jint version) {
 jboolean JVM_IsNaN(jdouble d) { JvmUnimplemented("JVM_IsNaN"); }
 
 void JVM_FillInStackTrace(JNIEnv *env, jobject throwable) {
-    //    JvmIgnore("JVM_FillInStackTrace");
+    FillInStackTrace(env, throwable);
 }
 
 void JVM_PrintStackTrace(JNIEnv *env, jobject throwable, jobject printable) {
@@ -308,11 +257,11 @@ void JVM_PrintStackTrace(JNIEnv *env, jobject throwable, jobject printable) {
 }
 
 jint JVM_GetStackTraceDepth(JNIEnv *env, jobject throwable) {
-    JvmUnimplemented("JVM_GetStackTraceDepth");
+    return GetStackTraceDepth(env, throwable);
 }
 
 jobject JVM_GetStackTraceElement(JNIEnv *env, jobject throwable, jint index) {
-    JvmUnimplemented("JVM_GetStackTraceElement");
+    return GetStackTraceElement(env, throwable, index);
 }
 
 void JVM_InitializeCompiler(JNIEnv *env, jclass compCls) {
@@ -353,7 +302,7 @@ void JVM_StopThread(JNIEnv *env, jobject thread, jobject exception) {
 }
 
 jboolean JVM_IsThreadAlive(JNIEnv *env, jobject thread) {
-    return Threads::Instance().threads[thread].threadStatus;
+    return Threads::Instance().get(thread).threadStatus;
 }
 
 void JVM_SuspendThread(JNIEnv *env, jobject thread) {
@@ -392,14 +341,17 @@ jint JVM_CountStackFrames(JNIEnv *env, jobject thread) {
 void JVM_Interrupt(JNIEnv *env, jobject thread) {
     // This is not a true scheduling primitive, so this function does not
     // acutally "interrupt" a thread. It only sets a boolean variable so that
-    // the other thread could detect it.
-    Threads::Instance().threads[thread].interrupted = true;
+    // the other thread could detect it, and wakes the thread if it is parked.
+    NativeThread &nativeThread = Threads::Instance().get(thread);
+    nativeThread.interrupted = true;
+    nativeThread.unpark();
 }
 
 jboolean JVM_IsInterrupted(JNIEnv *env, jobject thread,
                            jboolean clearInterrupted) {
-    bool interrupted = Threads::Instance().threads[thread].interrupted;
-    Threads::Instance().threads[thread].interrupted &= !static_cast<bool>(clearInterrupted);
+    NativeThread &nativeThread = Threads::Instance().get(thread);
+    bool interrupted = clearInterrupted ? nativeThread.interrupted.exchange(false)
+                                        : nativeThread.interrupted.load();
     return static_cast<jboolean>(interrupted);
 }
 
@@ -666,30 +618,6 @@ void METHOD_INIT_FUNC(jobject, jclass, jstring, jobjectArray, jclass,
                       jobjectArray, jint, jint, jstring, jbyteArray, jbyteArray,
                       jbyteArray);
 
-std::vector<std::string> parseMethodSig(const std::string &sig) {
-    std::vector<std::string> names;
-    int start = 0;
-    for (int i = 0; i < sig.size();) {
-        int end;
-        if (sig[i] == '(' || sig[i] == ')') {
-            i++;
-            start = i;
-            continue;
-        } else if (sig[i] == '[') { // array
-            i++;
-            continue;
-        } else if (sig[i] == 'L') { // class
-            end = sig.find(';', i);
-        } else { // primitive
-            end = i;
-        }
-        names.push_back(SigToClassName(sig.substr(start, end - start + 1)));
-        i = end + 1;
-        start = i;
-    }
-    return names;
-}
-
 jobjectArray JVM_GetClassDeclaredMethods(JNIEnv *env, jclass ofClass,
                                          jboolean publicOnly) {
     ScopedLock lock(Monitor::Instance().globalMutex());
@@ -717,36 +645,14 @@ jobjectArray JVM_GetClassDeclaredMethods(JNIEnv *env, jclass ofClass,
             jstring nameString = env->NewStringUTF(methods[i].name);
             jint modifiers = methods[i].modifiers;
             jint slot = i;
-            std::vector<std::string> classNames =
-                parseMethodSig(methods[i].sig);
-
-            if (methods[i].returnType == nullptr) {
-                methods[i].returnType =
-                    new jclass(FindClass(classNames.back().c_str()));
-            } else if (*methods[i].returnType == NULL) {
-                FindClass(classNames.back().c_str());
-            }
-            jclass returnType = *methods[i].returnType;
-
-            jobjectArray paramTypes = (jobjectArray)create1DArray(
-                "[Ljava.lang.Class;", methods[i].numArgTypes);
-            for (int k = 0; k < methods[i].numArgTypes; k++) {
-                if (methods[i].argTypes[k] == nullptr) {
-                    methods[i].argTypes[k] =
-                        new jclass(FindClass(classNames[k].c_str()));
-                } else if (*methods[i].argTypes[k] == nullptr) {
-                    FindClass(classNames[k].c_str());
-                }
-                JVM_SetArrayElement(env, paramTypes, k,
-                                    *methods[i].argTypes[k]);
-            }
+            jclass returnType = GetJavaReturnType(&methods[i]);
+            jobjectArray paramTypes = GetJavaParameterTypes(&methods[i]);
 
             jstring signature = env->NewStringUTF(methods[i].sig);
 
-            // TODO: use the correct checkedExceptions
-            jobjectArray checkedExceptions = (jobjectArray)create1DArray(
-                "[Ljava.lang.Class;", 0);
-            
+            jobjectArray checkedExceptions =
+                GetJavaExceptionTypes(&methods[i]);
+
             // TODO need to get the proper values
             // call the method constructor
             METHOD_INIT_FUNC(newMethod, ofClass, nameString, paramTypes,
@@ -884,32 +790,12 @@ jint JVM_GetClassAccessFlags(JNIEnv *env, jclass cls) {
 
 jobject JVM_InvokeMethod(JNIEnv *env, jobject method, jobject obj,
                          jobjectArray args0) {
-    ScopedLock lock(Monitor::Instance().globalMutex());
-
-    const JavaClassInfo *info =
-        GetJavaClassInfo(Unwrap(obj)->Cdv()->Class()->Wrap());
-
-    int methodSlotOffset = 0;
-    const JavaClassInfo *methodInfo =
-        GetJavaClassInfo(Unwrap(method)->Cdv()->Class()->Wrap());
-    for (int i = 0; i < methodInfo->num_fields; i++) {
-        if (strcmp(methodInfo->fields[i].name, "slot") == 0) {
-            methodSlotOffset = methodInfo->fields[i].offset;
-            break;
-        }
-    }
-    int slot = *((jint *)(((char *)method) + methodSlotOffset));
-
-    jmethodID mtdId = reinterpret_cast<jmethodID>(&(info->methods[slot]));
-
-    return CallJavaInstanceMethod<jobject>(
-        obj, mtdId,
-        (const jvalue *)reinterpret_cast<JArrayRep *>(args0)->Data());
+    return InvokeJavaMethod(env, method, obj, args0);
 }
 
 jobject JVM_NewInstanceFromConstructor(JNIEnv *env, jobject c,
                                        jobjectArray args0) {
-    JvmUnimplemented("JVM_NewInstanceFromConstructor");
+    return NewJavaInstance(env, c, args0);
 }
 
 jobject JVM_GetClassConstantPool(JNIEnv *env, jclass cls) {
@@ -7,8 +7,6 @@
 
 extern "C" {
 
-jstring internJString(jstring str);
-
 jint JVM_GetInterfaceVersion(void);
 
 jint JVM_IHashCode(JNIEnv *env, jobject obj);
@@ -29,9 +29,9 @@ void Polyglot_java_lang_System_initializeSystemClass__();
 static void sigaction(int sig, siginfo_t *info, void *ucontext) {
     const char *cause = "";
     if (sig == SIGSEGV)
-        cause = "This likely indicates a null pointer exception.\n";
+        cause = "This may indicate a null dereference in native code.\n";
     if (sig == SIGFPE)
-        cause = "This indicates an arithmetic exception "
+        cause = "This indicates an arithmetic fault in native code "
                 "(e.g., divide by zero).\n";
     fprintf(stderr,
             "- - - - - - - - - - - - - - - - - - - - - - - - - - -\n"
@@ -47,7 +47,9 @@ int main(int argc, char **argv) {
     // Initialize the garbage collector.
     GC_INIT();
 
-    // Set up signal handling to report (for example) null pointer exceptions.
+    // Set up signal handling to report faults not caught as Java exceptions.
+    // Compiled code checks for null and zero divisors explicitly, and throws
+    // NullPointerException and ArithmeticException.
     struct sigaction sa;
     sa.sa_sigaction = sigaction;
     sigemptyset(&sa.sa_mask);
@@ -7,6 +7,8 @@
 
 #include <algorithm>
 #include <assert.h>
+#include <atomic>
+#include <sched.h>
 #include <unordered_map>
 #include <pthread.h>
 
@@ -27,7 +29,118 @@ static constexpr bool kDebug = false;
 // This map is shared by all threads.
 std::unordered_map<jobject, std::pair<pthread_t, int>> lockMap;
 
-static void initSyncVars(jobject obj) {
+//
+// Lock words
+//
+// The sync_vars_ header word of each object is used as a lock word, which is
+// in one of three states:
+//  - zero: unlocked, and no fat monitor has been allocated;
+//  - thin: locked without contention. The word holds the owner's thread id
+//    and recursion count, and its low bit is set;
+//  - fat: a pointer to a GC-allocated sync_vars (low bit clear), used once
+//    the lock has been contended or waited on. Fat locks are never deflated.
+//
+// Only the owner changes the owner and count of a thin-locked word. Other
+// threads spin for a while, then set the contention bit of the word and
+// block on a condition variable shared by a stripe of objects. Releasing a
+// thin lock atomically clears the word, and wakes the stripe if the
+// contention bit was set. The thread that then acquires the lock inflates it,
+// so that further contention blocks on the fat monitor. Hence entering an
+// unlocked object is a single CAS, and releasing it a single exchange.
+//
+
+static constexpr uintptr_t kThinBit = 1;
+static constexpr uintptr_t kContendedBit = 2;
+static constexpr int kCountShift = 2;
+static constexpr int kCountBits = 15;
+static constexpr uintptr_t kMaxCount = (uintptr_t(1) << kCountBits) - 1;
+static constexpr uintptr_t kCountOne = uintptr_t(1) << kCountShift;
+static constexpr int kOwnerShift = kCountShift + kCountBits;
+
+// Number of times to yield before blocking while waiting on a thin lock.
+static constexpr int kSpinYields = 64;
+
+// Threads blocked on a contended thin lock wait on the condition variable
+// of the stripe of the object.
+struct ContentionStripe {
+    pthread_mutex_t mutex = PTHREAD_MUTEX_INITIALIZER;
+    pthread_cond_t cond = PTHREAD_COND_INITIALIZER;
+};
+
+static constexpr size_t kNumContentionStripes = 64;
+static ContentionStripe contentionStripes[kNumContentionStripes];
+
+static ContentionStripe &contentionStripe(jobject obj) {
+    // Objects do not move, and are at least 8-byte aligned.
+    uintptr_t addr = reinterpret_cast<uintptr_t>(Unwrap(obj));
+    return contentionStripes[(addr >> 3) % kNumContentionStripes];
+}
+
+static std::atomic<uintptr_t> nextThreadId(1);
+static thread_local uintptr_t threadId = 0;
+
+// A small nonzero id for the current thread, used as the owner of thin locks.
+static uintptr_t currentThreadId() {
+    if (threadId == 0)
+        threadId = nextThreadId.fetch_add(1, std::memory_order_relaxed);
+    return threadId;
+}
+
+static inline bool isThin(uintptr_t word) { return (word & kThinBit) != 0; }
+
+static inline uintptr_t thinOwner(uintptr_t word) {
+    return word >> kOwnerShift;
+}
+
+static inline uintptr_t thinCount(uintptr_t word) {
+    return (word >> kCountShift) & kMaxCount;
+}
+
+static inline uintptr_t thinWord(uintptr_t owner, uintptr_t count) {
+    return (owner << kOwnerShift) | (count << kCountShift) | kThinBit;
+}
+
+static inline sync_vars *fatMonitor(uintptr_t word) {
+    return reinterpret_cast<sync_vars *>(word);
+}
+
+static inline uintptr_t loadLockWord(jobject obj) {
+    return __atomic_load_n(Unwrap(obj)->LockWord(), __ATOMIC_ACQUIRE);
+}
+
+static inline bool casLockWord(jobject obj, uintptr_t *expected,
+                               uintptr_t desired) {
+    return __atomic_compare_exchange_n(Unwrap(obj)->LockWord(), expected,
+                                       desired, /*weak*/ false,
+                                       __ATOMIC_ACQUIRE, __ATOMIC_ACQUIRE);
+}
+
+// Wakes the threads blocked on a contended thin lock of obj.
+static void wakeContenders(jobject obj) {
+    ContentionStripe &stripe = contentionStripe(obj);
+    pthread_mutex_lock(&stripe.mutex);
+    pthread_cond_broadcast(&stripe.cond);
+    pthread_mutex_unlock(&stripe.mutex);
+}
+
+// Blocks while obj is thin-locked by another thread, after setting the
+// contention bit so that the owner wakes this thread on release. The bit is
+// set and tested under the stripe mutex, so the wakeup cannot be lost.
+static void waitForRelease(jobject obj) {
+    ContentionStripe &stripe = contentionStripe(obj);
+    pthread_mutex_lock(&stripe.mutex);
+    uintptr_t word = loadLockWord(obj);
+    while (isThin(word)) {
+        if ((word & kContendedBit) != 0 ||
+            casLockWord(obj, &word, word | kContendedBit)) {
+            pthread_cond_wait(&stripe.cond, &stripe.mutex);
+            word = loadLockWord(obj);
+        }
+    }
+    pthread_mutex_unlock(&stripe.mutex);
+}
+
+static sync_vars *newSyncVars() {
     sync_vars *syncVars =
         reinterpret_cast<sync_vars *>(GC_MALLOC(sizeof(sync_vars)));
 
@@ -42,18 +155,48 @@ static void initSyncVars(jobject obj) {
         perror("condition variable init failed");
     }
 
-    Unwrap(obj)->SetSyncVars(syncVars);
+    syncVars->recursion = 0;
+    return syncVars;
+}
+
+// Returns the fat monitor of obj, which must be locked by the current thread.
+// If obj is thin-locked, it is first inflated to a fat monitor that is entered
+// the same number of times.
+static sync_vars *inflate(jobject obj) {
+    uintptr_t word = loadLockWord(obj);
+    if (!isThin(word))
+        return fatMonitor(word);
+
+    sync_vars *syncVars = newSyncVars();
+    uintptr_t count = thinCount(word);
+    for (uintptr_t i = 0; i < count; ++i)
+        pthread_mutex_lock(&syncVars->mutex);
+    syncVars->recursion = count;
+    uintptr_t old =
+        __atomic_exchange_n(Unwrap(obj)->LockWord(),
+                            reinterpret_cast<uintptr_t>(syncVars), __ATOMIC_RELEASE);
+    if ((old & kContendedBit) != 0)
+        wakeContenders(obj);
+    return syncVars;
+}
+
+static void enterFat(sync_vars *syncVars) {
+    pthread_mutex_lock(&syncVars->mutex);
+    ++syncVars->recursion;
 }
 
 // A fake object to hold the sync_var of class loading function.
 // The class loading code could utilize this global object to ensure that
 // every class is only initilized by one thread once.
+// Its lock word always holds a fat monitor.
 extern "C" jobject getGlobalMutexObject() {
-    static JObjectRep __Polyglot_native_GlobalMutexObject;
-    if (__Polyglot_native_GlobalMutexObject.SyncVars() == nullptr) {
-        initSyncVars(__Polyglot_native_GlobalMutexObject.Wrap());
-    }
-    return __Polyglot_native_GlobalMutexObject.Wrap();
+    static JObjectRep *globalMutexObject = [] {
+        static JObjectRep __Polyglot_native_GlobalMutexObject;
+        *__Polyglot_native_GlobalMutexObject.LockWord() =
+            reinterpret_cast<uintptr_t>(newSyncVars());
+        return &__Polyglot_native_GlobalMutexObject;
+    }();
+    return globalMutexObject->Wrap();
 }
 
 Monitor::Monitor() {
@@ -71,21 +214,54 @@ Monitor &Monitor::Instance() {
 }
 
 void Monitor::enter(jobject obj) {
-    {
+    if (kDebug) {
+        // sanity check
         ScopedLock lock(&mutex);
+        Monitor::syncObjs.push_back(obj);
+    }
 
-        if (kDebug) {
-            // sanity check
-            Monitor::syncObjs.push_back(obj);
-        }
-
-        if (Unwrap(obj)->SyncVars() == nullptr) {
-            initSyncVars(obj);
+    uintptr_t self = currentThreadId();
+
+    // Fast path: the object is unlocked.
+    uintptr_t word = 0;
+    if (!casLockWord(obj, &word, thinWord(self, 1))) {
+        bool contended = false;
+        int spins = 0;
+        while (true) {
+            if (word == 0) {
+                if (casLockWord(obj, &word, thinWord(self, 1))) {
+                    // Inflate a contended lock so that other threads
+                    // waiting on it stop spinning.
+                    if (contended)
+                        inflate(obj);
+                    break;
+                }
+            } else if (!isThin(word)) {
+                enterFat(fatMonitor(word));
+                break;
+            } else if (thinOwner(word) == self) {
+                // Recursive enter.
+                if (thinCount(word) < kMaxCount) {
+                    __atomic_fetch_add(Unwrap(obj)->LockWord(), kCountOne,
+                                       __ATOMIC_RELAXED);
+                } else {
+                    enterFat(inflate(obj));
+                }
+                break;
+            } else {
+                // Thin-locked by another thread; wait for it to be released,
+                // blocking once spinning has not helped.
+                contended = true;
+                if (++spins < kSpinYields) {
+                    sched_yield();
+                } else {
+                    waitForRelease(obj);
+                }
+                word = loadLockWord(obj);
+            }
         }
     }
 
-    pthread_mutex_lock(&Unwrap(obj)->SyncVars()->mutex);
-
     if (kDebug) {
         // sanity check
         ScopedLock lock(&mutex);
@@ -100,28 +276,20 @@ void Monitor::enter(jobject obj) {
 }
 
 void Monitor::exit(jobject obj) {
-    {
-        ScopedLock lock(&mutex);
-
-        // sanity check
-        if (kDebug) {
-            jobject enter = Monitor::syncObjs.back();
-            Monitor::syncObjs.pop_back();
-            if (enter != obj) {
-                printf("EROOR: synchronized enter and exit should be in "
-                       "reverse order "
-                       "style.\n");
-            }
-            if (Unwrap(obj)->SyncVars() == nullptr) {
-                printf("SyncVars must have already been initialized in "
-                       "MonitorEnter\n");
-            }
-        }
-    }
-
     if (kDebug) {
         // sanity check
         ScopedLock lock(&mutex);
+        jobject enter = Monitor::syncObjs.back();
+        Monitor::syncObjs.pop_back();
+        if (enter != obj) {
+            printf("EROOR: synchronized enter and exit should be in "
+                   "reverse order "
+                   "style.\n");
+        }
+        if (loadLockWord(obj) == 0) {
+            printf("Lock word must have already been set in "
+                   "MonitorEnter\n");
+        }
         assert(pthread_self() == lockMap[obj].first && lockMap[obj].second > 0);
         if (lockMap[obj].second == 1) {
             lockMap[obj].first = 0;
@@ -131,7 +299,23 @@ void Monitor::exit(jobject obj) {
         }
     }
 
-    pthread_mutex_unlock(&Unwrap(obj)->SyncVars()->mutex);
+    // Other threads may set the contention bit of a thin-locked word
+    // concurrently, so it is updated atomically.
+    uintptr_t word = __atomic_load_n(Unwrap(obj)->LockWord(), __ATOMIC_RELAXED);
+    if (isThin(word)) {
+        if (thinCount(word) > 1) {
+            __atomic_fetch_sub(Unwrap(obj)->LockWord(), kCountOne,
+                               __ATOMIC_RELEASE);
+        } else if ((__atomic_exchange_n(Unwrap(obj)->LockWord(), uintptr_t(0),
+                                        __ATOMIC_RELEASE) &
+                    kContendedBit) != 0) {
+            wakeContenders(obj);
+        }
+    } else {
+        sync_vars *syncVars = fatMonitor(word);
+        --syncVars->recursion;
+        pthread_mutex_unlock(&syncVars->mutex);
+    }
 }
 
 void Monitor::wait(jobject obj, jlong ms) {
@@ -154,7 +338,14 @@ void Monitor::wait(jobject obj, jlong ms) {
         }
     }
 
-    sync_vars *syncVars = Unwrap(obj)->SyncVars();
+    // Waiting requires a condition variable, so inflate the lock. Release
+    // all but one recursive entry, so that waiting releases the monitor.
+    sync_vars *syncVars = inflate(obj);
+    int recursion = syncVars->recursion;
+    for (int i = 1; i < recursion; ++i)
+        pthread_mutex_unlock(&syncVars->mutex);
+    syncVars->recursion = 0;
+
     if (ms == 0) {
         // wait until notified
         pthread_cond_wait(&syncVars->cond, &syncVars->mutex);
@@ -162,7 +353,7 @@ void Monitor::wait(jobject obj, jlong ms) {
         timespec t;
         clock_gettime(CLOCK_REALTIME, &t);
         t.tv_sec += ms / 1000;
-        t.tv_nsec += (ms % 1000) * 1000;
+        t.tv_nsec += (ms % 1000) * 1'000'000;
 
         t.tv_sec += t.tv_nsec / 1'000'000'000;
         t.tv_nsec = t.tv_nsec % 1'000'000'000;
@@ -170,6 +361,10 @@ void Monitor::wait(jobject obj, jlong ms) {
         pthread_cond_timedwait(&syncVars->cond, &syncVars->mutex, &t);
     }
 
+    for (int i = 1; i < recursion; ++i)
+        pthread_mutex_lock(&syncVars->mutex);
+    syncVars->recursion = recursion;
+
     if (kDebug) {
         // sanity check
         ScopedLock lock(&mutex);
@@ -180,33 +375,30 @@ void Monitor::wait(jobject obj, jlong ms) {
 }
 
 void Monitor::notify(jobject obj) {
-    {
-        ScopedLock lock(&mutex);
-
-        if (kDebug && !hasEntered(obj)) {
-            printf("notify() must be called when the object is locked.");
-        }
+    if (kDebug && !hasEntered(obj)) {
+        printf("notify() must be called when the object is locked.");
     }
 
-    sync_vars *syncVars = Unwrap(obj)->SyncVars();
-    pthread_cond_signal(&syncVars->cond);
+    // Waiting inflates the lock, so there are no waiters on a thin lock.
+    uintptr_t word = loadLockWord(obj);
+    if (word != 0 && !isThin(word))
+        pthread_cond_signal(&fatMonitor(word)->cond);
 }
 
 void Monitor::notifyAll(jobject obj) {
-    {
-        ScopedLock lock(&mutex);
-
-        if (kDebug && !hasEntered(obj)) {
-            printf("notifyAll() must be called when the object is locked.");
-        }
+    if (kDebug && !hasEntered(obj)) {
+        printf("notifyAll() must be called when the object is locked.");
     }
-    sync_vars *syncVars = Unwrap(obj)->SyncVars();
-    pthread_cond_broadcast(&syncVars->cond);
+
+    // Waiting inflates the lock, so there are no waiters on a thin lock.
+    uintptr_t word = loadLockWord(obj);
+    if (word != 0 && !isThin(word))
+        pthread_cond_broadcast(&fatMonitor(word)->cond);
 }
 
 bool Monitor::hasEntered(jobject obj) {
-    // Check if syncVars are initialized as a shortcut.
-    if (Unwrap(obj)->SyncVars() == nullptr) {
+    // Check if the object has ever been locked as a shortcut.
+    if (loadLockWord(obj) == 0) {
         return false;
     }
 
@@ -217,7 +409,7 @@ bool Monitor::hasEntered(jobject obj) {
 thread_local std::deque<jobject> Monitor::syncObjs;
 
 pthread_mutex_t *Monitor::globalMutex() {
-    return &Unwrap(getGlobalMutexObject())->SyncVars()->mutex;
+    return &fatMonitor(loadLockWord(getGlobalMutexObject()))->mutex;
 }
 
 //
@@ -4,6 +4,7 @@
 
 #include "class.h"
 #include "jni.h"
+#include "monitor.h"
 #include "stack_trace.h"
 
 #include <cstdlib>
@@ -11,10 +12,12 @@
 #include <string>
 #include <tuple>
 #include <unordered_map>
+#include <vector>
 #include <pthread.h>
 
 #define GC_THREADS
 #include <gc.h>
+#include <gc_typed.h>
 #undef GC_THREADS
 
 
@@ -24,6 +27,15 @@ static constexpr bool kDebug = false;
 // as well as a way to register methods through JNI.
 static std::unordered_map<std::string, void *> native_map;
 
+// The function pointer slots of compiled native method stubs, keyed like
+// native_map. A slot is filled on the first call to its native method, and
+// updated if the method is later registered again through JNI.
+static std::unordered_map<std::string, std::vector<void **>> native_slots;
+
+// Guards native_map and native_slots. Compiled code reads the slots
+// without locking.
+static pthread_mutex_t native_mutex = PTHREAD_MUTEX_INITIALIZER;
+
 // Builds a unique identifier for native methods.
 // E.g., java.lang.Object#wait(J)V.
 //
@@ -49,6 +61,7 @@ void RegisterJavaNativeFunc(jclass cls,            // e.g., java.lang.Object
         printf("[runtime] registering native method %s%s\n", name, signature);
 
     auto key = BuildJavaNativeFuncKey(cls, name, signature);
+    ScopedLock lock(&native_mutex);
 
     decltype(native_map)::iterator it;
     bool success;
@@ -57,22 +70,48 @@ void RegisterJavaNativeFunc(jclass cls,            // e.g., java.lang.Object
         // The native method was already linked; replace it.
         it->second = func;
     }
+
+    // Redirect the stubs that already cached the old function.
+    auto slots = native_slots.find(key);
+    if (slots != native_slots.end()) {
+        for (void **slot : slots->second)
+            __atomic_store_n(slot, func, __ATOMIC_RELEASE);
+    }
+}
+
+// Caches func in the given stub slot. Must hold native_mutex.
+static void *FillJavaNativeFuncSlot(void **slot, const std::string &key,
+                                    void *func) {
+    if (slot != nullptr) {
+        native_slots[key].push_back(slot);
+        __atomic_store_n(slot, func, __ATOMIC_RELEASE);
+    }
+    return func;
 }
 
 extern "C" void *
-GetJavaNativeFunc(jclass cls,               // e.g., java.lang.Object
+GetJavaNativeFunc(void **slot,              // the stub's cache, or null
+                  jclass cls,               // e.g., java.lang.Object
                   const char *name,         // e.g., wait
                   const char *signature,    // e.g., (J)V
                   const char *short_symbol, // e.g., Java_java_lang_Object_wait
                   const char *long_symbol // e.g., Java_java_lang_Object_wait__J
 ) {
-    // Check cache.
     auto key = BuildJavaNativeFuncKey(cls, name, signature);
+    ScopedLock lock(&native_mutex);
+
+    // Another thread may have filled the slot while we waited for the lock.
+    if (slot != nullptr) {
+        if (void *func = __atomic_load_n(slot, __ATOMIC_ACQUIRE))
+            return func;
+    }
+
+    // Check cache.
     auto it = native_map.find(key);
     if (it != native_map.end()) {
         if (kDebug)
             printf("[runtime] found cached native method %s\n", key.c_str());
-        return it->second;
+        return FillJavaNativeFuncSlot(slot, key, it->second);
     }
 
     // Search for symbol by short name first, then long name.
@@ -81,7 +120,7 @@ GetJavaNativeFunc(jclass cls,               // e.g., java.lang.Object
             if (kDebug)
                 printf("[runtime] found native method symbol %s\n", symbol);
             native_map.emplace(key, func);
-            return func;
+            return FillJavaNativeFuncSlot(slot, key, func);
         }
     }
 
@@ -101,3 +140,14 @@ extern "C" void* __GC_malloc(size_t size) {
     return GC_malloc(size);
 }
 
+extern "C" void *__GC_malloc_typed(size_t size, const GC_word *bitmap,
+                                   size_t len, GC_descr *descr) {
+    GC_descr d = __atomic_load_n(descr, __ATOMIC_ACQUIRE);
+    if (d == 0) {
+        // Racing threads compute the same descriptor, so this is benign.
+        d = GC_make_descriptor(bitmap, len);
+        __atomic_store_n(descr, d, __ATOMIC_RELEASE);
+    }
+    return GC_MALLOC_EXPLICITLY_TYPED(size, d);
+}
+
@@ -6,6 +6,12 @@
 #pragma once
 
 #include "jni.h"
+#include <pthread.h>
+
+#define GC_THREADS
+#include <gc.h>
+#include <gc_typed.h>
+#undef GC_THREADS
 
 // Links a native method to the given function pointer.
 void RegisterJavaNativeFunc(jclass cls,            // e.g., java.lang.Object
@@ -22,12 +28,17 @@ void RegisterJavaNativeFunc(jclass cls,            // e.g., java.lang.Object
 // The short symbol and long symbol are used in case the native method
 // needs to be searched for in the symbol table.
 //
+// Compiled native method stubs pass a pointer to their own function pointer
+// slot, which is filled with the result so that later calls skip the lookup.
+// The slot is updated if the method is registered again through JNI.
+//
 // The signature of this function must precisely match
 // the signature used in JLang.
 extern "C" {
 
 void *
-GetJavaNativeFunc(jclass cls,               // e.g., java.lang.Object
+GetJavaNativeFunc(void **slot,              // the stub's cache, or null
+                  jclass cls,               // e.g., java.lang.Object
                   const char *name,         // e.g., wait
                   const char *signature,    // e.g., (J)V
                   const char *short_symbol, // e.g., Java_java_lang_Object_wait
@@ -36,4 +47,10 @@ GetJavaNativeFunc(jclass cls,               // e.g., java.lang.Object
 
 void *__GC_malloc(size_t size);
 
+// Allocates an object whose pointer-holding words are given by bitmap, which
+// has len significant bits (see GC_make_descriptor). The descriptor is created
+// on first use and cached in *descr, which must initially be zero.
+void *__GC_malloc_typed(size_t size, const GC_word *bitmap, size_t len,
+                        GC_descr *descr);
+
 } // extern "C"
\ No newline at end of file
@@ -2,10 +2,17 @@
 
 #include "reflect.h"
 
+#include "exception.h"
+#include "helper.h"
+#include "jni_help.h"
+
+#define CTOR_INIT_FUNC                                                         \
+    Polyglot_java_lang_reflect_Constructor_Constructor__Ljava_lang_Class_2_3Ljava_lang_Class_2_3Ljava_lang_Class_2IILjava_lang_String_2_3B_3B
+
 extern "C" {
 
-void CTOR_CTOR(jclass, jobjectArray, jobjectArray, jint, jint, jstring,
-               jbyteArray, jbyteArray);
+void CTOR_INIT_FUNC(jobject, jclass, jobjectArray, jobjectArray, jint, jint,
+                    jstring, jbyteArray, jbyteArray);
 
 bool InstanceOf(jobject obj, void *type_id) {
     if (obj == nullptr)
@@ -19,8 +26,376 @@ bool InstanceOf(jobject obj, void *type_id) {
 } // extern "C"
 
 jobject CreateConstructor(jclass declaring_clazz,
-                          const JavaClassInfo *clazz_info,
-                          JavaMethodInfo ctor_info) {
-    // TODO actually implement
-    return NULL;
+                          const JavaClassInfo *clazz_info, int32_t slot) {
+    JavaMethodInfo *ctor_info = &clazz_info->methods[slot];
+    jobject ctor = CreateJavaObject(FindClass("java.lang.reflect.Constructor"));
+    jobjectArray paramTypes = GetJavaParameterTypes(ctor_info);
+
+    jobjectArray checkedExceptions = GetJavaExceptionTypes(ctor_info);
+
+    CTOR_INIT_FUNC(ctor, declaring_clazz, paramTypes, checkedExceptions,
+                   ctor_info->modifiers, slot, NULL, NULL, NULL);
+    return ctor;
+}
+
+std::vector<std::string> parseMethodSig(const std::string &sig) {
+    std::vector<std::string> names;
+    size_t start = 0;
+    for (size_t i = 0; i < sig.size();) {
+        size_t end;
+        if (sig[i] == '(' || sig[i] == ')') {
+            i++;
+            start = i;
+            continue;
+        } else if (sig[i] == '[') { // array
+            i++;
+            continue;
+        } else if (sig[i] == 'L') { // class
+            end = sig.find(';', i);
+        } else { // primitive
+            end = i;
+        }
+        names.push_back(SigToClassName(sig.substr(start, end - start + 1)));
+        i = end + 1;
+        start = i;
+    }
+    return names;
+}
+
+jclass GetJavaReturnType(JavaMethodInfo *m) {
+    if (m->returnType == nullptr) {
+        std::vector<std::string> classNames = parseMethodSig(m->sig);
+        m->returnType = new jclass(FindClass(classNames.back().c_str()));
+    } else if (*m->returnType == NULL) {
+        std::vector<std::string> classNames = parseMethodSig(m->sig);
+        FindClass(classNames.back().c_str());
+    }
+    return *m->returnType;
+}
+
+jobjectArray GetJavaParameterTypes(JavaMethodInfo *m) {
+    std::vector<std::string> classNames = parseMethodSig(m->sig);
+    jobjectArray paramTypes =
+        (jobjectArray)create1DArray("[Ljava.lang.Class;", m->numArgTypes);
+    for (int k = 0; k < m->numArgTypes; k++) {
+        if (m->argTypes[k] == nullptr) {
+            m->argTypes[k] = new jclass(FindClass(classNames[k].c_str()));
+        } else if (*m->argTypes[k] == nullptr) {
+            FindClass(classNames[k].c_str());
+        }
+        POLYGLOT_ARRAY_STORE(paramTypes, k, *m->argTypes[k]);
+    }
+    return paramTypes;
+}
+
+jobjectArray GetJavaExceptionTypes(const JavaMethodInfo *m) {
+    std::vector<std::string> classNames = parseMethodSig(m->exceptions);
+    jobjectArray exceptionTypes = (jobjectArray)create1DArray(
+        "[Ljava.lang.Class;", static_cast<int>(classNames.size()));
+    for (size_t k = 0; k < classNames.size(); ++k)
+        POLYGLOT_ARRAY_STORE(exceptionTypes, k,
+                             FindClass(classNames[k].c_str()));
+    return exceptionTypes;
+}
+
+// The class and field offset used to box a primitive type.
+namespace {
+struct BoxClass {
+    jclass cls;
+    int32_t offset;
+};
+} // namespace
+
+static BoxClass LookupBoxClass(const char *name) {
+    jclass cls = FindClass(name);
+    return BoxClass{cls, GetJavaFieldInfo(cls, "value")->offset};
+}
+
+#define BOX_CLASS(name)                                                        \
+    {                                                                          \
+        static const BoxClass box = LookupBoxClass(name);                      \
+        return box;                                                            \
+    }
+
+static const BoxClass &GetBoxClass(char kind) {
+    switch (kind) {
+    case 'Z': BOX_CLASS("java.lang.Boolean")
+    case 'B': BOX_CLASS("java.lang.Byte")
+    case 'C': BOX_CLASS("java.lang.Character")
+    case 'S': BOX_CLASS("java.lang.Short")
+    case 'I': BOX_CLASS("java.lang.Integer")
+    case 'J': BOX_CLASS("java.lang.Long")
+    case 'F': BOX_CLASS("java.lang.Float")
+    case 'D': BOX_CLASS("java.lang.Double")
+    default:
+        fprintf(stderr, "ERROR: %c is not a primitive type\n", kind);
+        abort();
+    }
+}
+
+#undef BOX_CLASS
+
+template <typename T> static jobject BoxJavaValue(char kind, T val) {
+    const BoxClass &box = GetBoxClass(kind);
+    jobject obj = CreateJavaObject(box.cls);
+    *reinterpret_cast<T *>(reinterpret_cast<char *>(obj) + box.offset) = val;
+    return obj;
+}
+
+// Returns the primitive type boxed by obj, or 0 if obj is not
+// an instance of one of the eight box classes.
+static char GetBoxedKind(jobject obj) {
+    jclass cls = Unwrap(obj)->Cdv()->Class()->Wrap();
+    for (char kind : {'Z', 'B', 'C', 'S', 'I', 'J', 'F', 'D'})
+        if (GetBoxClass(kind).cls == cls)
+            return kind;
+    return 0;
+}
+
+// Whether a value of primitive type [from] can be passed for a parameter of
+// primitive type [to] by an identity or widening conversion (JLS 5.1.2).
+static bool IsWideningConversion(char from, char to) {
+    if (from == to)
+        return true;
+    switch (from) {
+    case 'B': return strchr("SIJFD", to) != nullptr;
+    case 'S':
+    case 'C': return strchr("IJFD", to) != nullptr;
+    case 'I': return strchr("JFD", to) != nullptr;
+    case 'J': return strchr("FD", to) != nullptr;
+    case 'F': return to == 'D';
+    default: return false;
+    }
+}
+
+static void ThrowIllegalArgumentException(JNIEnv *env, const char *msg) {
+    throwNewThrowable(env, env->FindClass("java/lang/IllegalArgumentException"),
+                      msg);
+}
+
+// Unboxes a reflective argument of primitive type [kind], applying
+// a widening conversion if the boxed type differs. As in Method.invoke,
+// throws IllegalArgumentException if the argument is not a box whose
+// value widens to [kind].
+static jvalue UnboxJavaValue(JNIEnv *env, jobject obj, char kind) {
+    char from = obj != nullptr ? GetBoxedKind(obj) : 0;
+    if (from == 0 || !IsWideningConversion(from, kind))
+        ThrowIllegalArgumentException(env, "argument type mismatch");
+    char *ptr = reinterpret_cast<char *>(obj) + GetBoxClass(from).offset;
+
+    jlong integral = 0;
+    jdouble floating = 0;
+    bool isFloating = false;
+    switch (from) {
+    case 'Z': integral = *reinterpret_cast<jboolean *>(ptr); break;
+    case 'B': integral = *reinterpret_cast<jbyte *>(ptr); break;
+    case 'C': integral = *reinterpret_cast<jchar *>(ptr); break;
+    case 'S': integral = *reinterpret_cast<jshort *>(ptr); break;
+    case 'I': integral = *reinterpret_cast<jint *>(ptr); break;
+    case 'J': integral = *reinterpret_cast<jlong *>(ptr); break;
+    case 'F':
+        floating = *reinterpret_cast<jfloat *>(ptr);
+        isFloating = true;
+        break;
+    case 'D':
+        floating = *reinterpret_cast<jdouble *>(ptr);
+        isFloating = true;
+        break;
+    }
+
+    jvalue res;
+    switch (kind) {
+    case 'Z': res.z = static_cast<jboolean>(integral); break;
+    case 'B': res.b = static_cast<jbyte>(integral); break;
+    case 'C': res.c = static_cast<jchar>(integral); break;
+    case 'S': res.s = static_cast<jshort>(integral); break;
+    case 'I': res.i = static_cast<jint>(integral); break;
+    case 'J': res.j = integral; break;
+    case 'F':
+        res.f = isFloating ? static_cast<jfloat>(floating)
+                           : static_cast<jfloat>(integral);
+        break;
+    case 'D':
+        res.d = isFloating ? floating : static_cast<jdouble>(integral);
+        break;
+    }
+    return res;
+}
+
+// Converts the Object[] arguments of a reflective call into the
+// jvalue array expected by JNI trampolines.
+static std::vector<jvalue> UnboxJavaArgs(JNIEnv *env, const char *sig,
+                                         jobjectArray args) {
+    size_t num_args = CountJavaArgs(sig);
+    size_t len = args == nullptr ? 0 : Unwrap(args)->Length();
+    if (len != num_args)
+        ThrowIllegalArgumentException(env, "wrong number of arguments");
+
+    std::vector<jvalue> res(num_args);
+    jobject *data = num_args == 0 ? nullptr
+                                  : GetJavaArrayData<jobject>(args, nullptr);
+    const char *s = sig + 1;
+    for (size_t i = 0; i < num_args; ++i) {
+        char kind = ParseJavaArg(s);
+        if (kind == 'L' || kind == '[') {
+            res[i].l = data[i];
+        } else {
+            res[i] = UnboxJavaValue(env, data[i], kind);
+        }
+    }
+    return res;
+}
+
+// Reads the clazz and slot fields of a Method or Constructor object,
+// which together identify the reflected method.
+static JavaMethodInfo *GetReflectedMethod(jobject reflected, jclass *clazz) {
+    // The offsets are the same for every object of a given class.
+    jclass cls = Unwrap(reflected)->Cdv()->Class()->Wrap();
+    static const jclass methodClass = FindClass("java.lang.reflect.Method");
+    static const int32_t methodClazzOffset =
+        GetJavaFieldInfo(methodClass, "clazz")->offset;
+    static const int32_t methodSlotOffset =
+        GetJavaFieldInfo(methodClass, "slot")->offset;
+    static const jclass ctorClass =
+        FindClass("java.lang.reflect.Constructor");
+    static const int32_t ctorClazzOffset =
+        GetJavaFieldInfo(ctorClass, "clazz")->offset;
+    static const int32_t ctorSlotOffset =
+        GetJavaFieldInfo(ctorClass, "slot")->offset;
+
+    bool isMethod = cls == methodClass;
+    char *raw = reinterpret_cast<char *>(reflected);
+    *clazz = *reinterpret_cast<jclass *>(
+        raw + (isMethod ? methodClazzOffset : ctorClazzOffset));
+    jint slot = *reinterpret_cast<jint *>(
+        raw + (isMethod ? methodSlotOffset : ctorSlotOffset));
+    return &GetJavaClassInfo(*clazz)->methods[slot];
+}
+
+// Calls a method through its trampoline, and boxes the result.
+static jobject CallBoxed(jobject obj, jmethodID id, char returnKind,
+                         const jvalue *a) {
+    switch (returnKind) {
+    case 'V':
+        CallJavaNonvirtualMethod<void>(obj, id, a);
+        return nullptr;
+    case 'Z':
+        return BoxJavaValue('Z', CallJavaNonvirtualMethod<jboolean>(obj, id, a));
+    case 'B':
+        return BoxJavaValue('B', CallJavaNonvirtualMethod<jbyte>(obj, id, a));
+    case 'C':
+        return BoxJavaValue('C', CallJavaNonvirtualMethod<jchar>(obj, id, a));
+    case 'S':
+        return BoxJavaValue('S', CallJavaNonvirtualMethod<jshort>(obj, id, a));
+    case 'I':
+        return BoxJavaValue('I', CallJavaNonvirtualMethod<jint>(obj, id, a));
+    case 'J':
+        return BoxJavaValue('J', CallJavaNonvirtualMethod<jlong>(obj, id, a));
+    case 'F':
+        return BoxJavaValue('F', CallJavaNonvirtualMethod<jfloat>(obj, id, a));
+    case 'D':
+        return BoxJavaValue('D', CallJavaNonvirtualMethod<jdouble>(obj, id, a));
+    default:
+        return CallJavaNonvirtualMethod<jobject>(obj, id, a);
+    }
+}
+
+static void ThrowInvocationTargetException(JNIEnv *env, jthrowable cause) {
+    jclass cls = env->FindClass("java/lang/reflect/InvocationTargetException");
+    static jmethodID init =
+        env->GetMethodID(cls, "<init>", "(Ljava/lang/Throwable;)V");
+    throwThrowable(env,
+                   static_cast<jthrowable>(env->NewObject(cls, init, cause)));
+}
+
+// Modifier bits of JavaMethodInfo::modifiers, as in java.lang.reflect.Modifier.
+static constexpr int32_t kModifierPrivate = 0x0002;
+static constexpr int32_t kModifierFinal = 0x0010;
+
+// Whether [cls] is [target], or extends or implements it.
+static bool IsSubclassOf(jclass cls, jclass target) {
+    static const jclass objectClass = FindClass("java.lang.Object");
+    if (target == objectClass)
+        return true;
+    while (cls != nullptr) {
+        if (cls == target)
+            return true;
+        const JavaClassInfo *info = GetJavaClassInfo(cls);
+        for (int32_t i = 0; i < info->num_intfs; ++i)
+            if (*info->intfs[i] == target)
+                return true;
+        cls = info->super_ptr != nullptr ? *info->super_ptr : nullptr;
+    }
+    return false;
+}
+
+jobject InvokeJavaMethod(JNIEnv *env, jobject method, jobject obj,
+                         jobjectArray args) {
+    jclass clazz;
+    JavaMethodInfo *m = GetReflectedMethod(method, &clazz);
+
+    const JavaMethodInfo *target = m;
+    if (!IS_STATIC_METHOD(m)) {
+        if (obj == nullptr) {
+            throwNewThrowable(
+                env, env->FindClass("java/lang/NullPointerException"), nullptr);
+        }
+        jclass objClass = Unwrap(obj)->Cdv()->Class()->Wrap();
+        if (!IsSubclassOf(objClass, clazz)) {
+            ThrowIllegalArgumentException(
+                env, "object is not an instance of declaring class");
+        }
+        // Private and final methods are not overridden, so they are called
+        // directly. A subclass method with the same name and signature as
+        // a private method does not override it.
+        if ((m->modifiers & (kModifierPrivate | kModifierFinal)) == 0) {
+            target = ResolveJavaMethod(objClass, m);
+            if (target == nullptr) {
+                ThrowIllegalArgumentException(
+                    env, "object is not an instance of declaring class");
+            }
+        }
+    }
+    std::vector<jvalue> jargs = UnboxJavaArgs(env, m->sig, args);
+    jmethodID id =
+        reinterpret_cast<jmethodID>(const_cast<JavaMethodInfo *>(target));
+
+    // Exceptions thrown by the method are wrapped in an
+    // InvocationTargetException once they reach this frame.
+    jthrowable cause;
+    try {
+        return CallBoxed(obj, id, *(strchr(m->sig, ')') + 1), jargs.data());
+    } catch (...) {
+        cause = CaughtJavaException();
+        if (cause == nullptr)
+            throw;
+    }
+    ThrowInvocationTargetException(env, cause);
+    return nullptr;
+}
+
+jobject NewJavaInstance(JNIEnv *env, jobject ctor, jobjectArray args) {
+    jclass clazz;
+    JavaMethodInfo *m = GetReflectedMethod(ctor, &clazz);
+    const JavaClassInfo *info = GetJavaClassInfo(clazz);
+    if (info->cdv == nullptr) {
+        // Abstract classes and interfaces have no dispatch vector.
+        throwNewThrowable(env, env->FindClass("java/lang/InstantiationException"),
+                          info->name);
+    }
+    std::vector<jvalue> jargs = UnboxJavaArgs(env, m->sig, args);
+
+    jobject obj = CreateJavaObject(clazz);
+    jmethodID id = reinterpret_cast<jmethodID>(m);
+    jthrowable cause;
+    try {
+        CallJavaNonvirtualMethod<void>(obj, id, jargs.data());
+        return obj;
+    } catch (...) {
+        cause = CaughtJavaException();
+        if (cause == nullptr)
+            throw;
+    }
+    ThrowInvocationTargetException(env, cause);
+    return nullptr;
 }
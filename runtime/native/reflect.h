@@ -6,10 +6,37 @@
 #include "factory.h"
 #include "rep.h"
 #include <stdio.h>
+#include <string>
+#include <vector>
 extern "C" {
 bool InstanceOf(jobject obj, void *compare_type_id);
 } // extern "C"
 
 jobject CreateConstructor(jclass declaring_clazz,
-                          const JavaClassInfo *clazz_info,
-                          JavaMethodInfo ctor_info);
+                          const JavaClassInfo *clazz_info, int32_t slot);
+
+// Returns the class names of the parameter types in a method signature,
+// followed by the class name of the return type.
+std::vector<std::string> parseMethodSig(const std::string &sig);
+
+// Returns the return type of the given method, loading it if necessary.
+jclass GetJavaReturnType(JavaMethodInfo *m);
+
+// Returns the parameter types of the given method as an array of classes,
+// loading them if necessary.
+jobjectArray GetJavaParameterTypes(JavaMethodInfo *m);
+
+// Returns the declared exception types of the given method as an array of
+// classes, loading them if necessary.
+jobjectArray GetJavaExceptionTypes(const JavaMethodInfo *m);
+
+// Implements Method.invoke for a java.lang.reflect.Method object.
+// Arguments are unboxed and the result is boxed as needed, and exceptions
+// thrown by the method are wrapped in an InvocationTargetException.
+// Does not hold any lock while the method runs.
+jobject InvokeJavaMethod(JNIEnv *env, jobject method, jobject obj,
+                         jobjectArray args);
+
+// Implements Constructor.newInstance for a java.lang.reflect.Constructor
+// object.
+jobject NewJavaInstance(JNIEnv *env, jobject ctor, jobjectArray args);
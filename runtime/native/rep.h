@@ -48,27 +48,35 @@ struct DispatchVector {
 
   public:
     JClassRep **class_; // Notice: double-pointer.
+    // The collector's mark descriptor for instances allocated from the
+    // thread-local free lists, read through their first word (see alloc.cpp).
+    uintptr_t gc_descr_;
     idv_ht *idv_;
     type_info *super_types_;
     void *methods_[0]; // a list of method pointers in dv.
 };
 
+// A fat monitor, allocated once an object's lock has been contended
+// or waited on. See monitor.cpp.
 struct sync_vars {
     pthread_mutex_t mutex;
     pthread_cond_t cond;
+    int recursion; // Number of times the owner has entered the monitor.
 };
 
 // Representation for java.lang.Object.
 struct JObjectRep {
     DispatchVector *Cdv() { return cdv_; }
-    sync_vars *SyncVars() { return sync_vars_; }
+    uintptr_t *LockWord() { return &sync_vars_; }
     jobject Wrap() { return reinterpret_cast<jobject>(this); }
     void SetCdv(DispatchVector *cdv) { cdv_ = cdv; }
-    void SetSyncVars(sync_vars *vars) { sync_vars_ = vars; }
+    void ResetLockWord() { sync_vars_ = 0; }
 
   private:
     DispatchVector *cdv_;
-    sync_vars *sync_vars_;
+    // The lock word: zero, a thin lock, or a pointer to a fat sync_vars
+    // monitor. Must only be accessed through the functions in monitor.cpp.
+    uintptr_t sync_vars_;
 };
 ASSERT_POD(JObjectRep);
 
@@ -93,6 +101,7 @@ ASSERT_POD(JArrayRep);
 // Representation for java.lang.String.
 struct JStringRep {
     JArrayRep *Chars() { return value_; }
+    void SetChars(JArrayRep *chars) { value_ = chars; }
     JObjectRep *Super() { return &header_; }
     jstring Wrap() { return reinterpret_cast<jstring>(this); }
 
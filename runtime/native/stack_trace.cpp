@@ -1,8 +1,27 @@
 // Copyright (C) 2018 Cornell University
 
+// Throwables record the return addresses of their stack frames when they
+// are created, in a long[] stored in the backtrace field of Throwable.
+// The first element of the array is the number of frames in the Java stack
+// trace, or kUnfiltered until the stack trace is first requested. Since most
+// exceptions are caught without ever looking at their stack trace, the
+// frames are only filtered and symbolized on request.
+
 #include "stack_trace.h"
+
+#include "class.h"
+#include "debug_line.h"
+#include "factory.h"
+#include "jni_help.h"
+
+#include <algorithm>
 #include <cstdio>
+#include <cstring>
+#include <dlfcn.h>
 #include <execinfo.h>
+#include <string>
+#include <unwind.h>
+#include <vector>
 
 void DumpStackTrace() {
     // Dump stack trace.
@@ -11,3 +30,230 @@ void DumpStackTrace() {
     int frames = backtrace(callstack, max_frames);
     backtrace_symbols_fd(callstack, frames, fileno(stderr));
 }
+
+static constexpr int kMaxCapturedFrames = 256;
+static constexpr jlong kUnfiltered = -1;
+
+namespace {
+
+struct CapturedFrames {
+    jlong pcs[kMaxCapturedFrames];
+    int depth;
+};
+
+struct JavaFrame {
+    bool isJava;
+    std::string className;
+    std::string methodName;
+};
+
+} // namespace
+
+static _Unwind_Reason_Code CaptureFrame(_Unwind_Context *ctx, void *arg) {
+    auto frames = static_cast<CapturedFrames *>(arg);
+    uintptr_t pc = _Unwind_GetIP(ctx);
+    if (pc == 0 || frames->depth == kMaxCapturedFrames)
+        return _URC_END_OF_STACK;
+    frames->pcs[frames->depth++] = static_cast<jlong>(pc);
+    return _URC_NO_REASON;
+}
+
+static jfieldID BacktraceField(JNIEnv *env) {
+    static jfieldID field =
+        env->GetFieldID(env->FindClass("java/lang/Throwable"), "backtrace",
+                        "Ljava/lang/Object;");
+    return field;
+}
+
+static jlongArray GetBacktrace(JNIEnv *env, jobject throwable) {
+    return static_cast<jlongArray>(
+        env->GetObjectField(throwable, BacktraceField(env)));
+}
+
+// Set while a throwable that should not record its frames is constructed.
+static thread_local bool omitStackTrace = false;
+
+void FillInStackTrace(JNIEnv *env, jobject throwable) {
+    if (omitStackTrace)
+        return;
+    CapturedFrames frames;
+    frames.depth = 0;
+    _Unwind_Backtrace(CaptureFrame, &frames);
+
+    jlongArray backtrace = env->NewLongArray(frames.depth + 1);
+    jlong *data = env->GetLongArrayElements(backtrace, nullptr);
+    data[0] = kUnfiltered;
+    memcpy(data + 1, frames.pcs, frames.depth * sizeof(jlong));
+    env->ReleaseLongArrayElements(backtrace, data, 0);
+    env->SetObjectField(throwable, BacktraceField(env), backtrace);
+}
+
+jobject CreateStacklessThrowable(jclass clazz) {
+    jobject throwable = CreateJavaObject(clazz);
+    omitStackTrace = true;
+    CallJavaInstanceMethod<jobject>(throwable, "<init>", "()V", nullptr);
+    omitStackTrace = false;
+    return throwable;
+}
+
+// Decodes a class name mangled by JLangMangler, in which '_' is escaped as
+// "_1" and '.' is written as '_'. Since identifiers cannot start with a
+// digit, an underscore followed by '1' is always an escaped underscore.
+static std::string DecodeClassName(const std::string &mangled) {
+    std::string name;
+    for (size_t i = 0; i < mangled.size(); ++i) {
+        if (mangled[i] != '_') {
+            name += mangled[i];
+        } else if (i + 1 < mangled.size() && mangled[i + 1] == '1') {
+            name += '_';
+            ++i;
+        } else {
+            name += '.';
+        }
+    }
+    return name;
+}
+
+// Decodes the Java method containing pc from its symbol, which JLang
+// mangles as
+//   Polyglot_<class>_<method>__<argument types>
+// with '_' written as "_1" in the class and method names, and '.' written
+// as '_' in the class name. Constructors are named after their class.
+static JavaFrame DecodeFrame(jlong pc) {
+    JavaFrame frame = {false, "", ""};
+    Dl_info info;
+    // Return addresses may belong to the next function, so look up
+    // the call instruction before them instead.
+    if (dladdr(reinterpret_cast<void *>(pc - 1), &info) == 0 ||
+        info.dli_sname == nullptr)
+        return frame;
+    const char *prefix = "Polyglot_";
+    if (strncmp(info.dli_sname, prefix, strlen(prefix)) != 0)
+        return frame;
+    std::string symbol = info.dli_sname + strlen(prefix);
+
+    // The argument types start at the first "__" that is not
+    // an escaped underscore in the method name.
+    size_t args = symbol.find("__");
+    while (args != std::string::npos && symbol.compare(args, 3, "__1") == 0)
+        args = symbol.find("__", args + 1);
+    if (args == std::string::npos || args == 0)
+        return frame;
+
+    // Likewise, the method name starts after the last unescaped underscore.
+    size_t sep = symbol.rfind('_', args - 1);
+    while (sep != std::string::npos && sep > 0 && symbol[sep + 1] == '1')
+        sep = symbol.rfind('_', sep - 1);
+    if (sep == std::string::npos || sep == 0)
+        return frame;
+
+    std::string method = symbol.substr(sep + 1, args - sep - 1);
+    for (size_t i = 0; (i = method.find("_1", i)) != std::string::npos; ++i)
+        method.replace(i, 2, "_");
+
+    frame.isJava = true;
+    frame.className = DecodeClassName(symbol.substr(0, sep));
+    frame.methodName = method;
+    return frame;
+}
+
+static bool IsConstructor(const JavaFrame &frame) {
+    size_t pos = frame.className.find_last_of(".$");
+    size_t start = pos == std::string::npos ? 0 : pos + 1;
+    return frame.className.compare(start, std::string::npos,
+                                   frame.methodName) == 0;
+}
+
+static bool StartsWith(const std::string &s, const char *prefix) {
+    return s.compare(0, strlen(prefix), prefix) == 0;
+}
+
+// Frames of the runtime itself, such as the helpers that throw exceptions
+// for the runtime and the wrapper around main, are never shown.
+static bool IsRuntimeFrame(const JavaFrame &frame) {
+    return StartsWith(frame.className, "jlang.runtime.");
+}
+
+// Removes the frames that precede the creation of throwable, namely
+// fillInStackTrace and the constructors of throwable.
+// Drops frames that are not compiled from Java code, and returns the
+// number of frames left.
+static jint FilterFrames(JNIEnv *env, jobject throwable, jlong *pcs,
+                         jint len) {
+    std::vector<std::string> classes; // The class of throwable and its supers.
+    for (jclass cls = env->GetObjectClass(throwable); cls != nullptr;
+         cls = env->GetSuperclass(cls))
+        classes.push_back(GetJavaClassInfo(cls)->name);
+
+    std::vector<JavaFrame> frames;
+    frames.reserve(len);
+    for (jint i = 0; i < len; ++i)
+        frames.push_back(DecodeFrame(pcs[i]));
+
+    jint first = 0;
+    for (jint i = 0; i < len; ++i) {
+        if (frames[i].isJava && frames[i].methodName == "fillInStackTrace")
+            first = i + 1;
+        else if (first > 0 && frames[i].isJava)
+            break;
+    }
+    for (; first < len; ++first) {
+        const JavaFrame &frame = frames[first];
+        bool skip = !frame.isJava ||
+                    (IsConstructor(frame) &&
+                     std::find(classes.begin(), classes.end(),
+                               frame.className) != classes.end());
+        if (!skip)
+            break;
+    }
+
+    jint depth = 0;
+    for (jint i = first; i < len; ++i)
+        if (frames[i].isJava && !IsRuntimeFrame(frames[i]))
+            pcs[depth++] = pcs[i];
+    return depth;
+}
+
+jint GetStackTraceDepth(JNIEnv *env, jobject throwable) {
+    jlongArray backtrace = GetBacktrace(env, throwable);
+    if (backtrace == nullptr)
+        return 0;
+    jlong *data = env->GetLongArrayElements(backtrace, nullptr);
+    if (data[0] == kUnfiltered) {
+        jint len = env->GetArrayLength(backtrace) - 1;
+        data[0] = FilterFrames(env, throwable, data + 1, len);
+    }
+    jint depth = static_cast<jint>(data[0]);
+    env->ReleaseLongArrayElements(backtrace, data, 0);
+    return depth;
+}
+
+jobject GetStackTraceElement(JNIEnv *env, jobject throwable, jint index) {
+    jint depth = GetStackTraceDepth(env, throwable);
+    if (index < 0 || index >= depth) {
+        env->ThrowNew(env->FindClass("java/lang/IndexOutOfBoundsException"),
+                      nullptr);
+        return nullptr;
+    }
+    jlongArray backtrace = GetBacktrace(env, throwable);
+    jlong *data = env->GetLongArrayElements(backtrace, nullptr);
+    jlong pc = data[index + 1];
+    env->ReleaseLongArrayElements(backtrace, data, 0);
+
+    JavaFrame frame = DecodeFrame(pc);
+    const char *file = nullptr;
+    int line = -1;
+    if (!LookupSourceLine(reinterpret_cast<void *>(pc - 1), &file, &line))
+        line = -1;
+
+    jstring declaringClass = env->NewStringUTF(frame.className.c_str());
+    jstring methodName = env->NewStringUTF(
+        IsConstructor(frame) ? "<init>" : frame.methodName.c_str());
+    jstring fileName = file != nullptr ? env->NewStringUTF(file) : nullptr;
+    jclass elementClass = env->FindClass("java/lang/StackTraceElement");
+    static jmethodID init = env->GetMethodID(
+        elementClass, "<init>",
+        "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;I)V");
+    return env->NewObject(elementClass, init, declaringClass, methodName,
+                          fileName, static_cast<jint>(line));
+}
@@ -2,4 +2,21 @@
 
 #pragma once
 
+#include "jni.h"
+
 void DumpStackTrace();
+
+// Records the return addresses on the current stack in the backtrace
+// field of throwable. Symbolization is deferred until the stack trace
+// is requested through the functions below.
+void FillInStackTrace(JNIEnv *env, jobject throwable);
+
+// Creates an instance of the given throwable class with its no-argument
+// constructor, without recording a stack trace.
+jobject CreateStacklessThrowable(jclass clazz);
+
+// Returns the number of Java frames in the stack trace of throwable.
+jint GetStackTraceDepth(JNIEnv *env, jobject throwable);
+
+// Returns a StackTraceElement for the frame at the given index.
+jobject GetStackTraceElement(JNIEnv *env, jobject throwable, jint index);
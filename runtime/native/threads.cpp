@@ -4,6 +4,15 @@
 
 #include "monitor.h"
 
+#include <cerrno>
+#include <ctime>
+
+#ifdef __linux__
+#include <linux/futex.h>
+#include <sys/syscall.h>
+#include <unistd.h>
+#endif
+
 jobject GetMainThread() {
     // Caveat: The name of the main ThreadGroup is "system", which is different
     // from Java's behavior, "main".
@@ -50,6 +59,117 @@ jobject GetMainThread() {
 
 thread_local jobject currentThread = nullptr;
 
+NativeThread &CurrentNativeThread() {
+    thread_local NativeThread *current = nullptr;
+    if (current == nullptr) {
+        current = &Threads::Instance().get(currentThread);
+    }
+    return *current;
+}
+
+NativeThread &Threads::get(jobject jthread) {
+    std::lock_guard<std::mutex> lock(mutex);
+    return threads[jthread];
+}
+
+NativeThread *Threads::find(jobject jthread) {
+    std::lock_guard<std::mutex> lock(mutex);
+    auto it = threads.find(jthread);
+    return it == threads.end() ? nullptr : &it->second;
+}
+
+// Converts the deadline of a park call into a timespec, which is absolute
+// (against CLOCK_REALTIME) if isAbsolute is true and relative otherwise.
+// Returns false if the deadline has already passed.
+static bool ParkDeadline(bool isAbsolute, jlong time, timespec *ts) {
+    if (isAbsolute) {
+        timespec now;
+        clock_gettime(CLOCK_REALTIME, &now);
+        if (time <= jlong(now.tv_sec) * 1000 + now.tv_nsec / 1000000)
+            return false;
+        ts->tv_sec = time / 1000;
+        ts->tv_nsec = (time % 1000) * 1000000;
+    } else {
+        if (time <= 0)
+            return false;
+        ts->tv_sec = time / 1000000000;
+        ts->tv_nsec = time % 1000000000;
+    }
+    return true;
+}
+
+void NativeThread::park(bool isAbsolute, jlong time) {
+    // Fast path: consume an available permit.
+    int32_t state = 1;
+    if (parkState.compare_exchange_strong(state, 0, std::memory_order_acquire))
+        return;
+    if (interrupted.load(std::memory_order_acquire))
+        return;
+
+    timespec ts;
+    timespec *timeout = nullptr;
+    if (isAbsolute || time != 0) {
+        if (!ParkDeadline(isAbsolute, time, &ts))
+            return;
+        timeout = &ts;
+    }
+
+    // Announce that we are parked. If unpark raced with us, consume the permit.
+    state = 0;
+    if (!parkState.compare_exchange_strong(state, -1, std::memory_order_acquire)) {
+        parkState.store(0, std::memory_order_relaxed);
+        return;
+    }
+
+    // The interrupt flag is set before the interrupting thread calls unpark,
+    // so checking it here cannot miss the wakeup.
+    if (!interrupted.load(std::memory_order_acquire)) {
+#ifdef __linux__
+        int op = isAbsolute ? FUTEX_WAIT_BITSET_PRIVATE | FUTEX_CLOCK_REALTIME
+                            : FUTEX_WAIT_PRIVATE;
+        // Returns immediately if unpark has already changed the state.
+        syscall(SYS_futex, reinterpret_cast<int32_t *>(&parkState), op, -1,
+                timeout, nullptr, FUTEX_BITSET_MATCH_ANY);
+#else
+        std::unique_lock<std::mutex> lock(parkMutex);
+        if (parkState.load(std::memory_order_relaxed) == -1) {
+            if (timeout == nullptr) {
+                pthread_cond_wait(&parkCond, lock.mutex()->native_handle());
+            } else {
+                timespec abs = ts;
+                if (!isAbsolute) {
+                    clock_gettime(CLOCK_REALTIME, &abs);
+                    abs.tv_sec += ts.tv_sec;
+                    abs.tv_nsec += ts.tv_nsec;
+                    if (abs.tv_nsec >= 1000000000) {
+                        abs.tv_sec += 1;
+                        abs.tv_nsec -= 1000000000;
+                    }
+                }
+                pthread_cond_timedwait(&parkCond,
+                                       lock.mutex()->native_handle(), &abs);
+            }
+        }
+#endif
+    }
+
+    // Whether woken by unpark, an interrupt, the deadline, or spuriously,
+    // the permit is consumed.
+    parkState.exchange(0, std::memory_order_acquire);
+}
+
+void NativeThread::unpark() {
+    if (parkState.exchange(1, std::memory_order_release) != -1)
+        return; // Not parked.
+#ifdef __linux__
+    syscall(SYS_futex, reinterpret_cast<int32_t *>(&parkState),
+            FUTEX_WAKE_PRIVATE, 1, nullptr, nullptr, 0);
+#else
+    std::lock_guard<std::mutex> lock(parkMutex);
+    pthread_cond_signal(&parkCond);
+#endif
+}
+
 Threads &Threads::Instance() {
     static Threads *instance;
     if (instance == nullptr) {
@@ -82,7 +202,7 @@ void* start_routine(void* jthread) {
     
     CallJavaInstanceMethod<void>(thread, "run", "()V", nullptr);
 
-    Threads::Instance().threads[thread].threadStatus = false;
+    Threads::Instance().get(thread).threadStatus = false;
     // invoke jthread.notifyAll() when the thread terminates.
     // TODO: notifyAll() also needs to be invoked when exception happens
     Monitor::Instance().enter(thread);
@@ -93,8 +213,9 @@ void* start_routine(void* jthread) {
 }
 
 void Threads::startThread(jobject jthread) {
-    Threads::Instance().threads[jthread].threadStatus = true;
-    int ret = pthread_create(&threads[jthread].tid, nullptr, start_routine, jthread);
+    NativeThread &nativeThread = get(jthread);
+    nativeThread.threadStatus = true;
+    int ret = pthread_create(&nativeThread.tid, nullptr, start_routine, jthread);
     if (ret) {
         perror("cannot start thread\n");
     }
@@ -1,7 +1,10 @@
 // Copyright (C) 2019 Cornell University
 
+#include <atomic>
+#include <cstdint>
 #include <functional>
 #include <jvm.h>
+#include <mutex>
 #include <unordered_map>
 #include <pthread.h>
 
@@ -13,8 +16,28 @@ extern thread_local jobject currentThread;
 
 struct NativeThread {
     pthread_t tid;
-    bool threadStatus;
-    bool interrupted;
+    bool threadStatus = false;
+    std::atomic<bool> interrupted{false};
+
+    // Implements sun.misc.Unsafe.park for this thread, which must be the
+    // current thread. Consumes the permit if available; otherwise blocks until
+    // another thread calls unpark, the thread is interrupted, or the deadline
+    // passes. An absolute deadline is in milliseconds since the epoch, and a
+    // relative one in nanoseconds (zero meaning no deadline). May return
+    // spuriously.
+    void park(bool isAbsolute, jlong time);
+
+    // Makes the permit available, waking the thread if it is parked.
+    void unpark();
+
+  private:
+    // Zero if the permit is unavailable, one if it is available, and
+    // minus one while the thread is parked. On Linux this is a futex word.
+    std::atomic<int32_t> parkState{0};
+#ifndef __linux__
+    std::mutex parkMutex;
+    pthread_cond_t parkCond = PTHREAD_COND_INITIALIZER;
+#endif
 };
 
 class Threads {
@@ -25,10 +48,22 @@ class Threads {
 
     void startThread(jobject jthread);
     void join();
+
+    // Returns the record of a thread, creating it if needed.
+    NativeThread &get(jobject jthread);
+
+    // Returns the record of a thread, or nullptr if it was never started.
+    NativeThread *find(jobject jthread);
+
+    // Records are never removed, so references to them remain valid.
     std::unordered_map<jobject, NativeThread> threads;
 
   private:
     Threads() = default;
+    std::mutex mutex;
 };
 
 jobject GetMainThread();
+
+// Returns the record of the current thread.
+NativeThread &CurrentNativeThread();
@@ -10,6 +10,7 @@
 #include "class.h"
 #include "rep.h"
 #include "stack_trace.h"
+#include "threads.h"
 #include <cstdio>
 #include <cstdlib>
 #include <jni.h>
@@ -26,6 +27,31 @@ static jboolean JavaCompareAndSwap(jobject obj, jlong offset, T e, T x) {
     return prev == e;
 }
 
+template <typename T> static T *JavaAddress(jobject obj, jlong offset) {
+    return reinterpret_cast<T *>(reinterpret_cast<char *>(obj) + offset);
+}
+
+// Volatile accesses are sequentially consistent, as required by the Java
+// memory model. On x86 a volatile load is a plain load, and a volatile store
+// is an exchange.
+template <typename T> static T JavaLoadVolatile(jobject obj, jlong offset) {
+    T res;
+    __atomic_load(JavaAddress<T>(obj, offset), &res, __ATOMIC_SEQ_CST);
+    return res;
+}
+
+template <typename T>
+static void JavaStoreVolatile(jobject obj, jlong offset, T x) {
+    __atomic_store(JavaAddress<T>(obj, offset), &x, __ATOMIC_SEQ_CST);
+}
+
+// Ordered (lazy) stores need only be ordered after preceding accesses,
+// which a release store guarantees without a full fence.
+template <typename T>
+static void JavaStoreOrdered(jobject obj, jlong offset, T x) {
+    __atomic_store(JavaAddress<T>(obj, offset), &x, __ATOMIC_RELEASE);
+}
+
 [[noreturn]] static void UnsafeUnimplemented(const char *name) {
     fprintf(stderr,
             "- - - - - - - - - - - - - - - - - - - - - - - - - - - -\n"
@@ -300,24 +326,17 @@ jlong Java_sun_misc_Unsafe_staticFieldOffset(JNIEnv *env, jobject unsafeObj,
     return staticoff;
 }
 
-// always constant once we figure them out
-unsigned int fieldSlotOffset = -1;
-unsigned int fieldClazzOffset = -1;
 jlong Java_sun_misc_Unsafe_objectFieldOffset(JNIEnv *env, jobject unsafeObj,
                                              jobject fieldObj) {
-    int slot = 0;
-    if (fieldSlotOffset == -1) {
-        const JavaClassInfo *info =
-            GetJavaClassInfo(Unwrap(fieldObj)->Cdv()->Class()->Wrap());
-        for (int i = 0; i < info->num_fields; i++) {
-            if (strcmp(info->fields[i].name, "slot") == 0) {
-                fieldSlotOffset = info->fields[i].offset;
-            } else if (strcmp(info->fields[i].name, "clazz") == 0) {
-                fieldClazzOffset = info->fields[i].offset;
-            }
-        }
-    }
-    slot = *((jint *)(((char *)fieldObj) + fieldSlotOffset));
+    // The offsets of Field.slot and Field.clazz are the same for every
+    // Field object, so we look them up once.
+    static const int fieldSlotOffset =
+        GetJavaFieldInfo(Unwrap(fieldObj)->Cdv()->Class()->Wrap(), "slot")
+            ->offset;
+    static const int fieldClazzOffset =
+        GetJavaFieldInfo(Unwrap(fieldObj)->Cdv()->Class()->Wrap(), "clazz")
+            ->offset;
+    int slot = *((jint *)(((char *)fieldObj) + fieldSlotOffset));
     jclass ofClass = *((jclass *)(((char *)fieldObj) + fieldClazzOffset));
     const JavaClassInfo *info = GetJavaClassInfo(ofClass);
     if (slot >= 0) {
@@ -432,120 +451,134 @@ jboolean Java_sun_misc_Unsafe_compareAndSwapLong(JNIEnv *env, jobject unsafe,
     return JavaCompareAndSwap(obj, offset, e, x);
 }
 
-jobject Java_sun_misc_Unsafe_getObjectVolatile(JNIEnv *env, jobject unsafeObj,
-                                               jobject obj, jlong offset) {
-    // TODO do right thing w.r.t memory model and thread ordering
-    return Java_sun_misc_Unsafe_getObject(env, unsafeObj, obj, offset);
+jobject Java_sun_misc_Unsafe_getObjectVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset) {
+    return JavaLoadVolatile<jobject>(obj, offset);
 }
 
-void Java_sun_misc_Unsafe_putObjectVolatile(JNIEnv *env, jobject, jobject,
-                                            jlong, jobject) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putObjectVolatile");
+void Java_sun_misc_Unsafe_putObjectVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jobject value) {
+    JavaStoreVolatile(obj, offset, value);
 }
 
-jint Java_sun_misc_Unsafe_getIntVolatile(JNIEnv *env, jobject, jobject, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getIntVolatile");
+jint Java_sun_misc_Unsafe_getIntVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset) {
+    return JavaLoadVolatile<jint>(obj, offset);
 }
 
-void Java_sun_misc_Unsafe_putIntVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                         jint) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putIntVolatile");
+void Java_sun_misc_Unsafe_putIntVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jint value) {
+    JavaStoreVolatile(obj, offset, value);
+}
+
+jboolean Java_sun_misc_Unsafe_getBooleanVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset) {
+    return JavaLoadVolatile<jboolean>(obj, offset);
+}
+
+void Java_sun_misc_Unsafe_putBooleanVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jboolean value) {
+    JavaStoreVolatile(obj, offset, value);
+}
+
+jbyte Java_sun_misc_Unsafe_getByteVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset) {
+    return JavaLoadVolatile<jbyte>(obj, offset);
 }
 
-jboolean Java_sun_misc_Unsafe_getBooleanVolatile(JNIEnv *env, jobject, jobject,
-                                                 jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getBooleanVolatile");
+void Java_sun_misc_Unsafe_putByteVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jbyte value) {
+    JavaStoreVolatile(obj, offset, value);
 }
 
-void Java_sun_misc_Unsafe_putBooleanVolatile(JNIEnv *env, jobject, jobject,
-                                             jlong, jboolean) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putBooleanVolatile");
+jshort Java_sun_misc_Unsafe_getShortVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset) {
+    return JavaLoadVolatile<jshort>(obj, offset);
 }
 
-jbyte Java_sun_misc_Unsafe_getByteVolatile(JNIEnv *env, jobject, jobject,
-                                           jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getByteVolatile");
+void Java_sun_misc_Unsafe_putShortVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jshort value) {
+    JavaStoreVolatile(obj, offset, value);
 }
 
-void Java_sun_misc_Unsafe_putByteVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                          jbyte) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putByteVolatile");
+jchar Java_sun_misc_Unsafe_getCharVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset) {
+    return JavaLoadVolatile<jchar>(obj, offset);
 }
 
-jshort Java_sun_misc_Unsafe_getShortVolatile(JNIEnv *env, jobject, jobject,
-                                             jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getShortVolatile");
+void Java_sun_misc_Unsafe_putCharVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jchar value) {
+    JavaStoreVolatile(obj, offset, value);
 }
 
-void Java_sun_misc_Unsafe_putShortVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                           jshort) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putShortVolatile");
+jlong Java_sun_misc_Unsafe_getLongVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset) {
+    return JavaLoadVolatile<jlong>(obj, offset);
 }
 
-jchar Java_sun_misc_Unsafe_getCharVolatile(JNIEnv *env, jobject, jobject,
-                                           jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getCharVolatile");
+void Java_sun_misc_Unsafe_putLongVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jlong value) {
+    JavaStoreVolatile(obj, offset, value);
 }
 
-void Java_sun_misc_Unsafe_putCharVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                          jchar) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putCharVolatile");
+jfloat Java_sun_misc_Unsafe_getFloatVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset) {
+    return JavaLoadVolatile<jfloat>(obj, offset);
 }
 
-jlong Java_sun_misc_Unsafe_getLongVolatile(JNIEnv *env, jobject, jobject,
-                                           jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getLongVolatile");
+void Java_sun_misc_Unsafe_putFloatVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jfloat value) {
+    JavaStoreVolatile(obj, offset, value);
 }
 
-void Java_sun_misc_Unsafe_putLongVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                          jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putLongVolatile");
+jdouble Java_sun_misc_Unsafe_getDoubleVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset) {
+    return JavaLoadVolatile<jdouble>(obj, offset);
 }
 
-jfloat Java_sun_misc_Unsafe_getFloatVolatile(JNIEnv *env, jobject, jobject,
-                                             jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getFloatVolatile");
+void Java_sun_misc_Unsafe_putDoubleVolatile(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jdouble value) {
+    JavaStoreVolatile(obj, offset, value);
 }
 
-void Java_sun_misc_Unsafe_putFloatVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                           jfloat) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putFloatVolatile");
+void Java_sun_misc_Unsafe_putOrderedObject(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jobject value) {
+    JavaStoreOrdered(obj, offset, value);
 }
 
-jdouble Java_sun_misc_Unsafe_getDoubleVolatile(JNIEnv *env, jobject, jobject,
-                                               jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getDoubleVolatile");
+void Java_sun_misc_Unsafe_putOrderedInt(JNIEnv *env, jobject, jobject obj,
+                                        jlong offset, jint value) {
+    JavaStoreOrdered(obj, offset, value);
 }
 
-void Java_sun_misc_Unsafe_putDoubleVolatile(JNIEnv *env, jobject, jobject,
-                                            jlong, jdouble) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putDoubleVolatile");
+void Java_sun_misc_Unsafe_putOrderedLong(
+    JNIEnv *env, jobject, jobject obj, jlong offset, jlong value) {
+    JavaStoreOrdered(obj, offset, value);
 }
 
-void Java_sun_misc_Unsafe_putOrderedObject(JNIEnv *env, jobject unsafeObj,
-                                           jobject obj, jlong offset,
-                                           jobject value) {
-    // TODO do the right memory model thing as specified in Unsafe.java
-    // w.r.t. thread ordering
-    return Java_sun_misc_Unsafe_putObject(env, unsafeObj, obj, offset, value);
+void Java_sun_misc_Unsafe_loadFence(JNIEnv *env, jobject) {
+    __atomic_thread_fence(__ATOMIC_ACQUIRE);
 }
 
-void Java_sun_misc_Unsafe_putOrderedInt(JNIEnv *env, jobject, jobject, jlong,
-                                        jint) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putOrderedInt");
+void Java_sun_misc_Unsafe_storeFence(JNIEnv *env, jobject) {
+    __atomic_thread_fence(__ATOMIC_RELEASE);
 }
 
-void Java_sun_misc_Unsafe_putOrderedLong(JNIEnv *env, jobject, jobject, jlong,
-                                         jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putOrderedLong");
+void Java_sun_misc_Unsafe_fullFence(JNIEnv *env, jobject) {
+    __atomic_thread_fence(__ATOMIC_SEQ_CST);
 }
 
-void Java_sun_misc_Unsafe_unpark(JNIEnv *env, jobject, jobject) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_unpark");
+void Java_sun_misc_Unsafe_unpark(JNIEnv *env, jobject, jobject thread) {
+    // Unparking a thread that has not been started has no effect.
+    if (thread == nullptr)
+        return;
+    if (NativeThread *nativeThread = Threads::Instance().find(thread))
+        nativeThread->unpark();
 }
 
-void Java_sun_misc_Unsafe_park(JNIEnv *env, jobject, jboolean, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_park");
+void Java_sun_misc_Unsafe_park(JNIEnv *env, jobject, jboolean isAbsolute,
+                               jlong time) {
+    CurrentNativeThread().park(isAbsolute, time);
 }
 
 jint Java_sun_misc_Unsafe_getLoadAverage(JNIEnv *env, jobject, jdoubleArray,
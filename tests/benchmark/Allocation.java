@@ -0,0 +1,67 @@
+// Measures the throughput of small object allocation with 1, 4, and 16
+// threads allocating concurrently. Each thread builds short-lived linked
+// lists so that most objects die young.
+public class Allocation {
+    static final int ALLOCATIONS = 20000000;
+    static final int LIST_LENGTH = 64;
+
+    public static void main(String[] args) throws InterruptedException {
+        long sum = 0;
+        sum += run(1);
+        sum += run(4);
+        sum += run(16);
+        System.out.println(sum);
+    }
+
+    static long run(int numThreads) throws InterruptedException {
+        Worker[] workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; ++i)
+            workers[i] = new Worker(ALLOCATIONS / numThreads);
+        long start = System.nanoTime();
+        for (Worker w : workers)
+            w.start();
+        long res = 0;
+        for (Worker w : workers) {
+            w.join();
+            res += w.result;
+        }
+        long elapsed = System.nanoTime() - start;
+        System.err.println(numThreads + " threads: " + (elapsed / 1000000) + " ms, "
+                + (ALLOCATIONS / Math.max(1, elapsed / 1000000)) + " allocations/ms");
+        return res;
+    }
+
+    static class Node {
+        final int value;
+        final Node next;
+
+        Node(int value, Node next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    static class Worker extends Thread {
+        final int allocations;
+        long result;
+
+        Worker(int allocations) {
+            this.allocations = allocations;
+        }
+
+        @Override
+        public void run() {
+            long res = 0;
+            Node list = null;
+            for (int i = 0; i < allocations; ++i) {
+                list = new Node(i, list);
+                if (i % LIST_LENGTH == LIST_LENGTH - 1) {
+                    for (Node n = list; n != null; n = n.next)
+                        res += n.value & 7;
+                    list = null;
+                }
+            }
+            result = res;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Measures contended atomic updates with 1, 4, and 16 threads: AtomicLong
+// increments, compare-and-set loops on an AtomicInteger, and pushes onto a
+// Treiber stack built on AtomicReference. Compare against
+//   make clean AtomicCounter.run JLANGC_FLAGS=-no-atomic-intrinsics
+// for the code generated without inline atomic instructions. (Code inside the
+// JDK itself keeps the intrinsics unless the JDK is rebuilt with the same flag.)
+public class AtomicCounter {
+    static final int UPDATES = 8000000;
+
+    static final AtomicLong counter = new AtomicLong();
+    static final AtomicInteger max = new AtomicInteger();
+    static final AtomicReference<Node> stack = new AtomicReference<Node>();
+
+    static class Node {
+        final int value;
+        final Node next;
+
+        Node(int value, Node next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long sum = 0;
+        sum += run(1);
+        sum += run(4);
+        sum += run(16);
+        System.out.println(sum);
+    }
+
+    static long run(int numThreads) throws InterruptedException {
+        counter.set(0);
+        max.set(0);
+        stack.set(null);
+        Worker[] workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; ++i)
+            workers[i] = new Worker(i, UPDATES / numThreads);
+        long start = System.nanoTime();
+        for (Worker w : workers)
+            w.start();
+        for (Worker w : workers)
+            w.join();
+        long elapsed = System.nanoTime() - start;
+        System.err.println(numThreads + " threads: " + (elapsed / 1000000) + " ms, "
+                + (UPDATES / Math.max(1, elapsed / 1000000)) + " updates/ms");
+
+        int pushed = 0;
+        for (Node n = stack.get(); n != null; n = n.next)
+            ++pushed;
+        return counter.get() + max.get() + pushed;
+    }
+
+    static class Worker extends Thread {
+        final int id;
+        final int updates;
+
+        Worker(int id, int updates) {
+            this.id = id;
+            this.updates = updates;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < updates; ++i) {
+                long c = counter.incrementAndGet();
+
+                // Raise the maximum with a compare-and-set loop.
+                int candidate = (int) (c & 0xFFFF);
+                for (int cur = max.get(); candidate > cur; cur = max.get())
+                    if (max.compareAndSet(cur, candidate))
+                        break;
+
+                if ((i & 63) == 0) {
+                    Node head;
+                    do {
+                        head = stack.get();
+                    } while (!stack.compareAndSet(head, new Node(id, head)));
+                }
+            }
+        }
+    }
+}
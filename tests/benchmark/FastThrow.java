@@ -0,0 +1,61 @@
+// Measures throwing and catching exceptions: explicit throws of a
+// preallocated exception, which only exercise unwinding, and failed array
+// bounds, cast, and division checks, which also create a new exception with
+// a stack trace each time. Compare against
+//   make clean FastThrow.run JLANGC_FLAGS=-omit-stack-trace-in-fast-throw
+// which throws shared instances for the failed checks after the first few.
+public class FastThrow {
+    static final int ITERATIONS = 1000000;
+
+    static final RuntimeException preallocated = new RuntimeException();
+
+    static int[] array = new int[1];
+    static Object notAString = new Object();
+    static int zero = 0;
+
+    public static void main(String[] args) {
+        long sum = 0;
+        sum += time("explicit throw", new Thrower() {
+            void run(int i) {
+                throw preallocated;
+            }
+        });
+        sum += time("array bounds", new Thrower() {
+            void run(int i) {
+                array[i + 1] = i;
+            }
+        });
+        sum += time("class cast", new Thrower() {
+            void run(int i) {
+                String s = (String) notAString;
+                array[0] = s.length();
+            }
+        });
+        sum += time("division by zero", new Thrower() {
+            void run(int i) {
+                array[0] = i / zero;
+            }
+        });
+        System.out.println(sum);
+    }
+
+    static abstract class Thrower {
+        abstract void run(int i);
+    }
+
+    static long time(String name, Thrower thrower) {
+        long caught = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            try {
+                thrower.run(i);
+            } catch (RuntimeException e) {
+                ++caught;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.err.println(name + ": " + (elapsed / 1000000) + " ms, "
+                + (ITERATIONS / Math.max(1, elapsed / 1000000)) + " throws/ms");
+        return caught;
+    }
+}
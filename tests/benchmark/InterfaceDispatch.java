@@ -0,0 +1,58 @@
+// Measures interface method calls at monomorphic, bimorphic, and megamorphic
+// call sites. Compile with and without -no-interface-cache to compare the
+// inline-cached dispatch path against the plain runtime lookup.
+public class InterfaceDispatch {
+    static final int ITERATIONS = 20000000;
+    static final int WARMUP = 1000000;
+
+    public static void main(String[] args) {
+        Shape[] mono = { new Square(), new Square(), new Square(), new Square() };
+        Shape[] bi = { new Square(), new Circle(), new Square(), new Circle() };
+        Shape[] mega = { new Square(), new Circle(), new Triangle(), new Hexagon() };
+
+        long sum = 0;
+        sum += run("monomorphic", mono);
+        sum += run("bimorphic", bi);
+        sum += run("megamorphic", mega);
+        System.out.println(sum);
+    }
+
+    static long run(String name, Shape[] shapes) {
+        loop(shapes, WARMUP);
+        long start = System.nanoTime();
+        long res = loop(shapes, ITERATIONS);
+        long elapsed = System.nanoTime() - start;
+        System.err.println(name + ": " + (elapsed / 1000000) + " ms, "
+                + (elapsed / (ITERATIONS / 1000)) + " ps/call");
+        return res;
+    }
+
+    // All calls in this loop go through a single interface call site.
+    static long loop(Shape[] shapes, int n) {
+        long res = 0;
+        for (int i = 0; i < n; ++i) {
+            res += shapes[i & 3].sides();
+        }
+        return res;
+    }
+}
+
+interface Shape {
+    int sides();
+}
+
+class Square implements Shape {
+    public int sides() { return 4; }
+}
+
+class Circle implements Shape {
+    public int sides() { return 0; }
+}
+
+class Triangle implements Shape {
+    public int sides() { return 3; }
+}
+
+class Hexagon implements Shape {
+    public int sides() { return 6; }
+}
@@ -0,0 +1,65 @@
+// Measures the throughput of String.intern() with 1, 4, and 16 threads
+// interning concurrently. Each thread interns fresh copies of a shared set of
+// strings, so every call looks up an existing entry in the intern table.
+public class Intern {
+    static final int INTERNS = 8000000;
+    static final int DISTINCT = 4096;
+
+    static final String[] canonical = new String[DISTINCT];
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int i = 0; i < DISTINCT; ++i)
+            canonical[i] = ("intern-" + i).intern();
+
+        long sum = 0;
+        sum += run(1);
+        sum += run(4);
+        sum += run(16);
+        System.out.println(sum);
+    }
+
+    static long run(int numThreads) throws InterruptedException {
+        Worker[] workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; ++i)
+            workers[i] = new Worker(i, INTERNS / numThreads);
+        long start = System.nanoTime();
+        for (Worker w : workers)
+            w.start();
+        long res = 0;
+        for (Worker w : workers) {
+            w.join();
+            res += w.result;
+        }
+        long elapsed = System.nanoTime() - start;
+        System.err.println(numThreads + " threads: " + (elapsed / 1000000) + " ms, "
+                + (INTERNS / Math.max(1, elapsed / 1000000)) + " interns/ms");
+        return res;
+    }
+
+    static class Worker extends Thread {
+        final int id;
+        final int interns;
+        long result;
+
+        Worker(int id, int interns) {
+            this.id = id;
+            this.interns = interns;
+        }
+
+        @Override
+        public void run() {
+            // Copy the strings up front, so that the loop measures only intern().
+            String[] copies = new String[DISTINCT];
+            for (int i = 0; i < DISTINCT; ++i)
+                copies[i] = new String(canonical[i].toCharArray());
+
+            long res = 0;
+            for (int i = 0; i < interns; ++i) {
+                int idx = (i * 31 + id) & (DISTINCT - 1);
+                if (copies[idx].intern() == canonical[idx])
+                    res += idx & 7;
+            }
+            result = res;
+        }
+    }
+}
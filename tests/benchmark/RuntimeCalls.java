@@ -0,0 +1,92 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+// Measures code that spends most of its time in the native runtime rather than
+// in compiled Java code: reflective lookups and calls, class lookups by name,
+// native array copies, and thread creation. Compare a runtime built with
+// `make BUILD=debug` (the default) against one built with `make BUILD=release`.
+public class RuntimeCalls {
+    static final int LOOKUPS = 1000000;
+    static final int INVOKES = 1000000;
+    static final int COPIES = 2000000;
+    static final int THREADS = 2000;
+
+    public int value = 3;
+
+    public int add(int x) {
+        return value + x;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long sum = 0;
+        for (String phase : new String[] {"lookups", "invokes", "copies", "threads"}) {
+            long start = System.nanoTime();
+            sum += run(phase);
+            long elapsed = System.nanoTime() - start;
+            System.err.println(phase + ": " + (elapsed / 1000000) + " ms");
+        }
+        System.out.println(sum);
+    }
+
+    static long run(String phase) throws Exception {
+        switch (phase) {
+            case "lookups": return lookups();
+            case "invokes": return invokes();
+            case "copies": return copies();
+            default: return threads();
+        }
+    }
+
+    static long lookups() throws Exception {
+        long res = 0;
+        for (int i = 0; i < LOOKUPS; ++i) {
+            Class<?> c = Class.forName(i % 2 == 0 ? "RuntimeCalls" : "java.lang.String");
+            Method m = RuntimeCalls.class.getMethod("add", int.class);
+            Field f = RuntimeCalls.class.getField("value");
+            res += c.getName().length() + m.getName().length() + f.getName().length();
+        }
+        return res;
+    }
+
+    static long invokes() throws Exception {
+        RuntimeCalls obj = new RuntimeCalls();
+        Method m = RuntimeCalls.class.getMethod("add", int.class);
+        Field f = RuntimeCalls.class.getField("value");
+        long res = 0;
+        for (int i = 0; i < INVOKES; ++i) {
+            res += (Integer) m.invoke(obj, i & 15);
+            res += f.getInt(obj);
+        }
+        return res;
+    }
+
+    static long copies() {
+        int[] src = new int[64];
+        for (int i = 0; i < src.length; ++i)
+            src[i] = i;
+        int[] dst = new int[64];
+        long res = 0;
+        for (int i = 0; i < COPIES; ++i) {
+            System.arraycopy(src, i & 7, dst, 0, 32);
+            int[] copy = dst.clone();
+            res += copy[i & 31];
+        }
+        return res;
+    }
+
+    static long threads() throws InterruptedException {
+        final long[] res = new long[1];
+        for (int i = 0; i < THREADS; ++i) {
+            final int n = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    res[0] += n & 3;
+                }
+            };
+            t.start();
+            t.join();
+        }
+        return res[0];
+    }
+}
@@ -23,5 +23,39 @@ public class ArrayOutOfBounds {
         } catch (ArrayIndexOutOfBoundsException e) {
             System.out.println("catch " + x);
         }
+
+        // Counted loops: only accesses that are provably in bounds may skip the check.
+        int sum = 0;
+        for (int i = 0; i < xs.length; i++) {
+            sum += xs[i];
+        }
+        System.out.println(sum);
+
+        try {
+            for (int i = 0; i < xs.length; i++) {
+                System.out.println(xs[i + 1]);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println("catch");
+        }
+
+        try {
+            for (int i = 0; i < xs.length; i++) {
+                i += 2;
+                System.out.println(xs[i]);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println("catch");
+        }
+
+        try {
+            int[] ys = xs;
+            for (int i = 0; i < ys.length; ++i) {
+                System.out.println(ys[i]);
+                ys = new int[1];
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println("catch");
+        }
     }
 }
@@ -0,0 +1,156 @@
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import sun.misc.Unsafe;
+
+// Also compiled with the flags in AtomicIntrinsics.flags, as AtomicIntrinsics_flags.
+public class AtomicIntrinsics {
+    volatile int i = 1;
+    volatile long l = 1L << 40;
+    volatile Object o = "a";
+
+    static final Unsafe U;
+    static final long I_OFFSET, L_OFFSET, O_OFFSET;
+
+    static {
+        try {
+            Field f = Unsafe.class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            U = (Unsafe) f.get(null);
+            I_OFFSET = U.objectFieldOffset(AtomicIntrinsics.class.getDeclaredField("i"));
+            L_OFFSET = U.objectFieldOffset(AtomicIntrinsics.class.getDeclaredField("l"));
+            O_OFFSET = U.objectFieldOffset(AtomicIntrinsics.class.getDeclaredField("o"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        unsafeFields();
+        unsafeArrays();
+        atomicFields();
+        atomicArrays();
+        contended();
+    }
+
+    static void unsafeFields() {
+        AtomicIntrinsics a = new AtomicIntrinsics();
+        System.out.println(U.compareAndSwapInt(a, I_OFFSET, 1, 2) + " " + a.i);
+        System.out.println(U.compareAndSwapInt(a, I_OFFSET, 1, 3) + " " + a.i);
+        System.out.println(U.compareAndSwapInt(a, I_OFFSET, 2, -1) + " " + a.i);
+
+        System.out.println(U.compareAndSwapLong(a, L_OFFSET, 1L << 40, -5L) + " " + a.l);
+        System.out.println(U.compareAndSwapLong(a, L_OFFSET, 1L << 40, 7L) + " " + a.l);
+        System.out.println(U.compareAndSwapLong(a, L_OFFSET, -5L, Long.MAX_VALUE) + " " + a.l);
+
+        // References are compared by identity.
+        String b = "b";
+        System.out.println(U.compareAndSwapObject(a, O_OFFSET, new String("a"), b) + " " + a.o);
+        System.out.println(U.compareAndSwapObject(a, O_OFFSET, a.o, b) + " " + a.o);
+        System.out.println(U.compareAndSwapObject(a, O_OFFSET, b, null) + " " + a.o);
+        System.out.println(U.compareAndSwapObject(a, O_OFFSET, null, "c") + " " + a.o);
+    }
+
+    static void unsafeArrays() {
+        int[] ints = {10, 20, 30};
+        long intBase = U.arrayBaseOffset(int[].class);
+        long intScale = U.arrayIndexScale(int[].class);
+        System.out.println(U.compareAndSwapInt(ints, intBase + 2 * intScale, 30, 31) + " "
+                + ints[0] + " " + ints[1] + " " + ints[2]);
+        System.out.println(U.compareAndSwapInt(ints, intBase + intScale, 30, 32) + " "
+                + ints[0] + " " + ints[1] + " " + ints[2]);
+
+        long[] longs = {1, 2, 3};
+        long longBase = U.arrayBaseOffset(long[].class);
+        long longScale = U.arrayIndexScale(long[].class);
+        System.out.println(U.compareAndSwapLong(longs, longBase, 1, Long.MIN_VALUE) + " "
+                + longs[0] + " " + longs[1] + " " + longs[2]);
+        System.out.println(U.compareAndSwapLong(longs, longBase + 2 * longScale, 2, 4) + " "
+                + longs[0] + " " + longs[1] + " " + longs[2]);
+
+        Object[] objs = {"x", "y"};
+        long objBase = U.arrayBaseOffset(Object[].class);
+        long objScale = U.arrayIndexScale(Object[].class);
+        System.out.println(U.compareAndSwapObject(objs, objBase + objScale, "y", "z") + " "
+                + objs[0] + " " + objs[1]);
+        System.out.println(U.compareAndSwapObject(objs, objBase, "y", "w") + " "
+                + objs[0] + " " + objs[1]);
+    }
+
+    static void atomicFields() {
+        AtomicInteger ai = new AtomicInteger(5);
+        System.out.println(ai.getAndIncrement() + " " + ai.incrementAndGet() + " "
+                + ai.getAndDecrement() + " " + ai.decrementAndGet() + " " + ai.get());
+        System.out.println(ai.getAndAdd(-10) + " " + ai.addAndGet(3) + " " + ai.get());
+        System.out.println(ai.getAndSet(Integer.MAX_VALUE) + " " + ai.incrementAndGet());
+        System.out.println(ai.compareAndSet(0, 1) + " " + ai.get());
+        System.out.println(ai.compareAndSet(Integer.MIN_VALUE, 1) + " " + ai.get());
+        System.out.println(ai.weakCompareAndSet(1, 2) || ai.get() == 2);
+
+        AtomicLong al = new AtomicLong(1L << 33);
+        System.out.println(al.getAndIncrement() + " " + al.incrementAndGet() + " "
+                + al.getAndDecrement() + " " + al.decrementAndGet() + " " + al.get());
+        System.out.println(al.getAndAdd(-(1L << 34)) + " " + al.addAndGet(7) + " " + al.get());
+        System.out.println(al.getAndSet(Long.MIN_VALUE) + " " + al.decrementAndGet());
+        System.out.println(al.compareAndSet(0, 1) + " " + al.get());
+        System.out.println(al.compareAndSet(Long.MAX_VALUE, -1) + " " + al.get());
+
+        String first = "first";
+        AtomicReference<String> ar = new AtomicReference<>(first);
+        System.out.println(ar.getAndSet("second") + " " + ar.get());
+        System.out.println(ar.compareAndSet(new String("second"), "third") + " " + ar.get());
+        System.out.println(ar.compareAndSet(ar.get(), null) + " " + ar.get());
+        System.out.println(ar.getAndSet(first) + " " + ar.get());
+    }
+
+    static void atomicArrays() {
+        AtomicIntegerArray ia = new AtomicIntegerArray(3);
+        System.out.println(ia.getAndAdd(1, 5) + " " + ia.getAndSet(1, 9) + " "
+                + ia.compareAndSet(1, 5, 0) + " " + ia.compareAndSet(1, 9, 4) + " " + ia);
+
+        AtomicLongArray la = new AtomicLongArray(2);
+        System.out.println(la.getAndAdd(0, 1L << 40) + " " + la.getAndSet(0, -1) + " "
+                + la.compareAndSet(0, 0, 1) + " " + la.compareAndSet(0, -1, 2) + " " + la);
+
+        AtomicReferenceArray<String> ra = new AtomicReferenceArray<>(new String[] {"p", "q"});
+        System.out.println(ra.getAndSet(0, "r") + " " + ra.compareAndSet(1, "p", "s") + " "
+                + ra.compareAndSet(1, "q", "t") + " " + ra);
+    }
+
+    // Atomic updates from several threads are not lost.
+    static void contended() throws InterruptedException {
+        final AtomicIntrinsics a = new AtomicIntrinsics();
+        final long[] longs = new long[1];
+        final long longBase = U.arrayBaseOffset(long[].class);
+        final AtomicInteger ai = new AtomicInteger();
+        final AtomicLong al = new AtomicLong();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int k = 0; k < 1000; ++k) {
+                        int oldI;
+                        do {
+                            oldI = a.i;
+                        } while (!U.compareAndSwapInt(a, I_OFFSET, oldI, oldI + 1));
+                        long oldL;
+                        do {
+                            oldL = longs[0];
+                        } while (!U.compareAndSwapLong(longs, longBase, oldL, oldL + 3));
+                        ai.getAndAdd(2);
+                        al.incrementAndGet();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        System.out.println(a.i + " " + longs[0] + " " + ai.get() + " " + al.get());
+    }
+}
@@ -0,0 +1,94 @@
+// A static initializer that throws leaves its class in an erroneous state:
+// the initializing thread sees the exception (wrapped unless it is an Error),
+// and every later use, including from a thread that was waiting for the
+// initialization, throws NoClassDefFoundError. See JLS 7, section 12.4.2.
+public class ClassInitFailure {
+    static volatile boolean initStarted;
+
+    static class Bad {
+        static int x = fail();
+
+        static int fail() {
+            initStarted = true;
+            try {
+                // Give the second thread time to wait for this initialization.
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            throw new IllegalStateException("static initializer failed");
+        }
+    }
+
+    static class SubOfBad extends Bad {
+        static int y = 1;
+    }
+
+    static class BadError {
+        static int x = fail();
+
+        static int fail() {
+            throw new CustomError();
+        }
+    }
+
+    static class CustomError extends Error {
+        CustomError() {
+            super("custom");
+        }
+    }
+
+    static void touch(String what) {
+        System.out.println(tryTouch(what));
+    }
+
+    static String tryTouch(String what) {
+        try {
+            if (what.equals("Bad"))
+                return what + ": " + Bad.x;
+            else if (what.equals("SubOfBad"))
+                return what + ": " + SubOfBad.y;
+            else
+                return what + ": " + BadError.x;
+        } catch (ExceptionInInitializerError e) {
+            return what + ": ExceptionInInitializerError caused by "
+                    + e.getCause().getClass().getName() + ": " + e.getCause().getMessage();
+        } catch (NoClassDefFoundError e) {
+            return what + ": NoClassDefFoundError";
+        } catch (CustomError e) {
+            return what + ": CustomError " + e.getMessage();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final String[] results = new String[2];
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                results[0] = tryTouch("Bad");
+            }
+        };
+        first.start();
+        while (!initStarted)
+            Thread.yield();
+
+        // Blocks until the first thread's initialization fails.
+        Thread second = new Thread() {
+            @Override
+            public void run() {
+                results[1] = tryTouch("Bad");
+            }
+        };
+        second.start();
+        first.join();
+        second.join();
+        System.out.println(results[0]);
+        System.out.println(results[1]);
+
+        touch("Bad");
+        touch("SubOfBad");
+        touch("SubOfBad");
+        touch("BadError");
+        touch("BadError");
+    }
+}
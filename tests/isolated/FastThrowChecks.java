@@ -0,0 +1,103 @@
+// Also compiled with the flags in FastThrowChecks.flags, as FastThrowChecks_flags,
+// which throws shared exception instances once a check has failed often.
+public class FastThrowChecks {
+    static final int REPEAT = 100;
+
+    static Object nothing;
+    static int[] array = new int[2];
+    static int zero;
+    static long zeroL;
+    static int minusOne = -1;
+    static long minusOneL = -1;
+
+    static int deref(int i) {
+        return nothing.hashCode() + i;
+    }
+
+    static int index(int i) {
+        return array[i + 2];
+    }
+
+    static int divide(int i) {
+        return i / zero;
+    }
+
+    static long remainder(long i) {
+        return i % zeroL;
+    }
+
+    static int divideAssign(int i) {
+        i /= zero;
+        return i;
+    }
+
+    static int cast(int i) {
+        return ((String) (Object) Integer.valueOf(i)).length();
+    }
+
+    static void check(String name, Class<?> expected, int kind) {
+        int caught = 0;
+        StackTraceElement[] first = null;
+        for (int i = 0; i < REPEAT; ++i) {
+            try {
+                switch (kind) {
+                    case 0: deref(i); break;
+                    case 1: index(i); break;
+                    case 2: divide(i); break;
+                    case 3: remainder(i); break;
+                    case 4: divideAssign(i); break;
+                    case 5: cast(i); break;
+                }
+            } catch (RuntimeException e) {
+                if (e.getClass() == expected)
+                    ++caught;
+                if (i == 0)
+                    first = e.getStackTrace();
+            }
+        }
+        System.out.println(name + ": " + caught + "/" + REPEAT + " " + expected.getName());
+        System.out.println(first.length > 0 && first[0].getClassName().equals("FastThrowChecks"));
+    }
+
+    public static void main(String[] args) {
+        check("null", NullPointerException.class, 0);
+        check("bounds", ArrayIndexOutOfBoundsException.class, 1);
+        check("divide", ArithmeticException.class, 2);
+        check("remainder", ArithmeticException.class, 3);
+        check("divide assign", ArithmeticException.class, 4);
+        check("cast", ClassCastException.class, 5);
+
+        // Catching by the specific type.
+        int caught = 0;
+        for (int i = 0; i < REPEAT; ++i) {
+            try {
+                divide(i);
+            } catch (ArithmeticException e) {
+                ++caught;
+            }
+            try {
+                deref(i);
+            } catch (NullPointerException e) {
+                ++caught;
+            }
+        }
+        System.out.println(caught);
+
+        // Overflow and division by -1 do not throw.
+        System.out.println(Integer.MIN_VALUE / minusOne);
+        System.out.println(Integer.MIN_VALUE % minusOne);
+        System.out.println(Long.MIN_VALUE / minusOneL);
+        System.out.println(Long.MIN_VALUE % minusOneL);
+        System.out.println(7 / minusOne + " " + -7 % minusOne);
+        System.out.println(-7 / 2 + " " + -7 % 2 + " " + 7 % -3);
+        int x = Integer.MIN_VALUE;
+        x /= minusOne;
+        System.out.println(x);
+        char c = 'z';
+        c /= 2;
+        System.out.println((int) c);
+        byte b = -128;
+        b /= (byte) minusOne;
+        System.out.println(b);
+    }
+}
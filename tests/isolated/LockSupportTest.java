@@ -0,0 +1,90 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class LockSupportTest {
+    static int counter = 0;
+
+    public static void main(String[] args) throws InterruptedException {
+        // A permit made available before parking is consumed without blocking.
+        LockSupport.unpark(Thread.currentThread());
+        LockSupport.park();
+        System.out.println("consumed permit");
+
+        // Timed parks return once the deadline passes.
+        LockSupport.parkNanos(1000000);
+        LockSupport.parkUntil(System.currentTimeMillis() + 1);
+        System.out.println("timed out");
+
+        // Unpark wakes a parked thread.
+        final Thread main = Thread.currentThread();
+        Thread waker = new Thread() {
+            @Override
+            public void run() {
+                LockSupport.unpark(main);
+            }
+        };
+        waker.start();
+        LockSupport.park();
+        waker.join();
+        System.out.println("unparked");
+
+        // Interrupting a parked thread wakes it.
+        Thread sleeper = new Thread() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted())
+                    LockSupport.park();
+                System.out.println("interrupted");
+            }
+        };
+        sleeper.start();
+        sleeper.interrupt();
+        sleeper.join();
+
+        // Contended ReentrantLock.
+        final ReentrantLock lock = new ReentrantLock();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; ++j) {
+                        lock.lock();
+                        try {
+                            ++counter;
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        System.out.println(counter);
+
+        // Blocking queue with a small capacity, so both sides block.
+        final BlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(2);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 1000; ++i)
+                        queue.put(i);
+                    queue.put(-1);
+                } catch (InterruptedException e) {
+                    System.out.println("unexpected interrupt");
+                }
+            }
+        };
+        producer.start();
+        long sum = 0;
+        for (int x = queue.take(); x >= 0; x = queue.take())
+            sum += x;
+        producer.join();
+        System.out.println(sum);
+    }
+}
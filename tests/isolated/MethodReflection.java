@@ -1,3 +1,4 @@
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -24,16 +25,80 @@ class MethodReflection {
             }
 
             if (mtd.getName().equals("ii")) {
-                // TODO: support autoboxing
-                // Currently, it is broken when mtc.invoke() returns an int.
-                // or it takes in unboxed parameters/arguments.
                 Object l = mtd.invoke(mr, new short[]{1, 2, 3}, new Long(100000),
                                          new String[]{"anc"});
                 System.out.println(l);
             }
+
+            if (mtd.getName().equals("ss")) {
+                System.out.println(mtd.invoke(null, 3, 4L));
+                System.out.println(mtd.invoke(null, (short) 5, 6));
+            }
+        }
+
+        Constructor<MethodReflection> ctor =
+                MethodReflection.class.getDeclaredConstructor(String.class, int.class);
+        System.out.println(ctor.newInstance("made", 7).s);
+
+        // A receiver with a method of the same name and signature,
+        // but which is not an instance of the declaring class.
+        Method name = Target.class.getDeclaredMethod("name");
+        System.out.println(name.invoke(new SubTarget()));
+        try {
+            name.invoke(new Unrelated());
+        } catch (IllegalArgumentException e) {
+            System.out.println("IllegalArgumentException");
+        }
+
+        // A private method is not overridden by a subclass method
+        // with the same name and signature.
+        Method secret = Target.class.getDeclaredMethod("secret");
+        secret.setAccessible(true);
+        System.out.println(secret.invoke(new Target()));
+        System.out.println(secret.invoke(new SubTarget()));
+    }
+
+    static class Target {
+        public String name() {
+            return "Target.name";
+        }
+
+        private String secret() {
+            return "Target.secret";
+        }
+    }
+
+    static class SubTarget extends Target {
+        @Override
+        public String name() {
+            return "SubTarget.name";
+        }
+
+        public String secret() {
+            return "SubTarget.secret";
         }
     }
 
+    static class Unrelated {
+        public String name() {
+            return "Unrelated.name";
+        }
+    }
+
+    private final String s;
+
+    MethodReflection() {
+        this("default", 0);
+    }
+
+    MethodReflection(String s, int n) {
+        this.s = s + " " + n;
+    }
+
+    static long ss(int i, long l) {
+        return i * l;
+    }
+
     private String ii(short[] ss, Long l, String[] strs) {
         return "Called ii with " + Arrays.toString(ss) + " : " + l + " : " + Arrays.toString(strs);
     }
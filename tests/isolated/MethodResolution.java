@@ -0,0 +1,242 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+// Looks up methods and fields by name and signature, and calls them on
+// receivers of several classes, so that both the sorted member tables and
+// the cache used to resolve a method against a receiver class are exercised.
+public class MethodResolution {
+
+    interface Named {
+        String name();
+    }
+
+    static class Base implements Named {
+        // Declared out of name order; some names differ only in case or length.
+        int z = 1;
+        int b = 2;
+        int B = 3;
+        int bb = 4;
+        long a = 5;
+        String ab = "ab";
+        static int s = 6;
+        static String S = "S";
+
+        public String f() { return "Base.f()"; }
+        public String f(int i) { return "Base.f(int " + i + ")"; }
+        public String f(long l) { return "Base.f(long " + l + ")"; }
+        public String f(String s) { return "Base.f(String " + s + ")"; }
+        public String f(Object o) { return "Base.f(Object " + o + ")"; }
+        public String f(int[] a) { return "Base.f(int[" + a.length + "])"; }
+        public String f(int i, int j) { return "Base.f(int " + i + ", int " + j + ")"; }
+        public String ff() { return "Base.ff()"; }
+        public String name() { return "Base"; }
+
+        public static String g() { return "Base.g()"; }
+        public String g(int i) { return "Base.g(int " + i + ")"; }
+    }
+
+    static class Sub extends Base {
+        // Hides Base.b.
+        String b = "Sub.b";
+        int c = 7;
+
+        @Override public String f(int i) { return "Sub.f(int " + i + ")"; }
+        @Override public String f(String s) { return "Sub.f(String " + s + ")"; }
+        @Override public String name() { return "Sub"; }
+        public String f(double d) { return "Sub.f(double " + d + ")"; }
+    }
+
+    static class SubSub extends Sub {
+        @Override public String f() { return "SubSub.f()"; }
+        @Override public String f(int i, int j) { return "SubSub.f(int " + i + ", int " + j + ")"; }
+    }
+
+    static final Base[] receivers = {new Base(), new Sub(), new SubSub()};
+
+    public static void main(String[] args) throws Exception {
+        overloads();
+        inherited();
+        staticAndInstance();
+        fields();
+        concurrent();
+        threads();
+    }
+
+    static Method[] overloadMethods() throws Exception {
+        Class<Base> cls = Base.class;
+        return new Method[] {
+            cls.getDeclaredMethod("f"),
+            cls.getDeclaredMethod("f", int.class),
+            cls.getDeclaredMethod("f", long.class),
+            cls.getDeclaredMethod("f", String.class),
+            cls.getDeclaredMethod("f", Object.class),
+            cls.getDeclaredMethod("f", int[].class),
+            cls.getDeclaredMethod("f", int.class, int.class),
+            cls.getDeclaredMethod("ff"),
+            Named.class.getDeclaredMethod("name"),
+        };
+    }
+
+    static Object[][] overloadArgs() {
+        return new Object[][] {
+            {}, {1}, {2L}, {"x"}, {"y"}, {new int[3]}, {4, 5}, {}, {},
+        };
+    }
+
+    // Each overload is called on every receiver class, several times in a row
+    // and interleaved, so both fresh and cached resolutions are checked.
+    static void overloads() throws Exception {
+        Method[] methods = overloadMethods();
+        Object[][] args = overloadArgs();
+        for (int round = 0; round < 3; ++round) {
+            for (Base r : receivers) {
+                StringBuilder sb = new StringBuilder(r.getClass().getName()).append(':');
+                for (int m = 0; m < methods.length; ++m)
+                    sb.append(' ').append(methods[m].invoke(r, args[m]));
+                if (round == 0)
+                    System.out.println(sb);
+                else
+                    System.out.println(sb.toString().equals(expected(r)));
+            }
+        }
+    }
+
+    static String expected(Base r) {
+        return r.getClass().getName() + ": " + r.f() + " " + r.f(1) + " " + r.f(2L)
+                + " " + r.f("x") + " " + r.f((Object) "y") + " " + r.f(new int[3])
+                + " " + r.f(4, 5) + " " + r.ff() + " " + r.name();
+    }
+
+    // Public methods found through a subclass, where the declaration is in a superclass.
+    static void inherited() throws Exception {
+        Class<SubSub> cls = SubSub.class;
+        String[] names = {"f", "f", "f", "f", "f", "ff", "name", "g"};
+        Class<?>[][] params = {
+            {}, {int.class}, {long.class}, {double.class}, {int.class, int.class}, {}, {}, {int.class},
+        };
+        Object[][] args = {{}, {1}, {2L}, {3.5}, {4, 5}, {}, {}, {6}};
+        SubSub r = new SubSub();
+        for (int i = 0; i < names.length; ++i) {
+            Method m = cls.getMethod(names[i], params[i]);
+            System.out.println(m.getDeclaringClass().getName() + "." + m.getName()
+                    + " " + m.getParameterTypes().length + " -> " + m.invoke(r, args[i]));
+        }
+        try {
+            cls.getMethod("f", short.class);
+        } catch (NoSuchMethodException e) {
+            System.out.println("NoSuchMethodException f(short)");
+        }
+        try {
+            Base.class.getDeclaredMethod("f", double.class);
+        } catch (NoSuchMethodException e) {
+            System.out.println("NoSuchMethodException Base.f(double)");
+        }
+    }
+
+    // A static and an instance method with the same name.
+    static void staticAndInstance() throws Exception {
+        Method g = Base.class.getDeclaredMethod("g");
+        Method gi = Base.class.getDeclaredMethod("g", int.class);
+        System.out.println(Modifier.isStatic(g.getModifiers()) + " " + g.invoke(null));
+        System.out.println(Modifier.isStatic(gi.getModifiers()) + " " + gi.invoke(new Sub(), 7));
+    }
+
+    static void fields() throws Exception {
+        Base base = new Base();
+        Sub sub = new Sub();
+        String[] names = {"z", "b", "B", "bb", "a", "ab"};
+        for (String name : names) {
+            Field f = Base.class.getDeclaredField(name);
+            System.out.println(name + " " + f.getType().getName()
+                    + " " + f.get(base) + " " + f.get(sub));
+        }
+        Field sb = Sub.class.getDeclaredField("b");
+        System.out.println(sb.getType().getName() + " " + sb.get(sub));
+        Field c = Sub.class.getDeclaredField("c");
+        c.setInt(sub, 8);
+        Field bb = Base.class.getDeclaredField("bb");
+        bb.setInt(sub, 9);
+        System.out.println(sub.c + " " + sub.bb + " " + ((Base) sub).b + " " + sub.b);
+        Field s = Base.class.getDeclaredField("s");
+        Field S = Base.class.getDeclaredField("S");
+        s.setInt(null, 10);
+        System.out.println(s.get(null) + " " + S.get(null) + " " + Base.s);
+        try {
+            Sub.class.getDeclaredField("z");
+        } catch (NoSuchFieldException e) {
+            System.out.println("NoSuchFieldException Sub.z");
+        }
+    }
+
+    // Several threads resolve the same methods against alternating receivers.
+    static void concurrent() throws Exception {
+        final Method[] methods = overloadMethods();
+        final Object[][] args = overloadArgs();
+        final String[] expected = new String[receivers.length];
+        for (int r = 0; r < receivers.length; ++r)
+            expected[r] = expected(receivers[r]);
+        final int[] mismatches = new int[4];
+        Thread[] threads = new Thread[mismatches.length];
+        for (int t = 0; t < threads.length; ++t) {
+            final int id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int k = 0; k < 200; ++k) {
+                            int r = (k + id) % receivers.length;
+                            Base recv = receivers[r];
+                            StringBuilder sb = new StringBuilder(recv.getClass().getName())
+                                    .append(':');
+                            for (int m = 0; m < methods.length; ++m)
+                                sb.append(' ').append(methods[m].invoke(recv, args[m]));
+                            if (!sb.toString().equals(expected[r]))
+                                ++mismatches[id];
+                        }
+                    } catch (Exception e) {
+                        ++mismatches[id];
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        int total = 0;
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t].join();
+            total += mismatches[t];
+        }
+        System.out.println("mismatches " + total);
+    }
+
+    // The runtime starts a thread by looking up run()V by name, so these
+    // check that an overload is not chosen and that inherited run() is found.
+    static class Runner extends Thread {
+        static final StringBuffer log = new StringBuffer();
+
+        @Override
+        public void run() { log.append("Runner.run() "); }
+
+        public void run(int i) { log.append("Runner.run(int) "); }
+
+        public void runs() { log.append("Runner.runs() "); }
+    }
+
+    static class InheritsRun extends Runner {
+        public void run(String s) { log.append("InheritsRun.run(String) "); }
+    }
+
+    static class OverridesRun extends InheritsRun {
+        @Override
+        public void run() { log.append("OverridesRun.run() "); }
+    }
+
+    static void threads() throws InterruptedException {
+        Thread[] threads = {new Runner(), new InheritsRun(), new OverridesRun(), new Runner()};
+        for (Thread t : threads) {
+            t.start();
+            t.join();
+        }
+        System.out.println(Runner.log);
+    }
+}
@@ -0,0 +1,69 @@
+public class NullPointer {
+    int f = 42;
+    int[] xs = {1, 2, 3};
+
+    int get() {
+        return f;
+    }
+
+    static NullPointer make(boolean b) {
+        return b ? new NullPointer() : null;
+    }
+
+    public static void main(String[] args) {
+        NullPointer p = make(true);
+        System.out.println(p.f + p.get() + p.xs.length);
+
+        NullPointer q = make(false);
+        try {
+            System.out.println(q.f);
+        } catch (NullPointerException e) {
+            System.out.println("catch field read");
+        }
+
+        try {
+            q.f = 1;
+        } catch (NullPointerException e) {
+            System.out.println("catch field write");
+        }
+
+        try {
+            System.out.println(q.get());
+        } catch (NullPointerException e) {
+            System.out.println("catch call");
+        }
+
+        int[] arr = null;
+        try {
+            System.out.println(arr.length);
+        } catch (NullPointerException e) {
+            System.out.println("catch length");
+        }
+
+        try {
+            System.out.println(arr[0]);
+        } catch (NullPointerException e) {
+            System.out.println("catch array read");
+        }
+
+        String s = null;
+        try {
+            System.out.println(s.length());
+        } catch (NullPointerException e) {
+            System.out.println("catch string");
+        }
+
+        try {
+            throw null;
+        } catch (NullPointerException e) {
+            System.out.println("catch throw");
+        }
+
+        // The exception is an ordinary Java exception.
+        try {
+            q.get();
+        } catch (RuntimeException e) {
+            System.out.println(e.getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+class ReflectiveInvocation {
+    final int n;
+
+    ReflectiveInvocation(int n) throws IOException {
+        if (n < 0)
+            throw new IOException("negative");
+        this.n = n;
+    }
+
+    int add(int x) {
+        return n + x;
+    }
+
+    static double half(double d) {
+        return d / 2;
+    }
+
+    void fail(String msg) {
+        throw new IllegalStateException(msg);
+    }
+
+    static void checked() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("checked");
+    }
+
+    public static void main(String[] args) throws Exception {
+        ReflectiveInvocation r = new ReflectiveInvocation(1);
+        Class<ReflectiveInvocation> cls = ReflectiveInvocation.class;
+        Method add = cls.getDeclaredMethod("add", int.class);
+        Method half = cls.getDeclaredMethod("half", double.class);
+        Method fail = cls.getDeclaredMethod("fail", String.class);
+        Method checked = cls.getDeclaredMethod("checked");
+
+        // Identity and widening conversions.
+        invoke(add, r, 2);
+        invoke(add, r, (byte) 3);
+        invoke(add, r, (short) 4);
+        invoke(add, r, 'a');
+        invoke(half, null, 3);
+        invoke(half, null, 5L);
+        invoke(half, null, 1.5f);
+        invoke(half, null, 7.0);
+
+        // Narrowing conversions, arguments that are not boxes,
+        // and null for a primitive parameter are rejected.
+        invoke(add, r, 2L);
+        invoke(add, r, 2.0);
+        invoke(add, r, true);
+        invoke(add, r, "2");
+        invoke(add, r, (Object) null);
+
+        // Wrong number of arguments.
+        invoke(add, r);
+        invoke(add, r, 1, 2);
+
+        // Bad receivers.
+        invoke(add, null, 1);
+        invoke(add, "not a receiver", 1);
+
+        // Exceptions thrown by the method are wrapped.
+        invoke(fail, r, "boom");
+        invoke(checked, null);
+
+        Constructor<ReflectiveInvocation> ctor = cls.getDeclaredConstructor(int.class);
+        System.out.println(ctor.newInstance(5).n);
+        try {
+            ctor.newInstance(-1);
+        } catch (InvocationTargetException e) {
+            System.out.println("InvocationTargetException: " + e.getCause());
+        }
+        try {
+            ctor.newInstance("5");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getClass().getName());
+        }
+
+        // Declared exception types.
+        System.out.println(Arrays.toString(ctor.getExceptionTypes()));
+        System.out.println(Arrays.toString(checked.getExceptionTypes()));
+        System.out.println(Arrays.toString(add.getExceptionTypes()));
+    }
+
+    static void invoke(Method m, Object obj, Object... args) {
+        try {
+            System.out.println(m.invoke(obj, args));
+        } catch (InvocationTargetException e) {
+            System.out.println("InvocationTargetException: " + e.getCause());
+        } catch (Exception e) {
+            System.out.println(e.getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class StackTraces {
+
+    static class CustomException extends Exception {
+        CustomException(String msg) {
+            super(msg);
+        }
+    }
+
+    static class Stackless extends RuntimeException {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    static void thrower(int depth) throws CustomException {
+        if (depth == 0)
+            throw new CustomException("deep");
+        thrower(depth - 1);
+    }
+
+    static void describe(Throwable t) {
+        StackTraceElement[] trace = t.getStackTrace();
+        // Frames of fillInStackTrace and the constructors are not included.
+        System.out.println(trace.length > 0);
+        System.out.println(trace[0].getClassName());
+        System.out.println(!trace[0].getMethodName().equals("<init>"));
+        System.out.println(trace[trace.length - 1].getClassName());
+        System.out.println(trace[trace.length - 1].getMethodName());
+    }
+
+    public static void main(String[] args) {
+        try {
+            thrower(5);
+        } catch (CustomException e) {
+            describe(e);
+        }
+
+        try {
+            Object o = null;
+            o.hashCode();
+        } catch (NullPointerException e) {
+            describe(e);
+        }
+
+        try {
+            int[] a = new int[1];
+            a[args.length + 1] = 1;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            describe(e);
+        }
+
+        // A throwable that never fills in its stack trace.
+        System.out.println(new Stackless().getStackTrace().length);
+
+        // The stack trace can be replaced.
+        Exception e = new Exception("replaced");
+        StackTraceElement[] trace = {new StackTraceElement("A", "b", "A.java", 1)};
+        e.setStackTrace(trace);
+        System.out.println(e.getStackTrace()[0]);
+
+        // Printing symbolizes the frames.
+        StringWriter sw = new StringWriter();
+        new IllegalStateException("boom").printStackTrace(new PrintWriter(sw));
+        String[] lines = sw.toString().split("\n");
+        System.out.println(lines[0]);
+        System.out.println(lines[1].startsWith("\tat StackTraces.main("));
+    }
+}
@@ -14,6 +14,19 @@ public class StringConversion {
         // System.out.println("double: " + 0.0); Not implemented yet
         System.out.println("bool: " + true);
         System.out.println("bool: " + false);
+        nonConstant((byte) -1, (short) 300, 'b', -42, Long.MIN_VALUE, true);
+        nonConstant((byte) 127, (short) -1, '\u00e9', Integer.MIN_VALUE, 0L, false);
+    }
+
+    public static void nonConstant(byte b, short s, char c, int i, long l, boolean z) {
+        String str = "str";
+        System.out.println(b + ", " + s + ", " + c + ", " + i + ", " + l + ", " + z);
+        System.out.println(str + (i + 1) + (str + c) + nullStr() + b + s);
+        System.out.println(c + c + str + c + c);
+        String acc = "";
+        for (int k = 0; k < 5; ++k)
+            acc += k;
+        System.out.println(acc + l);
     }
 
     public static Object nullObj() {
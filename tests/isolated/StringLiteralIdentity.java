@@ -0,0 +1,47 @@
+import java.lang.reflect.Field;
+
+// Equal string literals, and interned strings with equal contents, are the
+// same object, including when one of them comes from the JDK library, which
+// is compiled separately and linked as another image.
+public class StringLiteralIdentity {
+    static final String CONSTANT = "constant";
+    static String initialized = "initialized";
+
+    static class Other {
+        static final String CONSTANT = "constant";
+
+        static String literal() {
+            return "literal";
+        }
+    }
+
+    static String literal() {
+        return "literal";
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Literals within this compilation unit.
+        System.out.println(literal() == "literal");
+        System.out.println(Other.literal() == literal());
+        System.out.println(CONSTANT == Other.CONSTANT);
+        System.out.println(initialized == "initialized");
+
+        // Constant fields read reflectively are not folded by the compiler.
+        Field f = StringLiteralIdentity.class.getDeclaredField("CONSTANT");
+        System.out.println(f.get(null) == "constant");
+
+        // Literals returned by the JDK library.
+        System.out.println(String.valueOf((Object) null) == "null");
+        System.out.println(String.valueOf(true) == "true");
+        System.out.println(Boolean.toString(false) == "false");
+
+        // Strings built at run time and then interned.
+        String built = new StringBuilder("lit").append("eral").toString();
+        System.out.println(built == "literal");
+        System.out.println(built.intern() == "literal");
+        System.out.println(new String("constant").intern() == CONSTANT);
+        String fresh = new StringBuilder("not a ").append("literal").toString();
+        System.out.println(fresh.intern() == "not a literal");
+        System.out.println("null".intern() == String.valueOf((Object) null));
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class VolatileFields {
+    volatile int i = 1;
+    volatile long l = 2;
+    volatile boolean b;
+    volatile double d = 0.5;
+    volatile String s = "s";
+    static volatile byte sb = 3;
+
+    static volatile boolean ready;
+    static int data;
+
+    VolatileFields next() {
+        System.out.println("next");
+        return this;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        VolatileFields v = new VolatileFields();
+        v.i += 5;
+        v.l *= 3;
+        v.b = !v.b;
+        v.d++;
+        v.s += "t";
+        sb <<= 2;
+        System.out.println(v.i + " " + v.l + " " + v.b + " " + v.d + " " + v.s + " " + sb);
+
+        // The target of a compound assignment is evaluated once.
+        v.next().i++;
+        --v.next().l;
+        v.next().i -= 2;
+        System.out.println(v.i + " " + v.l);
+
+        // Publication through a volatile flag.
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                data = 42;
+                ready = true;
+            }
+        };
+        writer.start();
+        while (!ready)
+            Thread.yield();
+        System.out.println(data);
+        writer.join();
+
+        final AtomicLong counter = new AtomicLong();
+        final ConcurrentHashMap<Integer, Integer> map = new ConcurrentHashMap<Integer, Integer>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            final int id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int k = 0; k < 1000; ++k) {
+                        counter.incrementAndGet();
+                        map.put(id * 1000 + k, k);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        System.out.println(counter.get() + " " + map.size());
+    }
+}